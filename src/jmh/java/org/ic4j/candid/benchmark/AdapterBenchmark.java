@@ -0,0 +1,233 @@
+package org.ic4j.candid.benchmark;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.ic4j.candid.IDLBuilder;
+import org.ic4j.candid.IDLDeserialize;
+import org.ic4j.candid.TypeSignature;
+import org.ic4j.candid.gson.CandidTypeAdapter;
+import org.ic4j.candid.gson.CandidTypeAdapterFactory;
+import org.ic4j.candid.gson.GsonDeserializer;
+import org.ic4j.candid.gson.GsonSerializer;
+import org.ic4j.candid.jackson.CandidFactory;
+import org.ic4j.candid.jackson.CandidSchema;
+import org.ic4j.candid.jackson.JacksonDeserializer;
+import org.ic4j.candid.jackson.JacksonSerializer;
+import org.ic4j.candid.jaxb.jakarta.JAXBDeserializer;
+import org.ic4j.candid.jaxb.jakarta.JAXBSerializer;
+import org.ic4j.candid.parser.IDLArgs;
+import org.ic4j.candid.parser.IDLType;
+import org.ic4j.candid.parser.IDLValue;
+import org.ic4j.candid.pojo.PojoDeserializer;
+import org.ic4j.candid.pojo.PojoSerializer;
+import org.ic4j.candid.pojo.PojoUtils;
+import org.ic4j.candid.types.Type;
+import org.ic4j.candid.test.GsonPojo;
+import org.ic4j.candid.test.JacksonPojo;
+import org.ic4j.candid.test.JakartaJAXBPojo;
+import org.ic4j.candid.test.Pojo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+
+// Every adapter maps the same record { bar : bool; foo : int }, the JSON adapters also map the TradeArrayNode fixture
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AdapterBenchmark {
+	static final String TRADE_ARRAY_NODE_FILE = "TradeArrayNode.json";
+
+	Pojo pojo;
+	JacksonPojo jacksonPojo;
+	GsonPojo gsonPojo;
+	JakartaJAXBPojo jaxbPojo;
+
+	byte[] bytes;
+
+	// vec of POJOs written with a signature type, not the class type
+	Pojo[] pojos;
+	TypeSignature pojoSignature;
+
+	IDLType tradeType;
+	JsonNode tradeNode;
+	JsonElement tradeElement;
+	byte[] tradeBytes;
+
+	ObjectWriter candidWriter;
+	ObjectReader candidReader;
+
+	CandidTypeAdapter<GsonPojo> gsonAdapter;
+
+	@Setup
+	public void setup() throws IOException {
+		this.pojo = new Pojo();
+		this.pojo.bar = true;
+		this.pojo.foo = BigInteger.valueOf(42);
+
+		this.jacksonPojo = new JacksonPojo();
+		this.jacksonPojo.bar = true;
+		this.jacksonPojo.foo = BigInteger.valueOf(42);
+
+		this.gsonPojo = new GsonPojo();
+		this.gsonPojo.bar = true;
+		this.gsonPojo.foo = BigInteger.valueOf(42);
+
+		this.jaxbPojo = new JakartaJAXBPojo();
+		this.jaxbPojo.bar = true;
+		this.jaxbPojo.foo = BigInteger.valueOf(42);
+
+		this.bytes = this.pojoEncode();
+
+		this.pojos = new Pojo[100];
+		Arrays.fill(this.pojos, this.pojo);
+		this.pojoSignature = TypeSignature.compile(IDLType.createType(Type.VEC, PojoUtils.getIDLType(Pojo.class)));
+
+		ObjectMapper candidMapper = new ObjectMapper(new CandidFactory());
+		CandidSchema schema = CandidSchema.create(JacksonPojo.class);
+
+		this.candidWriter = candidMapper.writer(schema);
+		this.candidReader = candidMapper.readerFor(JacksonPojo.class).with(schema);
+
+		Gson candidGson = new GsonBuilder().registerTypeAdapterFactory(CandidTypeAdapterFactory.create()).create();
+
+		this.gsonAdapter = CandidTypeAdapterFactory.getAdapter(candidGson, GsonPojo.class);
+
+		String tradeJson = Fixtures.readText(TRADE_ARRAY_NODE_FILE);
+
+		this.tradeType = Fixtures.tradeArrayType();
+		this.tradeNode = new ObjectMapper().readTree(tradeJson.getBytes(StandardCharsets.UTF_8));
+		this.tradeElement = new Gson().fromJson(tradeJson, JsonElement.class);
+		this.tradeBytes = this.jacksonNodeEncode();
+	}
+
+	@Benchmark
+	public byte[] pojoEncode() {
+		return Fixtures.encode(IDLValue.create(this.pojo, PojoSerializer.create()));
+	}
+
+	@Benchmark
+	public Pojo pojoDecode() {
+		return IDLArgs.fromBytes(this.bytes).getArgs().get(0).getValue(PojoDeserializer.create(), Pojo.class);
+	}
+
+	// POJO fields written straight to the wire
+	@Benchmark
+	public byte[] bindingEncode() {
+		IDLBuilder idlBuilder = new IDLBuilder();
+		idlBuilder.arg(this.pojo);
+
+		return idlBuilder.serializeToVec();
+	}
+
+	@Benchmark
+	public byte[] bindingSignatureEncode() {
+		IDLBuilder idlBuilder = new IDLBuilder(this.pojoSignature);
+		idlBuilder.arg(this.pojos);
+
+		return idlBuilder.serializeToVec();
+	}
+
+	// POJO fields read straight from the wire
+	@Benchmark
+	public Pojo bindingDecode() {
+		return IDLDeserialize.create(this.bytes).getObject(Pojo.class);
+	}
+
+	@Benchmark
+	public byte[] jacksonEncode() {
+		return Fixtures.encode(IDLValue.create(this.jacksonPojo, JacksonSerializer.create()));
+	}
+
+	@Benchmark
+	public JacksonPojo jacksonDecode() {
+		return IDLArgs.fromBytes(this.bytes).getArgs().get(0).getValue(JacksonDeserializer.create(),
+				JacksonPojo.class);
+	}
+
+	// Candid data format, Jackson bean serializers on CandidGenerator and CandidParser
+	@Benchmark
+	public byte[] jacksonCandidEncode() throws IOException {
+		return this.candidWriter.writeValueAsBytes(this.jacksonPojo);
+	}
+
+	@Benchmark
+	public JacksonPojo jacksonCandidDecode() throws IOException {
+		return this.candidReader.readValue(this.bytes);
+	}
+
+	@Benchmark
+	public byte[] jacksonNodeEncode() {
+		return Fixtures.encode(IDLValue.create(this.tradeNode, JacksonSerializer.create(this.tradeType)));
+	}
+
+	@Benchmark
+	public JsonNode jacksonNodeDecode() {
+		return IDLArgs.fromBytes(this.tradeBytes).getArgs().get(0)
+				.getValue(JacksonDeserializer.create(this.tradeType), JsonNode.class);
+	}
+
+	@Benchmark
+	public byte[] gsonEncode() {
+		return Fixtures.encode(IDLValue.create(this.gsonPojo, GsonSerializer.create()));
+	}
+
+	@Benchmark
+	public GsonPojo gsonDecode() {
+		return IDLArgs.fromBytes(this.bytes).getArgs().get(0).getValue(GsonDeserializer.create(), GsonPojo.class);
+	}
+
+	// Candid type adapter, Gson reflective adapter on CandidJsonWriter and CandidJsonReader
+	@Benchmark
+	public byte[] gsonCandidEncode() throws IOException {
+		return this.gsonAdapter.toCandid(this.gsonPojo);
+	}
+
+	@Benchmark
+	public GsonPojo gsonCandidDecode() throws IOException {
+		return this.gsonAdapter.fromCandid(this.bytes);
+	}
+
+	@Benchmark
+	public byte[] gsonNodeEncode() {
+		return Fixtures.encode(IDLValue.create(this.tradeElement, GsonSerializer.create(this.tradeType)));
+	}
+
+	@Benchmark
+	public JsonElement gsonNodeDecode() {
+		return IDLArgs.fromBytes(this.tradeBytes).getArgs().get(0)
+				.getValue(GsonDeserializer.create(this.tradeType), JsonElement.class);
+	}
+
+	@Benchmark
+	public byte[] jaxbEncode() {
+		return Fixtures.encode(IDLValue.create(this.jaxbPojo, JAXBSerializer.create()));
+	}
+
+	@Benchmark
+	public JakartaJAXBPojo jaxbDecode() {
+		return IDLArgs.fromBytes(this.bytes).getArgs().get(0).getValue(JAXBDeserializer.create(),
+				JakartaJAXBPojo.class);
+	}
+}
@@ -0,0 +1,79 @@
+package org.ic4j.candid.benchmark;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.ic4j.candid.CandidError;
+import org.ic4j.candid.TypeSignature;
+import org.ic4j.candid.parser.IDLParser;
+import org.ic4j.candid.parser.IDLType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Service definitions of the test fixtures
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DidBenchmark {
+	@Param({ "ic.did", "internet_identity.did", "Trading2.did", "Swift.did", "RosettaNet.did", "LoanProvider.did",
+			"origyn_nft_reference.did", "pythia.did", "swop.did", "DocuTrack.did", "orbit.did" })
+	String fileName;
+
+	String idl;
+
+	// argument types of the service methods
+	List<List<IDLType>> methodArgs;
+
+	@Setup
+	public void setup() throws IOException {
+		this.idl = Fixtures.readText(this.fileName);
+
+		this.methodArgs = new ArrayList<List<IDLType>>();
+
+		for (IDLType service : this.parse().getServices().values())
+			for (IDLType meth : service.getMeths().values()) {
+				// recursive argument types cannot be encoded in a type table yet
+				try {
+					TypeSignature.compile(meth.getArgs());
+				} catch (StackOverflowError | CandidError | RuntimeException e) {
+					continue;
+				}
+
+				this.methodArgs.add(meth.getArgs());
+			}
+	}
+
+	@Benchmark
+	public IDLParser parse() {
+		IDLParser idlParser = new IDLParser(new StringReader(this.idl));
+		idlParser.parse();
+
+		return idlParser;
+	}
+
+	// type table and argument types of every method, as built for the first call
+	@Benchmark
+	public int compileSignatures() {
+		int size = 0;
+
+		for (List<IDLType> args : this.methodArgs)
+			size += TypeSignature.compile(args).getPrefix().length;
+
+		return size;
+	}
+}
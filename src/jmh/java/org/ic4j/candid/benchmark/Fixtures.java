@@ -0,0 +1,72 @@
+package org.ic4j.candid.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.ic4j.candid.parser.IDLArgs;
+import org.ic4j.candid.parser.IDLType;
+import org.ic4j.candid.parser.IDLValue;
+import org.ic4j.candid.types.Label;
+import org.ic4j.candid.types.Type;
+
+// Shared inputs of the benchmarks, resources come from src/test/resources
+final class Fixtures {
+	static byte[] readResource(String fileName) throws IOException {
+		try (InputStream input = Fixtures.class.getClassLoader().getResourceAsStream(fileName)) {
+			if (input == null)
+				throw new IOException("Missing resource " + fileName);
+
+			ByteArrayOutputStream output = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+
+			for (int len = input.read(buffer); len != -1; len = input.read(buffer))
+				output.write(buffer, 0, len);
+
+			return output.toByteArray();
+		}
+	}
+
+	static String readText(String fileName) throws IOException {
+		return new String(readResource(fileName), StandardCharsets.UTF_8);
+	}
+
+	static byte[] encode(IDLValue value) {
+		List<IDLValue> args = Arrays.asList(value);
+
+		return IDLArgs.create(args).toBytes();
+	}
+
+	// vec record { nat32; record { locked : opt; seller : principal; price : nat64 }; variant { nonfungible : record { metadata : opt } } }, the shape of TradeArrayNode
+	static IDLType tradeArrayType() {
+		Map<Label, IDLType> rootRecord = new TreeMap<Label, IDLType>();
+		rootRecord.put(Label.createUnnamedLabel(0l), IDLType.createType(Type.NAT32));
+
+		Map<Label, IDLType> offerRecord = new TreeMap<Label, IDLType>();
+		offerRecord.put(Label.createNamedLabel("locked"), IDLType.createType(Type.OPT));
+		offerRecord.put(Label.createNamedLabel("seller"), IDLType.createType(Type.PRINCIPAL));
+		offerRecord.put(Label.createNamedLabel("price"), IDLType.createType(Type.NAT64));
+
+		rootRecord.put(Label.createUnnamedLabel(1l), IDLType.createType(Type.RECORD, offerRecord));
+
+		Map<Label, IDLType> nonfungibleRecord = new TreeMap<Label, IDLType>();
+		nonfungibleRecord.put(Label.createNamedLabel("metadata"), IDLType.createType(Type.OPT));
+
+		Map<Label, IDLType> typeVariant = new TreeMap<Label, IDLType>();
+		typeVariant.put(Label.createNamedLabel("nonfungible"), IDLType.createType(Type.RECORD, nonfungibleRecord));
+
+		rootRecord.put(Label.createUnnamedLabel(2l), IDLType.createType(Type.VARIANT, typeVariant));
+
+		return IDLType.createType(Type.VEC, IDLType.createType(Type.RECORD, rootRecord));
+	}
+
+	static BigInteger bigValue(int bits) {
+		return BigInteger.ONE.shiftLeft(bits).subtract(BigInteger.ONE);
+	}
+}
@@ -0,0 +1,69 @@
+package org.ic4j.candid.benchmark;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.ic4j.candid.IDLUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IDLHashBenchmark {
+	static final BigInteger UINT_MAX = BigInteger.valueOf(4294967295l + 1);
+
+	@Param({ "id", "created_at_time", "fee_collector_account_subaccount" })
+	String name;
+
+	byte[] bytes;
+
+	@Setup
+	public void setup() {
+		this.bytes = this.name.getBytes(StandardCharsets.UTF_8);
+	}
+
+	// previous BigInteger implementation
+	static long bigIntegerHash(String value) {
+		BigInteger hash = BigInteger.ZERO;
+
+		if (value != null) {
+			byte[] bytes = value.getBytes();
+
+			for (byte b : bytes) {
+				hash = hash.multiply(BigInteger.valueOf(223)).mod(UINT_MAX);
+				hash = hash.add(BigInteger.valueOf(Byte.toUnsignedInt(b))).mod(UINT_MAX);
+			}
+		}
+
+		return hash.longValue();
+	}
+
+	@Benchmark
+	public long bigInteger() {
+		return bigIntegerHash(this.name);
+	}
+
+	@Benchmark
+	public long string() {
+		return IDLUtils.idlHash(this.name);
+	}
+
+	@Benchmark
+	public long bytes() {
+		return IDLUtils.idlHash(this.bytes, 0, this.bytes.length);
+	}
+}
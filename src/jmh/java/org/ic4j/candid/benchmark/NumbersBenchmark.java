@@ -0,0 +1,81 @@
+package org.ic4j.candid.benchmark;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.ic4j.candid.Bytes;
+import org.ic4j.candid.Leb128;
+import org.ic4j.candid.types.Numbers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NumbersBenchmark {
+	@Param({ "7", "63", "256" })
+	int bits;
+
+	BigInteger value;
+	BigInteger negativeValue;
+	long longValue;
+
+	byte[] natBytes;
+	byte[] intBytes;
+
+	ByteBuffer buffer;
+
+	@Setup
+	public void setup() {
+		this.value = Fixtures.bigValue(this.bits);
+		this.negativeValue = this.value.negate();
+		this.longValue = this.value.longValue();
+
+		this.natBytes = Numbers.encodeBigNat(this.value);
+		this.intBytes = Numbers.encodeBigInt(this.negativeValue);
+
+		this.buffer = ByteBuffer.allocate(16);
+	}
+
+	@Benchmark
+	public long leb128() {
+		this.buffer.clear();
+		Leb128.writeUnsigned(this.buffer, this.longValue);
+		this.buffer.flip();
+
+		return Leb128.readUnsigned(this.buffer);
+	}
+
+	@Benchmark
+	public byte[] encodeBigNat() {
+		return Numbers.encodeBigNat(this.value);
+	}
+
+	@Benchmark
+	public BigInteger decodeBigNat() {
+		return Numbers.decodeBigNat(Bytes.from(this.natBytes));
+	}
+
+	@Benchmark
+	public byte[] encodeBigInt() {
+		return Numbers.encodeBigInt(this.negativeValue);
+	}
+
+	@Benchmark
+	public BigInteger decodeBigInt() {
+		return Numbers.decodeBigInt(Bytes.from(this.intBytes));
+	}
+}
@@ -0,0 +1,70 @@
+package org.ic4j.candid.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.ic4j.candid.parser.IDLArgs;
+import org.ic4j.candid.parser.IDLValue;
+import org.ic4j.candid.types.Type;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrimitiveBenchmark {
+	@Param({ "BOOL", "NAT", "INT", "NAT64", "INT32", "FLOAT64", "TEXT" })
+	Type type;
+
+	Object value;
+	byte[] bytes;
+
+	@Setup
+	public void setup() {
+		switch (this.type) {
+		case BOOL:
+			this.value = Boolean.TRUE;
+			break;
+		case NAT:
+			this.value = Fixtures.bigValue(100);
+			break;
+		case INT:
+			this.value = Fixtures.bigValue(100).negate();
+			break;
+		case NAT64:
+			this.value = Long.MAX_VALUE;
+			break;
+		case INT32:
+			this.value = Integer.MIN_VALUE;
+			break;
+		case FLOAT64:
+			this.value = Math.PI;
+			break;
+		default:
+			this.value = "created_at_time fee_collector_account_subaccount";
+		}
+
+		this.bytes = this.encode();
+	}
+
+	@Benchmark
+	public byte[] encode() {
+		return Fixtures.encode(IDLValue.create(this.value, this.type));
+	}
+
+	@Benchmark
+	public Object decode() {
+		return IDLArgs.fromBytes(this.bytes).getArgs().get(0).getValue();
+	}
+}
@@ -0,0 +1,78 @@
+package org.ic4j.candid.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.ic4j.candid.parser.IDLArgs;
+import org.ic4j.candid.parser.IDLValue;
+import org.ic4j.types.Principal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrincipalBenchmark {
+	// management canister, ledger canister and anonymous
+	@Param({ "aaaaa-aa", "ryjl3-tyaaa-aaaaa-aaaba-cai", "2vxsx-fae" })
+	String text;
+
+	Principal principal;
+	Principal[] principals;
+
+	byte[] bytes;
+	byte[] vecBytes;
+
+	@Setup
+	public void setup() {
+		this.principal = Principal.fromString(this.text);
+
+		this.principals = new Principal[256];
+		for (int i = 0; i < this.principals.length; i++)
+			this.principals[i] = this.principal;
+
+		this.bytes = Fixtures.encode(IDLValue.create(this.principal));
+		this.vecBytes = Fixtures.encode(IDLValue.create(this.principals));
+	}
+
+	@Benchmark
+	public Principal fromString() {
+		return Principal.fromString(this.text);
+	}
+
+	@Benchmark
+	public String toText() {
+		return this.principal.toString();
+	}
+
+	@Benchmark
+	public byte[] encode() {
+		return Fixtures.encode(IDLValue.create(this.principal));
+	}
+
+	@Benchmark
+	public Object decode() {
+		return IDLArgs.fromBytes(this.bytes).getArgs().get(0).getValue();
+	}
+
+	@Benchmark
+	public byte[] encodeVec() {
+		return Fixtures.encode(IDLValue.create(this.principals));
+	}
+
+	@Benchmark
+	public Object decodeVec() {
+		return IDLArgs.fromBytes(this.vecBytes).getArgs().get(0).getValue();
+	}
+}
@@ -0,0 +1,109 @@
+package org.ic4j.candid.benchmark;
+
+import java.math.BigInteger;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.ic4j.candid.TypeTableCache;
+import org.ic4j.candid.parser.IDLArgs;
+import org.ic4j.candid.parser.IDLType;
+import org.ic4j.candid.parser.IDLValue;
+import org.ic4j.candid.types.Label;
+import org.ic4j.candid.types.Type;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Nested records, each level is record { id : nat64; name : text; status : variant { ok : nat; err : text }; child : opt record {...} }
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecordBenchmark {
+	@Param({ "1", "8", "32", "200" })
+	int depth;
+
+	IDLType idlType;
+	Map<Label, Object> value;
+	byte[] bytes;
+
+	TypeTableCache cache;
+
+	@Setup
+	public void setup() {
+		Map<Label, IDLType> statusType = new TreeMap<Label, IDLType>();
+		statusType.put(Label.createNamedLabel("ok"), IDLType.createType(Type.NAT));
+		statusType.put(Label.createNamedLabel("err"), IDLType.createType(Type.TEXT));
+
+		IDLType childType = null;
+		Map<Label, Object> childValue = null;
+
+		for (int level = this.depth; level > 0; level--) {
+			Map<Label, IDLType> typeMap = new TreeMap<Label, IDLType>();
+			typeMap.put(Label.createNamedLabel("id"), IDLType.createType(Type.NAT64));
+			typeMap.put(Label.createNamedLabel("name"), IDLType.createType(Type.TEXT));
+			typeMap.put(Label.createNamedLabel("status"), IDLType.createType(Type.VARIANT, statusType));
+
+			Map<Label, Object> valueMap = new TreeMap<Label, Object>();
+			valueMap.put(Label.createNamedLabel("id"), (long) level);
+			valueMap.put(Label.createNamedLabel("name"), "level " + level);
+
+			Map<Label, Object> status = new TreeMap<Label, Object>();
+
+			if (level % 2 == 0)
+				status.put(Label.createNamedLabel("ok"), BigInteger.valueOf(level));
+			else
+				status.put(Label.createNamedLabel("err"), "odd level");
+
+			valueMap.put(Label.createNamedLabel("status"), status);
+
+			if (childType != null) {
+				typeMap.put(Label.createNamedLabel("child"), IDLType.createType(Type.OPT, childType));
+				valueMap.put(Label.createNamedLabel("child"), Optional.of(childValue));
+			}
+
+			childType = IDLType.createType(Type.RECORD, typeMap);
+			childValue = valueMap;
+		}
+
+		this.idlType = childType;
+		this.value = childValue;
+
+		this.bytes = this.encode();
+
+		this.cache = TypeTableCache.create();
+	}
+
+	@Benchmark
+	public byte[] encode() {
+		return Fixtures.encode(IDLValue.create(this.value, this.idlType));
+	}
+
+	@Benchmark
+	public Object decode() {
+		return IDLArgs.fromBytes(this.bytes).getArgs().get(0).getValue();
+	}
+
+	@Benchmark
+	public Object decodeExpected() {
+		return IDLArgs.fromBytes(this.bytes, new IDLType[] { this.idlType }).getArgs().get(0).getValue();
+	}
+
+	// decoder plan of the cached type table
+	@Benchmark
+	public Object decodeCompiled() {
+		return IDLArgs.fromBytesCompiled(this.bytes, this.cache).getArgs().get(0).getValue();
+	}
+}
@@ -0,0 +1,88 @@
+package org.ic4j.candid.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.ic4j.candid.IDLDeserialize;
+import org.ic4j.candid.parser.IDLArgs;
+import org.ic4j.candid.parser.IDLValue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VecBenchmark {
+	@Param({ "16", "4096", "65536" })
+	int size;
+
+	@Param({ "blob", "int32", "int64", "float64", "text" })
+	String element;
+
+	Object value;
+	byte[] bytes;
+
+	@Setup
+	public void setup() {
+		switch (this.element) {
+		case "blob":
+			byte[] blob = new byte[this.size];
+			for (int i = 0; i < this.size; i++)
+				blob[i] = (byte) i;
+			this.value = blob;
+			break;
+		case "int32":
+			int[] ints = new int[this.size];
+			for (int i = 0; i < this.size; i++)
+				ints[i] = i * 31;
+			this.value = ints;
+			break;
+		case "int64":
+			long[] longs = new long[this.size];
+			for (int i = 0; i < this.size; i++)
+				longs[i] = i * 0x1F1F1F1F1FL;
+			this.value = longs;
+			break;
+		case "float64":
+			double[] doubles = new double[this.size];
+			for (int i = 0; i < this.size; i++)
+				doubles[i] = i / 3.0;
+			this.value = doubles;
+			break;
+		default:
+			String[] texts = new String[this.size];
+			for (int i = 0; i < this.size; i++)
+				texts[i] = "item " + i;
+			this.value = texts;
+		}
+
+		this.bytes = this.encode();
+	}
+
+	@Benchmark
+	public byte[] encode() {
+		return Fixtures.encode(IDLValue.create(this.value));
+	}
+
+	@Benchmark
+	public Object decode() {
+		return IDLArgs.fromBytes(this.bytes).getArgs().get(0).getValue();
+	}
+
+	// bulk decoding into the target array class
+	@Benchmark
+	public Object decodeArray() {
+		return IDLDeserialize.create(this.bytes).getObject(this.value.getClass());
+	}
+}
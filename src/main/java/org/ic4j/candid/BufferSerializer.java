@@ -0,0 +1,679 @@
+/*
+ * Copyright 2021 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.ic4j.candid;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Optional;
+
+import org.apache.commons.lang3.ArrayUtils;
+import org.ic4j.candid.parser.IDLType;
+import org.ic4j.candid.parser.IDLValue;
+import org.ic4j.candid.types.Label;
+import org.ic4j.candid.types.Type;
+import org.ic4j.types.Func;
+import org.ic4j.types.Principal;
+import org.ic4j.types.Service;
+
+/*
+ * Serializer writing values in place into a growable ByteBuffer (heap or direct).
+ * Unlike ValueSerializer, which copies the whole result for every value, the buffer
+ * only grows geometrically, so encoding is linear in the size of the payload.
+ * Instances can be reused after reset().
+ * When created over an OutputStream or WritableByteChannel, the buffer is bounded
+ * and drained to the sink whenever it fills up, large binaries bypass it.
+ */
+
+public final class BufferSerializer implements Serializer {
+	static final int DEFAULT_CAPACITY = 256;
+	static final int STREAM_CAPACITY = 8192;
+	static final BigInteger MINUS_ONE = BigInteger.valueOf(-1);
+
+	ByteBuffer buf;
+	boolean direct;
+
+	// optional sink, the buffer is drained to it instead of growing
+	OutputStream os;
+	WritableByteChannel channel;
+
+	BufferSerializer() {
+		this(DEFAULT_CAPACITY, false);
+	}
+
+	BufferSerializer(int capacity, boolean direct) {
+		this.direct = direct;
+		this.buf = allocate(Math.max(capacity, 16), direct);
+	}
+
+	public static BufferSerializer create() {
+		return new BufferSerializer();
+	}
+
+	public static BufferSerializer create(int capacity, boolean direct) {
+		return new BufferSerializer(capacity, direct);
+	}
+
+	public static BufferSerializer create(OutputStream os) {
+		BufferSerializer serializer = new BufferSerializer(STREAM_CAPACITY, false);
+		serializer.os = os;
+		return serializer;
+	}
+
+	public static BufferSerializer create(WritableByteChannel channel, boolean direct) {
+		BufferSerializer serializer = new BufferSerializer(STREAM_CAPACITY, direct);
+		serializer.channel = channel;
+		return serializer;
+	}
+
+	static ByteBuffer allocate(int capacity, boolean direct) {
+		ByteBuffer buf = direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+		buf.order(ByteOrder.LITTLE_ENDIAN);
+		return buf;
+	}
+
+	boolean isStreaming() {
+		return this.os != null || this.channel != null;
+	}
+
+	void ensureCapacity(int len) {
+		if (this.buf.remaining() >= len)
+			return;
+
+		if (this.isStreaming()) {
+			this.drain();
+
+			if (this.buf.remaining() >= len)
+				return;
+		}
+
+		int required = this.buf.position() + len;
+
+		if (required < 0)
+			throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, "Serialized value too large");
+
+		int capacity = Math.max(this.buf.capacity() << 1, required);
+
+		// overflow of the doubled capacity
+		if (capacity < 0)
+			capacity = Integer.MAX_VALUE;
+
+		ByteBuffer newBuf = allocate(capacity, this.direct);
+
+		this.buf.flip();
+		newBuf.put(this.buf);
+
+		this.buf = newBuf;
+	}
+
+	void writeByte(byte value) {
+		this.ensureCapacity(Byte.BYTES);
+		this.buf.put(value);
+	}
+
+	void writeBytes(byte[] value) {
+		// write large chunks straight to the sink, without copying them into the buffer
+		if (this.isStreaming() && value.length >= (this.buf.capacity() >> 1)) {
+			this.drain();
+
+			try {
+				if (this.os != null)
+					this.os.write(value);
+				else {
+					ByteBuffer src = ByteBuffer.wrap(value);
+
+					while (src.hasRemaining())
+						this.channel.write(src);
+				}
+			} catch (IOException e) {
+				throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, e, e.getLocalizedMessage());
+			}
+			return;
+		}
+
+		this.ensureCapacity(value.length);
+		this.buf.put(value);
+	}
+
+	// Write buffered content to the sink and empty the buffer
+	void drain() {
+		if (this.buf.position() == 0)
+			return;
+
+		try {
+			if (this.os != null)
+				this.writeTo(this.os);
+			else
+				this.writeTo(this.channel);
+		} catch (IOException e) {
+			throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, e, e.getLocalizedMessage());
+		}
+
+		this.buf.clear();
+	}
+
+	public void flush() throws IOException {
+		if (!this.isStreaming())
+			return;
+
+		this.drain();
+
+		if (this.os != null)
+			this.os.flush();
+	}
+
+	// LEB128 lengths, option tags and variant indexes, also used by the streaming encoders
+	public void writeUnsigned(long value) {
+		this.ensureCapacity(10);
+
+		while ((value & ~0x7fL) != 0) {
+			this.buf.put((byte) ((value & 0x7f) | 0x80));
+			value >>>= 7;
+		}
+
+		this.buf.put((byte) value);
+	}
+
+	void writeSigned(long value) {
+		this.ensureCapacity(10);
+
+		boolean more = true;
+
+		while (more) {
+			byte b = (byte) (value & 0x7f);
+			value >>= 7;
+
+			if ((value == 0 && (b & 0x40) == 0) || (value == -1 && (b & 0x40) != 0))
+				more = false;
+			else
+				b |= 0x80;
+
+			this.buf.put(b);
+		}
+	}
+
+	void writeBigNat(BigInteger value) {
+		if (value.bitLength() < Long.SIZE) {
+			this.writeUnsigned(value.longValue());
+			return;
+		}
+
+		this.ensureCapacity(value.bitLength() / 7 + 1);
+
+		boolean done;
+
+		do {
+			byte b = (byte) (value.intValue() & 0x7f);
+
+			value = value.shiftRight(7);
+
+			done = value.signum() == 0;
+
+			if (!done)
+				b |= 0x80;
+
+			this.buf.put(b);
+		} while (!done);
+	}
+
+	void writeBigInt(BigInteger value) {
+		if (value.bitLength() < Long.SIZE) {
+			this.writeSigned(value.longValue());
+			return;
+		}
+
+		this.ensureCapacity(value.bitLength() / 7 + 2);
+
+		boolean more = true;
+
+		while (more) {
+			byte b = (byte) (value.intValue() & 0x7f);
+
+			value = value.shiftRight(7);
+
+			if ((value.signum() == 0 && (b & 0x40) == 0) || (value.equals(MINUS_ONE) && (b & 0x40) != 0))
+				more = false;
+			else
+				b |= 0x80;
+
+			this.buf.put(b);
+		}
+	}
+
+	void writeText(String value) {
+		byte[] stringBytes = value.getBytes(StandardCharsets.UTF_8);
+
+		this.writeUnsigned(stringBytes.length);
+		this.writeBytes(stringBytes);
+	}
+
+	public void serializeNull() {
+	}
+
+	public final void serializeBool(Boolean value) {
+		this.writeByte((byte) (value ? 1 : 0));
+	}
+
+	public final void serializeText(String value) {
+		this.writeText(value);
+	}
+
+	public final void serializeNat(BigInteger value) {
+		if (value.compareTo(BigInteger.ZERO) < 0)
+			throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, String.format("Invalid unsigned value %d", value));
+
+		this.writeBigNat(value);
+	}
+
+	public final void serializeNat8(Byte value) {
+		this.writeByte(value);
+	}
+
+	public final void serializeNat16(Short value) {
+		this.ensureCapacity(Short.BYTES);
+		this.buf.putShort(value);
+	}
+
+	public final void serializeNat32(Integer value) {
+		this.ensureCapacity(Integer.BYTES);
+		this.buf.putInt(value);
+	}
+
+	public final void serializeNat64(Long value) {
+		this.ensureCapacity(Long.BYTES);
+		this.buf.putLong(value);
+	}
+
+	// wider Java types keep the same wire layout as ValueSerializer
+	public final void serializeNat8(Short value) {
+		this.ensureCapacity(Short.BYTES);
+		this.buf.putShort(value);
+	}
+
+	public final void serializeNat16(Integer value) {
+		this.ensureCapacity(Integer.BYTES);
+		this.buf.putInt(value);
+	}
+
+	public final void serializeNat32(Long value) {
+		this.ensureCapacity(Long.BYTES);
+		this.buf.putLong(value);
+	}
+
+	public final void serializeNat64(BigInteger value) {
+		this.serializeNat(value);
+	}
+
+	public final void serializeInt(BigInteger value) {
+		this.writeBigInt(value);
+	}
+
+	public final void serializeFloat64(Double value) {
+		this.ensureCapacity(Double.BYTES);
+		this.buf.putDouble(value);
+	}
+
+	public final void serializeFloat32(Float value) {
+		this.ensureCapacity(Float.BYTES);
+		this.buf.putFloat(value);
+	}
+
+	public final void serializeInt8(Byte value) {
+		this.writeByte(value);
+	}
+
+	public final void serializeInt16(Short value) {
+		this.ensureCapacity(Short.BYTES);
+		this.buf.putShort(value);
+	}
+
+	public final void serializeInt32(Integer value) {
+		this.ensureCapacity(Integer.BYTES);
+		this.buf.putInt(value);
+	}
+
+	public final void serializeInt64(Long value) {
+		this.ensureCapacity(Long.BYTES);
+		this.buf.putLong(value);
+	}
+
+	public final void serializeOpt(Optional<?> value, IDLType idlType) {
+		if (value.isPresent()) {
+			this.writeByte((byte) 1);
+
+			Object obj = value.get();
+
+			IDLValue idlValue;
+			if (idlType == null)
+				idlValue = IDLValue.create(obj);
+			else
+				idlValue = IDLValue.create(obj, idlType.getInnerType());
+
+			idlValue.idlSerialize(this);
+		} else
+			this.writeByte((byte) 0);
+	}
+
+	public final <T> void serializeVec(T[] value, IDLType idlType) {
+		this.writeUnsigned(value.length);
+
+		for (Object element : value) {
+			IDLValue idlValue;
+			if (idlType == null)
+				idlValue = IDLValue.create(element);
+			else
+				idlValue = IDLValue.create(element, idlType.getInnerType());
+
+			idlValue.idlSerialize(this);
+		}
+	}
+
+	public final void serializeVec(boolean[] value, IDLType idlType) {
+		if (!isElementType(idlType, Type.BOOL)) {
+			Serializer.super.serializeVec(value, idlType);
+			return;
+		}
+
+		this.writeUnsigned(value.length);
+
+		for (int offset = 0; offset < value.length;) {
+			int chunk = this.reserve(value.length - offset, Byte.BYTES);
+
+			for (int i = offset; i < offset + chunk; i++)
+				this.buf.put((byte) (value[i] ? 1 : 0));
+
+			offset += chunk;
+		}
+	}
+
+	public final void serializeVec(short[] value, IDLType idlType) {
+		if (!isElementType(idlType, Type.INT16, Type.NAT16)) {
+			Serializer.super.serializeVec(value, idlType);
+			return;
+		}
+
+		this.writeUnsigned(value.length);
+
+		for (int offset = 0; offset < value.length;) {
+			int chunk = this.reserve(value.length - offset, Short.BYTES);
+
+			this.buf.asShortBuffer().put(value, offset, chunk);
+			this.buf.position(this.buf.position() + chunk * Short.BYTES);
+
+			offset += chunk;
+		}
+	}
+
+	public final void serializeVec(int[] value, IDLType idlType) {
+		if (!isElementType(idlType, Type.INT32, Type.NAT32)) {
+			Serializer.super.serializeVec(value, idlType);
+			return;
+		}
+
+		this.writeUnsigned(value.length);
+
+		for (int offset = 0; offset < value.length;) {
+			int chunk = this.reserve(value.length - offset, Integer.BYTES);
+
+			this.buf.asIntBuffer().put(value, offset, chunk);
+			this.buf.position(this.buf.position() + chunk * Integer.BYTES);
+
+			offset += chunk;
+		}
+	}
+
+	public final void serializeVec(long[] value, IDLType idlType) {
+		if (!isElementType(idlType, Type.INT64, Type.NAT64)) {
+			Serializer.super.serializeVec(value, idlType);
+			return;
+		}
+
+		this.writeUnsigned(value.length);
+
+		for (int offset = 0; offset < value.length;) {
+			int chunk = this.reserve(value.length - offset, Long.BYTES);
+
+			this.buf.asLongBuffer().put(value, offset, chunk);
+			this.buf.position(this.buf.position() + chunk * Long.BYTES);
+
+			offset += chunk;
+		}
+	}
+
+	public final void serializeVec(float[] value, IDLType idlType) {
+		if (!isElementType(idlType, Type.FLOAT32)) {
+			Serializer.super.serializeVec(value, idlType);
+			return;
+		}
+
+		this.writeUnsigned(value.length);
+
+		for (int offset = 0; offset < value.length;) {
+			int chunk = this.reserve(value.length - offset, Float.BYTES);
+
+			this.buf.asFloatBuffer().put(value, offset, chunk);
+			this.buf.position(this.buf.position() + chunk * Float.BYTES);
+
+			offset += chunk;
+		}
+	}
+
+	public final void serializeVec(double[] value, IDLType idlType) {
+		if (!isElementType(idlType, Type.FLOAT64)) {
+			Serializer.super.serializeVec(value, idlType);
+			return;
+		}
+
+		this.writeUnsigned(value.length);
+
+		for (int offset = 0; offset < value.length;) {
+			int chunk = this.reserve(value.length - offset, Double.BYTES);
+
+			this.buf.asDoubleBuffer().put(value, offset, chunk);
+			this.buf.position(this.buf.position() + chunk * Double.BYTES);
+
+			offset += chunk;
+		}
+	}
+
+	// Bulk write is possible only if the wire element type has the width of the Java type
+	static boolean isElementType(IDLType idlType, Type... types) {
+		if (idlType == null || idlType.getInnerType() == null)
+			return true;
+
+		Type elementType = idlType.getInnerType().getType();
+
+		for (Type type : types)
+			if (elementType == type)
+				return true;
+
+		return false;
+	}
+
+	// Make room for a run of fixed size elements, returns how many of them fit.
+	// Streaming output is written in chunks of the buffer size.
+	int reserve(int count, int size) {
+		int chunk = count;
+
+		if (this.isStreaming())
+			chunk = Math.min(count, Math.max(1, this.buf.capacity() / size));
+
+		if ((long) chunk * size > Integer.MAX_VALUE)
+			throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, "Serialized value too large");
+
+		this.ensureCapacity(chunk * size);
+
+		return chunk;
+	}
+
+	public final void serializePrincipal(Principal value) {
+		this.writeByte((byte) 1);
+
+		byte[] principal = value.getValue();
+
+		this.writeUnsigned(principal.length);
+		this.writeBytes(principal);
+	}
+
+	public final void serializeFunc(Func value) {
+		this.writeByte((byte) 1);
+		this.writeByte((byte) 1);
+
+		if (value.getPrincipal() != null) {
+			byte[] principal = value.getPrincipal().getValue();
+
+			this.writeUnsigned(principal.length);
+			this.writeBytes(principal);
+		} else
+			this.writeUnsigned(0);
+
+		if (value.getMethod() != null)
+			this.writeText(value.getMethod());
+		else
+			this.writeUnsigned(0);
+	}
+
+	public final void serializeService(Service value) {
+		this.writeByte((byte) 1);
+
+		if (value.getPrincipal() != null) {
+			byte[] principal = value.getPrincipal().getValue();
+
+			this.writeUnsigned(principal.length);
+			this.writeBytes(principal);
+		} else
+			this.writeUnsigned(0);
+	}
+
+	public final void serializeBinary(byte[] value, IDLType idlType) {
+		this.writeUnsigned(value.length);
+		this.writeBytes(value);
+	}
+
+	public final void serializeBinary(Byte[] value, IDLType idlType) {
+		this.serializeBinary(ArrayUtils.toPrimitive(value), idlType);
+	}
+
+	@Override
+	public void serializeRecord(Object value, IDLType idlType) {
+		if (value instanceof Map)
+			for (Map.Entry<Label, Object> entry : ((Map<Label, Object>) value).entrySet()) {
+				IDLType nestedType = null;
+
+				if (idlType != null)
+					nestedType = idlType.getTypeMap().get(entry.getKey());
+
+				this.serializeElement(entry.getValue(), nestedType);
+			}
+		else if (value != null && idlType != null)
+			// POJO fields are written directly in the order of the record type
+			PojoBinding.get(value.getClass()).writeRecord(this, value, idlType);
+	}
+
+	@Override
+	public void serializeVariant(Object value, IDLType idlType) {
+		if (value instanceof Map) {
+			if (!((Map<Label, Object>) value).isEmpty()) {
+				Map.Entry<Label, Object> entry = ((Map<Label, Object>) value).entrySet().iterator().next();
+
+				this.writeUnsigned(IDLUtils.variantIndex(idlType, entry.getKey()));
+
+				IDLType nestedType = null;
+
+				if (idlType != null)
+					nestedType = idlType.getTypeMap().get(entry.getKey());
+
+				this.serializeElement(entry.getValue(), nestedType);
+			}
+		} else if (value != null && idlType != null)
+			PojoBinding.get(value.getClass()).writeVariant(this, value, idlType);
+	}
+
+	void serializeElement(Object value, IDLType idlType) {
+		IDLValue idlValue;
+
+		if (idlType != null)
+			idlValue = IDLValue.create(value, idlType);
+		else
+			idlValue = IDLValue.create(value);
+
+		idlValue.idlSerialize(this);
+	}
+
+	// Discard the serialized content, keep the allocated buffer for reuse
+	public void reset() {
+		this.buf.clear();
+	}
+
+	public int size() {
+		return this.buf.position();
+	}
+
+	public byte[] getResult() {
+		byte[] result = new byte[this.buf.position()];
+
+		ByteBuffer view = this.buf.duplicate();
+		view.flip();
+		view.get(result);
+
+		return result;
+	}
+
+	public void writeTo(OutputStream os) throws IOException {
+		if (this.buf.hasArray())
+			os.write(this.buf.array(), this.buf.arrayOffset(), this.buf.position());
+		else
+			os.write(this.getResult());
+	}
+
+	// append the serialized content to another serializer
+	public void writeTo(BufferSerializer serializer) {
+		// large content goes straight to the sink of a streaming serializer
+		if (serializer.isStreaming() && this.buf.position() >= (serializer.buf.capacity() >> 1)) {
+			serializer.drain();
+
+			try {
+				if (serializer.os != null)
+					this.writeTo(serializer.os);
+				else
+					this.writeTo(serializer.channel);
+			} catch (IOException e) {
+				throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, e, e.getLocalizedMessage());
+			}
+			return;
+		}
+
+		ByteBuffer view = this.buf.duplicate();
+		view.flip();
+
+		serializer.ensureCapacity(view.remaining());
+		serializer.buf.put(view);
+	}
+
+	public void writeTo(WritableByteChannel channel) throws IOException {
+		ByteBuffer view = this.buf.duplicate();
+		view.flip();
+
+		while (view.hasRemaining())
+			channel.write(view);
+	}
+}
@@ -16,26 +16,88 @@
 
 package org.ic4j.candid;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 
 
 final public class Bytes {
 	static final byte[] MAGIC_NUMBER = "DIDL".getBytes();
+	
+	static final int DEFAULT_CAPACITY = 8192;
+	
+	// max LEB128 length of 64 bit value
+	static final int LEB128_MAX_BYTES = 10;
 
 	ByteBuffer data;
+	
+	// optional source, data is then a bounded window refilled from it
+	ReadableByteChannel source;
+	boolean eof;
 
 	Bytes(byte[] input) {
-		this.data = ByteBuffer.wrap(input);
+		this.data = ByteBuffer.wrap(input).order(ByteOrder.LITTLE_ENDIAN);
+	}
+	
+	Bytes(ReadableByteChannel source, int capacity) {
+		this.source = source;
+		this.data = ByteBuffer.allocate(Math.max(capacity, LEB128_MAX_BYTES)).order(ByteOrder.LITTLE_ENDIAN);
+		// empty window in read mode
+		this.data.flip();
 	}
 
 	public static Bytes from(byte[] input) {
 		return new Bytes(input);
 	}
+	
+	public static Bytes from(ReadableByteChannel source) {
+		return new Bytes(source, DEFAULT_CAPACITY);
+	}
+	
+	public static Bytes from(ReadableByteChannel source, int capacity) {
+		return new Bytes(source, capacity);
+	}
+	
+	public static Bytes from(InputStream source) {
+		return new Bytes(Channels.newChannel(source), DEFAULT_CAPACITY);
+	}
+	
+	// Try to have at least len bytes in the window, stops at the end of the source
+	void fill(int len) {
+		if (this.source == null || this.eof || this.data.remaining() >= len)
+			return;
+		
+		this.data.compact();
+		
+		try {
+			while (this.data.position() < len) {
+				if (this.source.read(this.data) < 0) {
+					this.eof = true;
+					break;
+				}
+			}
+		} catch (IOException e) {
+			throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, e, e.getLocalizedMessage());
+		} finally {
+			this.data.flip();
+		}
+	}
+	
+	public boolean hasRemaining() {
+		this.fill(1);
+		
+		return this.data.hasRemaining();
+	}
 
 	public Long leb128Read() {
+		this.fill(LEB128_MAX_BYTES);
+		
 		try
 		{
 			return Leb128.readUnsigned(this.data);
@@ -46,6 +108,8 @@ final public class Bytes {
 	}
 
 	public Integer leb128ReadSigned() {
+		this.fill(LEB128_MAX_BYTES);
+		
 		try
 		{
 			return Leb128.readSigned(this.data);
@@ -56,13 +120,58 @@ final public class Bytes {
 	}
 
 	public byte parseByte() {
+		this.fill(1);
+		
 		if (this.data.remaining() < 1)
 			throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, "Unexpected end of message");
 
 		return this.data.get();
 	}
 
+	// Fixed size little endian numbers, read in place
+	public short parseShort() {
+		this.require(Short.BYTES);
+
+		return this.data.getShort();
+	}
+
+	public int parseInt() {
+		this.require(Integer.BYTES);
+
+		return this.data.getInt();
+	}
+
+	public long parseLong() {
+		this.require(Long.BYTES);
+
+		return this.data.getLong();
+	}
+
+	public float parseFloat() {
+		this.require(Float.BYTES);
+
+		return this.data.getFloat();
+	}
+
+	public double parseDouble() {
+		this.require(Double.BYTES);
+
+		return this.data.getDouble();
+	}
+
+	void require(int len) {
+		this.fill(len);
+
+		if (this.data.remaining() < len)
+			throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, "Unexpected end of message");
+	}
+
 	public byte[] parseBytes(int len) {
+		if (this.source != null && len > this.data.capacity())
+			return this.parseLargeBytes(len);
+		
+		this.fill(len);
+		
 		if (this.data.remaining() < len)
 			throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, "Unexpected end of message");
 
@@ -72,6 +181,75 @@ final public class Bytes {
 
 		return buf;
 	}
+	
+	// Little endian view of the next len bytes, in-memory input is not copied
+	public ByteBuffer parseBuffer(int len) {
+		if (this.source != null)
+			return ByteBuffer.wrap(this.parseBytes(len)).order(ByteOrder.LITTLE_ENDIAN);
+		
+		if (len < 0 || this.data.remaining() < len)
+			throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, "Unexpected end of message");
+		
+		ByteBuffer view = this.data.slice();
+		view.limit(len);
+		
+		this.data.position(this.data.position() + len);
+		
+		return view.order(ByteOrder.LITTLE_ENDIAN);
+	}
+	
+	// Read more bytes than the window holds, the target array grows with the received data
+	// so a corrupted length cannot force a huge allocation up front
+	byte[] parseLargeBytes(int len) {
+		if (len < 0)
+			throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, "Unexpected end of message");
+		
+		byte[] buf = new byte[this.data.capacity()];
+		
+		int pos = 0;
+		
+		while (pos < len) {
+			this.fill(1);
+			
+			if (!this.data.hasRemaining())
+				throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, "Unexpected end of message");
+			
+			if (pos == buf.length)
+				buf = Arrays.copyOf(buf, (int) Math.min(len, (long) buf.length << 1));
+			
+			int chunk = Math.min(this.data.remaining(), buf.length - pos);
+			
+			this.data.get(buf, pos, chunk);
+			
+			pos += chunk;
+		}
+		
+		return buf;
+	}
+
+	// Advance past len bytes without copying them
+	public void skip(long len) {
+		if (len < 0)
+			throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, "Unexpected end of message");
+		
+		while (len > 0) {
+			this.fill(1);
+			
+			if (!this.data.hasRemaining())
+				throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, "Unexpected end of message");
+			
+			int chunk = (int) Math.min(this.data.remaining(), len);
+			
+			this.data.position(this.data.position() + chunk);
+			
+			len -= chunk;
+		}
+	}
+	
+	// Advance past a LEB128 encoded number of any length
+	public void skipLeb128() {
+		while ((this.parseByte() & 0x80) != 0);
+	}
 
 	public String parseString(int len) {
 		byte[] buf = this.parseBytes(len);
@@ -81,6 +259,8 @@ final public class Bytes {
 
 	public void parseMagic() {
 		byte[] buf = new byte[4];
+		
+		this.fill(buf.length);
 
 		try
 		{
@@ -0,0 +1,517 @@
+/*
+ * Copyright 2021 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.ic4j.candid;
+
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+
+import org.ic4j.candid.types.Label;
+import org.ic4j.candid.types.Numbers;
+import org.ic4j.candid.types.Opcode;
+import org.ic4j.types.Func;
+import org.ic4j.types.Principal;
+import org.ic4j.types.Service;
+
+/*
+ * Pull style (StAX like) reader of Candid messages. Events are produced directly from
+ * the TypeTable and Bytes, no IDLValue tree is built, and whole subtrees can be skipped
+ * without decoding them.
+ *
+ * Record and variant fields are reported as FIELD, followed by the field value.
+ * Present optional values are wrapped in START_OPT/END_OPT, absent ones are reported as NONE.
+ */
+
+public final class CandidReader {
+	static final int ARGS = 0;
+	static final int RECORD = 1;
+	static final int VARIANT = 2;
+	static final int VEC = 3;
+	static final int OPT = 4;
+
+	Bytes input;
+	TypeTable table;
+
+	// argument types of the message
+	int[] args;
+
+	Frame[] stack = new Frame[16];
+	int depth;
+
+	Event event;
+
+	// value of the current event
+	long longValue;
+	double doubleValue;
+	Object objectValue;
+
+	// wire type of the current value
+	int type;
+
+	CandidReader(Bytes input) {
+		this.input = input;
+		this.table = TypeTable.fromBytes(input);
+
+		this.args = this.table.types;
+
+		for (int j = 0; j < this.stack.length; j++)
+			this.stack[j] = new Frame();
+
+		this.stack[0].set(ARGS, 0, this.args.length, 0);
+	}
+
+	public static CandidReader create(byte[] input) {
+		return new CandidReader(Bytes.from(input));
+	}
+
+	public static CandidReader create(InputStream input) {
+		return new CandidReader(Bytes.from(input));
+	}
+
+	public static CandidReader create(ReadableByteChannel input) {
+		return new CandidReader(Bytes.from(input));
+	}
+
+	public static CandidReader create(Bytes input) {
+		return new CandidReader(input);
+	}
+
+	public boolean hasNext() {
+		return this.event != Event.END_MESSAGE;
+	}
+
+	public Event next() {
+		if (this.event == Event.END_MESSAGE)
+			return this.event;
+
+		Frame frame = this.stack[this.depth];
+
+		switch (frame.kind) {
+		case ARGS:
+			if (frame.index == frame.count) {
+				if (this.input.hasRemaining())
+					throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, "Trailing type after deserializing a value");
+
+				return this.event = Event.END_MESSAGE;
+			}
+			return this.startValue(this.args[(int) frame.index++]);
+		case RECORD:
+			if (frame.fieldPending) {
+				frame.fieldPending = false;
+				return this.startValue(this.table.getFieldType(frame.type, (int) frame.index++));
+			}
+
+			if (frame.index == frame.count) {
+				this.depth--;
+				return this.event = Event.END_RECORD;
+			}
+
+			frame.fieldPending = true;
+			this.longValue = this.table.getFieldId(frame.type, (int) frame.index);
+			return this.event = Event.FIELD;
+		case VARIANT:
+			if (frame.fieldPending) {
+				frame.fieldPending = false;
+				frame.index = frame.count;
+				return this.startValue(this.table.getFieldType(frame.type, (int) frame.selected));
+			}
+
+			if (frame.index == frame.count) {
+				this.depth--;
+				return this.event = Event.END_VARIANT;
+			}
+
+			frame.fieldPending = true;
+			this.longValue = this.table.getFieldId(frame.type, (int) frame.selected);
+			return this.event = Event.FIELD;
+		case VEC:
+			if (frame.index == frame.count) {
+				this.depth--;
+				return this.event = Event.END_VEC;
+			}
+
+			frame.index++;
+			return this.startValue(frame.type);
+		case OPT:
+			if (frame.index == frame.count) {
+				this.depth--;
+				return this.event = Event.END_OPT;
+			}
+
+			frame.index++;
+			return this.startValue(frame.type);
+		default:
+			throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, "Invalid reader state");
+		}
+	}
+
+	// Skip the value the next call to next() would start, including its whole subtree
+	public void skipValue() {
+		if (this.event == Event.END_MESSAGE)
+			return;
+
+		Frame frame = this.stack[this.depth];
+
+		int valueType;
+
+		switch (frame.kind) {
+		case ARGS:
+			if (frame.index == frame.count)
+				return;
+			valueType = this.args[(int) frame.index++];
+			break;
+		case RECORD:
+			if (!frame.fieldPending)
+				return;
+			frame.fieldPending = false;
+			valueType = this.table.getFieldType(frame.type, (int) frame.index++);
+			break;
+		case VARIANT:
+			if (!frame.fieldPending)
+				return;
+			frame.fieldPending = false;
+			frame.index = frame.count;
+			valueType = this.table.getFieldType(frame.type, (int) frame.selected);
+			break;
+		case VEC:
+		case OPT:
+			if (frame.index == frame.count)
+				return;
+			frame.index++;
+			valueType = frame.type;
+			break;
+		default:
+			throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, "Invalid reader state");
+		}
+
+		this.skip(valueType, 0);
+	}
+
+	// Skip the rest of the container started by the current event, the current event becomes its end event
+	public void skipChildren() {
+		if (this.event != Event.START_RECORD && this.event != Event.START_VARIANT && this.event != Event.START_VEC
+				&& this.event != Event.START_OPT)
+			return;
+
+		Frame frame = this.stack[this.depth];
+
+		switch (frame.kind) {
+		case RECORD:
+			for (long i = frame.index; i < frame.count; i++)
+				this.skip(this.table.getFieldType(frame.type, (int) i), 0);
+			this.event = Event.END_RECORD;
+			break;
+		case VARIANT:
+			this.skip(this.table.getFieldType(frame.type, (int) frame.selected), 0);
+			this.event = Event.END_VARIANT;
+			break;
+		case VEC:
+			Deserializer.skipVec(this.table, this.input, frame.type, frame.count - frame.index);
+			this.event = Event.END_VEC;
+			break;
+		case OPT:
+			this.skip(frame.type, 0);
+			this.event = Event.END_OPT;
+			break;
+		default:
+			return;
+		}
+
+		this.depth--;
+	}
+
+	// Read the elements of a vec of nat8 or int8 started by the current event in one step, the current event
+	// becomes END_VEC. Returns null for other values
+	public byte[] readBytes() {
+		if (this.event != Event.START_VEC)
+			return null;
+
+		Frame frame = this.stack[this.depth];
+
+		int opcode = this.table.opcode(frame.type);
+
+		if (opcode != -5 && opcode != -9)
+			return null;
+
+		long len = frame.count - frame.index;
+
+		if (len > Integer.MAX_VALUE)
+			throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, String.format("Vec length %d too large", len));
+
+		byte[] bytes = this.input.parseBytes((int) len);
+
+		this.event = Event.END_VEC;
+		this.depth--;
+
+		return bytes;
+	}
+
+	Event startValue(int valueType) {
+		this.type = valueType;
+		this.objectValue = null;
+
+		int opcode = this.table.opcode(valueType);
+
+		switch (opcode) {
+		case -1:
+			return this.event = Event.NULL;
+		case -2: {
+			byte b = this.input.parseByte();
+
+			if (b > 1 || b < 0)
+				throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, "Not a boolean value");
+
+			this.longValue = b;
+			return this.event = Event.BOOL;
+		}
+		case -3:
+			this.objectValue = Numbers.decodeBigNat(this.input);
+			return this.event = Event.NAT;
+		case -4:
+			this.objectValue = Numbers.decodeBigInt(this.input);
+			return this.event = Event.INT;
+		case -5:
+			this.longValue = Byte.toUnsignedLong(this.input.parseByte());
+			return this.event = Event.NAT8;
+		case -6:
+			this.longValue = this.input.parseShort() & 0xffffL;
+			return this.event = Event.NAT16;
+		case -7:
+			this.longValue = this.input.parseInt() & 0xffffffffL;
+			return this.event = Event.NAT32;
+		case -8:
+			this.longValue = this.input.parseLong();
+			return this.event = Event.NAT64;
+		case -9:
+			this.longValue = this.input.parseByte();
+			return this.event = Event.INT8;
+		case -10:
+			this.longValue = this.input.parseShort();
+			return this.event = Event.INT16;
+		case -11:
+			this.longValue = this.input.parseInt();
+			return this.event = Event.INT32;
+		case -12:
+			this.longValue = this.input.parseLong();
+			return this.event = Event.INT64;
+		case -13:
+			this.doubleValue = this.input.parseFloat();
+			return this.event = Event.FLOAT32;
+		case -14:
+			this.doubleValue = this.input.parseDouble();
+			return this.event = Event.FLOAT64;
+		case -15:
+			this.objectValue = this.input.parseString(this.input.leb128Read().intValue());
+			return this.event = Event.TEXT;
+		case -16:
+			return this.event = Event.RESERVED;
+		case -24:
+			this.objectValue = Principal.from(this.readReference());
+			return this.event = Event.PRINCIPAL;
+		case -22: {
+			this.checkReference();
+			Principal principal = Principal.from(this.readReference());
+			String method = this.input.parseString(this.input.leb128Read().intValue());
+			this.objectValue = new Func(principal, method);
+			return this.event = Event.FUNC;
+		}
+		case -23:
+			this.objectValue = new Service(Principal.from(this.readReference()));
+			return this.event = Event.SERVICE;
+		case -18: {
+			int inner = this.table.get(valueType, 1);
+
+			switch (this.input.parseByte()) {
+			case 0:
+				return this.event = Event.NONE;
+			case 1:
+				this.push(OPT, inner, 1, 0);
+				return this.event = Event.START_OPT;
+			default:
+				throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, "Not an option tag");
+			}
+		}
+		case -19: {
+			long len = this.input.leb128Read();
+			this.longValue = len;
+			this.push(VEC, this.table.get(valueType, 1), len, 0);
+			return this.event = Event.START_VEC;
+		}
+		case -20: {
+			Frame parent = this.stack[this.depth];
+			int recordDepth = parent.kind == RECORD ? parent.recordDepth + 1 : 1;
+
+			if (recordDepth > this.table.size())
+				throw CandidError.create(CandidError.CandidErrorCode.CUSTOM,
+						"There is an infinite loop in the record definition, the type is isomorphic to an empty type");
+
+			int len = this.table.get(valueType, 1);
+			this.longValue = len;
+			this.push(RECORD, valueType, len, recordDepth);
+			return this.event = Event.START_RECORD;
+		}
+		case -21: {
+			int len = this.table.get(valueType, 1);
+			long idx = this.input.leb128Read();
+
+			if (idx >= len)
+				throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, String.format("Variant index %d larger than length %d", idx, len));
+
+			this.longValue = idx;
+			this.push(VARIANT, valueType, 1, 0);
+			this.stack[this.depth].selected = idx;
+			return this.event = Event.START_VARIANT;
+		}
+		default:
+			throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, String.format("Unrecogized type %d", opcode));
+		}
+	}
+
+	void push(int kind, int type, long count, int recordDepth) {
+		if (++this.depth == this.stack.length) {
+			this.stack = Arrays.copyOf(this.stack, this.stack.length << 1);
+
+			for (int i = this.depth; i < this.stack.length; i++)
+				this.stack[i] = new Frame();
+		}
+
+		this.stack[this.depth].set(kind, type, count, recordDepth);
+	}
+
+	void checkReference() {
+		Deserializer.checkReference(this.input);
+	}
+
+	byte[] readReference() {
+		this.checkReference();
+
+		return this.input.parseBytes(this.input.leb128Read().intValue());
+	}
+
+	void skip(int valueType, int recordDepth) {
+		Deserializer.skipValue(this.table, this.input, valueType, recordDepth);
+	}
+
+	public Event getEvent() {
+		return this.event;
+	}
+
+	// Wire type of the current value, either negative opcode or type table index
+	public int getWireType() {
+		return this.type;
+	}
+
+	public Opcode getOpcode() {
+		return Opcode.from(this.table.opcode(this.type));
+	}
+
+	// Opcode of the elements for START_VEC
+	public Opcode getElementOpcode() {
+		if (this.event != Event.START_VEC)
+			return null;
+
+		return Opcode.from(this.table.opcode(this.stack[this.depth].type));
+	}
+
+	// Field id for FIELD
+	public long getFieldId() {
+		return this.longValue;
+	}
+
+	public Label getLabel() {
+		return Label.createIdLabel(this.longValue);
+	}
+
+	// Number of elements for START_VEC, number of fields for START_RECORD, selected index for START_VARIANT
+	public long getLength() {
+		return this.longValue;
+	}
+
+	public boolean getBoolean() {
+		return this.longValue == 1;
+	}
+
+	// NAT64 is returned as unsigned bits
+	public long getLong() {
+		return this.longValue;
+	}
+
+	public int getInt() {
+		return (int) this.longValue;
+	}
+
+	public double getDouble() {
+		return this.doubleValue;
+	}
+
+	public float getFloat() {
+		return (float) this.doubleValue;
+	}
+
+	public BigInteger getBigInteger() {
+		if (this.objectValue instanceof BigInteger)
+			return (BigInteger) this.objectValue;
+
+		if (this.event == Event.NAT64)
+			return new BigInteger(Long.toUnsignedString(this.longValue));
+
+		return BigInteger.valueOf(this.longValue);
+	}
+
+	public String getText() {
+		return (String) this.objectValue;
+	}
+
+	public Principal getPrincipal() {
+		return (Principal) this.objectValue;
+	}
+
+	public Func getFunc() {
+		return (Func) this.objectValue;
+	}
+
+	public Service getService() {
+		return (Service) this.objectValue;
+	}
+
+	public enum Event {
+		NULL, BOOL, NAT, INT, NAT8, NAT16, NAT32, NAT64, INT8, INT16, INT32, INT64, FLOAT32, FLOAT64, TEXT, RESERVED,
+		PRINCIPAL, FUNC, SERVICE, NONE, START_OPT, END_OPT, START_VEC, END_VEC, START_RECORD, FIELD, END_RECORD,
+		START_VARIANT, END_VARIANT, END_MESSAGE;
+	}
+
+	static final class Frame {
+		int kind;
+		int type;
+		long index;
+		long count;
+		long selected;
+		int recordDepth;
+		boolean fieldPending;
+
+		void set(int kind, int type, long count, int recordDepth) {
+			this.kind = kind;
+			this.type = type;
+			this.count = count;
+			this.recordDepth = recordDepth;
+			this.index = 0;
+			this.selected = 0;
+			this.fieldPending = false;
+		}
+	}
+}
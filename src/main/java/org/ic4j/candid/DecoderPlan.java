@@ -0,0 +1,356 @@
+/*
+ * Copyright 2021 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.ic4j.candid;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+import org.ic4j.candid.parser.IDLType;
+import org.ic4j.candid.parser.IDLValue;
+import org.ic4j.candid.types.Label;
+import org.ic4j.candid.types.Numbers;
+import org.ic4j.candid.types.Opcode;
+import org.ic4j.candid.types.Type;
+
+/*
+ * Type table compiled into a tree of node readers, one per table entry and wire primitive.
+ * Field ids, labels and func/service types are resolved once, decoding a message is a straight
+ * walk over the nodes. Produces the same IDLValues as Deserializer without an expected type.
+ * Plans are immutable and shared by all messages with the same type table.
+ */
+public final class DecoderPlan {
+	// stateless readers of wire primitives, indexed by -opcode
+	static final Node[] PRIMITIVES = new Node[-Opcode.PRINCIPAL.value + 1];
+
+	static {
+		for (int i = 1; i < PRIMITIVES.length; i++)
+			PRIMITIVES[i] = new PrimitiveNode(-i);
+	}
+
+	final Node[] entries;
+	final Node[] args;
+	final int tableSize;
+
+	DecoderPlan(Node[] entries, Node[] args, int tableSize) {
+		this.entries = entries;
+		this.args = args;
+		this.tableSize = tableSize;
+	}
+
+	public static DecoderPlan compile(TypeTable table) {
+		int size = table.size();
+
+		Node[] entries = new Node[size];
+
+		// create nodes first, recursive types are linked afterwards
+		for (int i = 0; i < size; i++)
+			entries[i] = createNode(table, i);
+
+		DecoderPlan plan = new DecoderPlan(entries, new Node[table.types.length], size);
+
+		for (int i = 0; i < size; i++)
+			entries[i].link(plan, table, i);
+
+		for (int i = 0; i < table.types.length; i++)
+			plan.args[i] = plan.node(table.types[i]);
+
+		return plan;
+	}
+
+	static Node createNode(TypeTable table, int idx) {
+		int opcode = table.get(idx, 0);
+
+		switch (opcode) {
+		case -18:
+			return new OptNode();
+		case -19:
+			return new VecNode();
+		case -20:
+			return new RecordNode();
+		case -21:
+			return new VariantNode();
+		case -22:
+		case -23:
+			return new ReferenceNode(opcode, Deserializer.toIDLType(table.rawValueToOpcode(idx), table));
+		default:
+			throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, String.format("Unsupported op_code %d in type table", opcode));
+		}
+	}
+
+	Node node(int type) {
+		if (type >= 0) {
+			if (type >= this.entries.length)
+				throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, String.format("Unknown type %d", type));
+
+			return this.entries[type];
+		}
+
+		if (type == Opcode.PRINCIPAL.value || (type < 0 && type >= Opcode.RESERVED.value))
+			return PRIMITIVES[-type];
+
+		throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, String.format("Unrecogized type %d", type));
+	}
+
+	// Decode all remaining argument values of the message
+	List<IDLValue> decode(Bytes input, TypeTable table) {
+		List<IDLValue> values = new ArrayList<IDLValue>(this.args.length - table.typeIndex);
+
+		while (table.typeIndex < this.args.length)
+			values.add(this.args[table.typeIndex++].read(input, 0));
+
+		return values;
+	}
+
+	abstract static class Node {
+		void link(DecoderPlan plan, TypeTable table, int idx) {
+		}
+
+		// recordDepth counts directly nested records, to detect types isomorphic to an empty type
+		abstract IDLValue read(Bytes input, int recordDepth);
+	}
+
+	static final class PrimitiveNode extends Node {
+		final int opcode;
+
+		PrimitiveNode(int opcode) {
+			this.opcode = opcode;
+		}
+
+		@Override
+		IDLValue read(Bytes input, int recordDepth) {
+			switch (this.opcode) {
+			case -1:
+				return IDLValue.create(null);
+			case -2: {
+				byte b = input.parseByte();
+
+				if (b > 1)
+					throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, "Not a boolean value");
+
+				return IDLValue.create(Boolean.valueOf(b == 1));
+			}
+			case -3:
+				return IDLValue.create(Numbers.decodeBigNat(input), Type.NAT);
+			case -4:
+				return IDLValue.create(Numbers.decodeBigInt(input), Type.INT);
+			case -5:
+				return IDLValue.create(input.parseByte(), Type.NAT8);
+			case -6:
+				return IDLValue.create(input.parseShort(), Type.NAT16);
+			case -7:
+				return IDLValue.create(input.parseInt(), Type.NAT32);
+			case -8:
+				return IDLValue.create(input.parseLong(), Type.NAT64);
+			case -9:
+				return IDLValue.create(input.parseByte(), Type.INT8);
+			case -10:
+				return IDLValue.create(input.parseShort(), Type.INT16);
+			case -11:
+				return IDLValue.create(input.parseInt(), Type.INT32);
+			case -12:
+				return IDLValue.create(input.parseLong(), Type.INT64);
+			case -13:
+				return IDLValue.create(input.parseFloat(), Type.FLOAT32);
+			case -14:
+				return IDLValue.create(input.parseDouble(), Type.FLOAT64);
+			case -15:
+				return IDLValue.create(input.parseString(input.leb128Read().intValue()));
+			case -16:
+				return IDLValue.create(new Object(), Type.RESERVED);
+			default:
+				return IDLValue.create(Deserializer.readPrincipal(input));
+			}
+		}
+	}
+
+	static final class OptNode extends Node {
+		Node inner;
+		// type of an empty option
+		IDLType emptyType;
+
+		@Override
+		void link(DecoderPlan plan, TypeTable table, int idx) {
+			int ty = table.get(idx, 1);
+
+			this.inner = plan.node(ty);
+
+			try {
+				this.emptyType = IDLType.createType(Type.OPT, IDLType.createType(Type.from(ty)));
+			} catch (CandidError e) {
+				this.emptyType = IDLType.createType(Type.OPT, IDLType.createType(Type.NULL));
+			}
+		}
+
+		@Override
+		IDLValue read(Bytes input, int recordDepth) {
+			switch (input.parseByte()) {
+			case 0:
+				return IDLValue.create(Optional.empty(), this.emptyType);
+			case 1:
+				IDLValue idlValue = this.inner.read(input, 0);
+
+				return IDLValue.create(Optional.ofNullable(idlValue.getValue()), IDLType.createType(Type.OPT, idlValue.getIDLType()));
+			default:
+				throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, String.format("Not an option tag"));
+			}
+		}
+	}
+
+	static final class VecNode extends Node {
+		Node element;
+		int elementType;
+		// fixed size primitive elements are decoded in bulk
+		Opcode primitiveOpcode;
+		IDLType primitiveType;
+
+		@Override
+		void link(DecoderPlan plan, TypeTable table, int idx) {
+			this.elementType = table.get(idx, 1);
+			this.element = plan.node(this.elementType);
+			this.primitiveOpcode = Deserializer.primitiveElementOpcode(this.elementType);
+
+			if (this.primitiveOpcode != null)
+				this.primitiveType = IDLType.createType(Type.VEC, IDLType.createType(Type.from(this.primitiveOpcode.value)));
+		}
+
+		@Override
+		IDLValue read(Bytes input, int recordDepth) {
+			int len = input.leb128Read().intValue();
+
+			if (len > 0 && this.primitiveOpcode != null)
+				return IDLValue.create(Deserializer.deserializePrimitiveVec(input, this.primitiveOpcode, len, null), this.primitiveType);
+
+			List<Object> values = new ArrayList<Object>(Math.min(len, 1024));
+
+			IDLType innerIdlType = null;
+
+			for (int i = 0; i < len; i++) {
+				IDLValue idlValue = this.element.read(input, 0);
+
+				values.add(idlValue.getValue());
+
+				innerIdlType = idlValue.getIDLType();
+			}
+
+			Object[] array = Deserializer.toArray(values, this.elementType);
+
+			if (innerIdlType == null)
+				return IDLValue.create(array);
+			else
+				return IDLValue.create(array, IDLType.createType(Type.VEC, innerIdlType));
+		}
+	}
+
+	static final class RecordNode extends Node {
+		Label[] labels;
+		Node[] fields;
+		boolean[] records;
+		int tableSize;
+
+		@Override
+		void link(DecoderPlan plan, TypeTable table, int idx) {
+			int len = table.get(idx, 1);
+
+			this.labels = new Label[len];
+			this.fields = new Node[len];
+			this.records = new boolean[len];
+			this.tableSize = plan.tableSize;
+
+			for (int i = 0; i < len; i++) {
+				int ty = table.getFieldType(idx, i);
+
+				this.labels[i] = Label.createIdLabel(table.getFieldId(idx, i));
+				this.fields[i] = plan.node(ty);
+				this.records[i] = table.opcode(ty) == Opcode.RECORD.value;
+			}
+		}
+
+		@Override
+		IDLValue read(Bytes input, int recordDepth) {
+			if (++recordDepth > this.tableSize)
+				throw CandidError.create(CandidError.CandidErrorCode.CUSTOM,
+						"There is an infinite loop in the record definition, the type is isomorphic to an empty type");
+
+			Map<Label, Object> map = new TreeMap<Label, Object>();
+			Map<Label, IDLType> typeMap = new TreeMap<Label, IDLType>();
+
+			for (int i = 0; i < this.fields.length; i++) {
+				IDLValue idlValue = this.fields[i].read(input, this.records[i] ? recordDepth : 0);
+
+				typeMap.put(this.labels[i], idlValue.getIDLType());
+				map.put(this.labels[i], idlValue.getValue());
+			}
+
+			return IDLValue.create(map, typeMap);
+		}
+	}
+
+	static final class VariantNode extends Node {
+		Label[] labels;
+		Node[] fields;
+
+		@Override
+		void link(DecoderPlan plan, TypeTable table, int idx) {
+			int len = table.get(idx, 1);
+
+			this.labels = new Label[len];
+			this.fields = new Node[len];
+
+			for (int i = 0; i < len; i++) {
+				this.labels[i] = Label.createIdLabel(table.getFieldId(idx, i));
+				this.fields[i] = plan.node(table.getFieldType(idx, i));
+			}
+		}
+
+		@Override
+		IDLValue read(Bytes input, int recordDepth) {
+			long idx = input.leb128Read();
+
+			if (idx >= this.fields.length)
+				throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, String.format("Variant index %d larger than length %d", idx, this.fields.length));
+
+			IDLValue idlValue = this.fields[(int) idx].read(input, 0);
+
+			Map<Label, Object> map = new TreeMap<Label, Object>();
+
+			map.put(this.labels[(int) idx], idlValue.getValue());
+
+			return IDLValue.create(map, Type.VARIANT);
+		}
+	}
+
+	static final class ReferenceNode extends Node {
+		final int opcode;
+		final IDLType idlType;
+
+		ReferenceNode(int opcode, IDLType idlType) {
+			this.opcode = opcode;
+			this.idlType = idlType;
+		}
+
+		@Override
+		IDLValue read(Bytes input, int recordDepth) {
+			if (this.opcode == Opcode.FUNC.value)
+				return IDLValue.create(Deserializer.readFunc(input), this.idlType);
+			else
+				return IDLValue.create(Deserializer.readService(input), this.idlType);
+		}
+	}
+}
@@ -16,15 +16,18 @@
 
 package org.ic4j.candid;
 
+import java.io.InputStream;
 import java.math.BigInteger;
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.TreeMap;
 
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.ClassUtils;
 import org.ic4j.candid.parser.IDLType;
 import org.ic4j.candid.parser.IDLValue;
 import org.ic4j.candid.types.Label;
@@ -46,6 +49,9 @@ public final class Deserializer {
 
 	int recordNestingDepth;
 	
+	// number of opt values being decoded, unexpected variant arms are decoded as null inside them
+	int optDepth;
+	
 	Opcode type;
 
 	Deserializer(Bytes input, TypeTable table, String fieldName, int recordNestingDepth) {
@@ -59,9 +65,31 @@ public final class Deserializer {
 	}
 
 	public static Deserializer fromBytes(byte[] input) {
-		TypeTableResponse response = TypeTable.fromBytes(input);
+		return fromBytes(Bytes.from(input));
+	}
+
+	// type table and values are read from the same input, without copying the values section
+	public static Deserializer fromBytes(Bytes input) {
+		TypeTable typeTable = TypeTable.fromBytes(input);
+
+		return new Deserializer(input, typeTable, null, 0);
+	}
+
+	// type table is taken from the cache if the same table was parsed before
+	public static Deserializer fromBytes(byte[] input, TypeTableCache cache) {
+		Bytes bytes = Bytes.from(input);
+		
+		TypeTable typeTable = TypeTable.fromBytes(bytes, cache);
 
-		return new Deserializer(Bytes.from(response.data), response.typeTable, null, 0);
+		return new Deserializer(bytes, typeTable, null, 0);
+	}
+
+	public static Deserializer fromStream(InputStream input) {
+		return fromBytes(Bytes.from(input));
+	}
+
+	public static Deserializer fromChannel(ReadableByteChannel input) {
+		return fromBytes(Bytes.from(input));
 	}
 
 	public IDLValue deserializeAny() {
@@ -74,6 +102,12 @@ public final class Deserializer {
 		if (type != Opcode.RECORD)
 			this.recordNestingDepth = 0;
 
+		// reserved expected type accepts any value, nothing to decode
+		if (this.expectedType.isPresent() && this.expectedType.get().getType() == Type.RESERVED) {
+			this.skipValue();
+			return IDLValue.create(new Object(), Type.RESERVED);
+		}
+
 		switch (type) {
 		case NULL:
 			return this.deserializeNull();
@@ -182,7 +216,7 @@ public final class Deserializer {
 		this.recordNestingDepth = 0;
 		this.table.checkType(Opcode.FLOAT64);
 
-		Double value = ByteBuffer.wrap(this.input.parseBytes(Double.BYTES)).order(ByteOrder.LITTLE_ENDIAN).getDouble();
+		Double value = this.input.parseDouble();
 
 		return IDLValue.create(value, Type.FLOAT64);
 	}
@@ -191,7 +225,7 @@ public final class Deserializer {
 		this.recordNestingDepth = 0;
 		this.table.checkType(Opcode.FLOAT32);
 
-		Float value = ByteBuffer.wrap(this.input.parseBytes(Float.BYTES)).order(ByteOrder.LITTLE_ENDIAN).getFloat();
+		Float value = this.input.parseFloat();
 
 		return IDLValue.create(value, Type.FLOAT32);
 	}
@@ -209,7 +243,7 @@ public final class Deserializer {
 		this.recordNestingDepth = 0;
 		this.table.checkType(Opcode.NAT16);
 
-		Short value = ByteBuffer.wrap(this.input.parseBytes(Short.BYTES)).order(ByteOrder.LITTLE_ENDIAN).getShort();
+		Short value = this.input.parseShort();
 
 		return IDLValue.create(value, Type.NAT16);
 	}
@@ -218,7 +252,7 @@ public final class Deserializer {
 		this.recordNestingDepth = 0;
 		this.table.checkType(Opcode.NAT32);
 
-		Integer value = ByteBuffer.wrap(this.input.parseBytes(Integer.BYTES)).order(ByteOrder.LITTLE_ENDIAN).getInt();
+		Integer value = this.input.parseInt();
 
 		return IDLValue.create(value, Type.NAT32);
 	}
@@ -227,7 +261,7 @@ public final class Deserializer {
 		this.recordNestingDepth = 0;
 		this.table.checkType(Opcode.NAT64);
 
-		Long value = ByteBuffer.wrap(this.input.parseBytes(Long.BYTES)).order(ByteOrder.LITTLE_ENDIAN).getLong();
+		Long value = this.input.parseLong();
 
 		return IDLValue.create(value, Type.NAT64);
 	}
@@ -245,7 +279,7 @@ public final class Deserializer {
 		this.recordNestingDepth = 0;
 		this.table.checkType(Opcode.INT16);
 
-		Short value = ByteBuffer.wrap(this.input.parseBytes(Short.BYTES)).order(ByteOrder.LITTLE_ENDIAN).getShort();
+		Short value = this.input.parseShort();
 
 		return IDLValue.create(value, Type.INT16);
 	}
@@ -254,7 +288,7 @@ public final class Deserializer {
 		this.recordNestingDepth = 0;
 		this.table.checkType(Opcode.INT32);
 
-		Integer value = ByteBuffer.wrap(this.input.parseBytes(Integer.BYTES)).order(ByteOrder.LITTLE_ENDIAN).getInt();
+		Integer value = this.input.parseInt();
 
 		return IDLValue.create(value, Type.INT32);
 	}
@@ -263,7 +297,7 @@ public final class Deserializer {
 		this.recordNestingDepth = 0;
 		this.table.checkType(Opcode.INT64);
 
-		Long value = ByteBuffer.wrap(this.input.parseBytes(Long.BYTES)).order(ByteOrder.LITTLE_ENDIAN).getLong();
+		Long value = this.input.parseLong();
 
 		return IDLValue.create(value, Type.INT64);
 	}
@@ -274,58 +308,56 @@ public final class Deserializer {
 		if(opcode != Opcode.FUNC)
 			throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, String.format("Not an expected type %d",opcode.value));
 		
-		byte bit = this.input.parseByte();
+		Func value = readFunc(this.input);
+			
+		return IDLValue.create(value, toIDLType(opcode) );
+	}
+	
+	public IDLValue deserializeService() {
+		Opcode opcode = this.table.parseType();	
+		
+		if(opcode != Opcode.SERVICE)
+			throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, String.format("Not an expected type %d",opcode.value));
+		Service value = readService(this.input);
+
+		return IDLValue.create(value , toIDLType(opcode)  );		
+	}	
+
+	static Func readFunc(Bytes input) {
+		byte bit = input.parseByte();
 
 		if (bit != (byte) 1)
 			throw CandidError.create(CandidError.CandidErrorCode.CUSTOM,
 					String.format("Opaque reference not supported"));
 		
 		// parse Principal
-		bit = this.input.parseByte();
-
-		if (bit != (byte) 1)
-			throw CandidError.create(CandidError.CandidErrorCode.CUSTOM,
-					String.format("Opaque reference not supported"));		
-
-		int len = this.input.leb128Read().intValue();
-
-		byte[] bytes = this.input.parseBytes(len);
-
-		Principal principal = Principal.from(bytes);
+		Principal principal = readPrincipal(input);
 		
 		// parse method name
-		
-		len = this.input.leb128Read().intValue();
+		int len = input.leb128Read().intValue();
 
-		String method = this.input.parseString(len);
+		String method = input.parseString(len);
 		
-		Func value = new Func(principal,method);
-			
-		return IDLValue.create(value, toIDLType(opcode) );
+		return new Func(principal,method);
 	}
 	
-	public IDLValue deserializeService() {
-		Opcode opcode = this.table.parseType();	
-		
-		if(opcode != Opcode.SERVICE)
-			throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, String.format("Not an expected type %d",opcode.value));
-		// parse Principal
-		byte bit = this.input.parseByte();
+	static Service readService(Bytes input) {
+		return new Service(readPrincipal(input));
+	}
+	
+	static Principal readPrincipal(Bytes input) {
+		byte bit = input.parseByte();
 
 		if (bit != (byte) 1)
 			throw CandidError.create(CandidError.CandidErrorCode.CUSTOM,
-					String.format("Opaque reference not supported"));		
-
-		int len = this.input.leb128Read().intValue();
+					String.format("Opaque reference not supported"));
 
-		byte[] bytes = this.input.parseBytes(len);
+		int len = input.leb128Read().intValue();
 
-		Principal principal = Principal.from(bytes);
-		
-		Service value = new Service(principal);	
+		byte[] bytes = input.parseBytes(len);
 
-		return IDLValue.create(value , toIDLType(opcode)  );		
-	}	
+		return Principal.from(bytes);
+	}
 
 	public IDLValue deserializeOpt() {
 		this.recordNestingDepth = 0;
@@ -347,7 +379,7 @@ public final class Deserializer {
 			this.table.parseType();
 			switch (this.input.parseByte()) {
 			case 0:
-				Integer ty = this.table.popCurrentType().intValue();
+				int ty = this.table.popCurrentType();
 				
 				try {
 					innerIdlType = IDLType.createType(Type.from(ty));
@@ -358,7 +390,16 @@ public final class Deserializer {
 				value = Optional.empty();
 				break;
 			case 1:
-				IDLValue idlValue = this.deserializeAny();
+				IDLValue idlValue;
+				
+				this.optDepth++;
+				
+				try {
+					idlValue = this.deserializeAny();
+				} finally {
+					this.optDepth--;
+				}
+				
 				innerIdlType = idlValue.getIDLType();
 				value = Optional.ofNullable(idlValue.getValue());
 				break;
@@ -398,11 +439,26 @@ public final class Deserializer {
 					this.expectedType = Optional.ofNullable(expectedType.get().getInnerType());
 			
 			int len = this.input.leb128Read().intValue();
+			
+			Opcode elementOpcode = primitiveElementOpcode(this.table.peekCurrentType());
+			
+			Class<?> javaType = expectedType.isPresent() ? expectedType.get().getJavaType() : null;
+			
+			// fixed size primitive elements are decoded in bulk, empty vecs too if a primitive array is expected
+			if(elementOpcode != null && (len > 0 || isPrimitiveArray(javaType)))
+			{
+				value = this.deserializePrimitiveVec(elementOpcode, len, javaType);
+				
+				innerIdlType = IDLType.createType(Type.from(elementOpcode.value));
+				
+				this.table.popCurrentType();
+				break;
+			}
 
 			List values = new ArrayList<>(len);
 
 			for (int i = 0; i < len; i++) {
-				Long ty = this.table.peekCurrentType();
+				int ty = this.table.peekCurrentType();
 
 				IDLValue idlValue = this.deserializeAny();
 
@@ -410,7 +466,7 @@ public final class Deserializer {
 				
 				innerIdlType = idlValue.getIDLType();
 				
-				this.table.currentType.addFirst(ty);
+				this.table.pushCurrentType(ty);
 			}
 
 			Object[] array = this.toArray(values);
@@ -433,6 +489,145 @@ public final class Deserializer {
 			return IDLValue.create(value, IDLType.createType(Type.VEC, innerIdlType));
 	}
 
+	static Opcode primitiveElementOpcode(int ty) {
+		switch (ty) {
+		case -2:
+		case -5:
+		case -6:
+		case -7:
+		case -8:
+		case -9:
+		case -10:
+		case -11:
+		case -12:
+		case -13:
+		case -14:
+			return Opcode.from(ty);
+		default:
+			return null;
+		}
+	}
+	
+	// Java class of the elements decoded in bulk
+	static Class<?> primitiveClass(Opcode opcode) {
+		switch (opcode) {
+		case BOOL:
+			return boolean.class;
+		case NAT16:
+		case INT16:
+			return short.class;
+		case NAT32:
+		case INT32:
+			return int.class;
+		case NAT64:
+		case INT64:
+			return long.class;
+		case FLOAT32:
+			return float.class;
+		case FLOAT64:
+			return double.class;
+		default:
+			return byte.class;
+		}
+	}
+	
+	static int primitiveSize(Opcode opcode) {
+		switch (opcode) {
+		case NAT16:
+		case INT16:
+			return Short.BYTES;
+		case NAT32:
+		case INT32:
+		case FLOAT32:
+			return Integer.BYTES;
+		case NAT64:
+		case INT64:
+		case FLOAT64:
+			return Long.BYTES;
+		default:
+			return Byte.BYTES;
+		}
+	}
+	
+	// Read the whole run of elements from a little endian view of the input.
+	// Primitive array is returned when the expected Java type asks for it, otherwise wrapper array.
+	Object deserializePrimitiveVec(Opcode opcode, int len, Class<?> javaType) {
+		return deserializePrimitiveVec(this.input, opcode, len, javaType);
+	}
+	
+	static boolean isPrimitiveArray(Class<?> javaType) {
+		return javaType != null && javaType.isArray() && javaType.getComponentType().isPrimitive();
+	}
+	
+	static Object deserializePrimitiveVec(Bytes input, Opcode opcode, int len, Class<?> javaType) {
+		boolean primitive = isPrimitiveArray(javaType);
+		
+		// expected arrays of primitives or their wrappers have to match the element width
+		if (javaType != null && javaType.isArray()) {
+			Class<?> component = primitive ? javaType.getComponentType() : ClassUtils.wrapperToPrimitive(javaType.getComponentType());
+			
+			if (component != null && component != primitiveClass(opcode))
+				throw CandidError.create(CandidError.CandidErrorCode.CUSTOM,
+						String.format("Cannot decode vec %s into %s", opcode.name().toLowerCase(), javaType.getSimpleName()));
+		}
+		
+		long size = (long) len * primitiveSize(opcode);
+		
+		if (size > Integer.MAX_VALUE)
+			throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, "Unexpected end of message");
+		
+		ByteBuffer buf = input.parseBuffer((int) size);
+		
+		switch (opcode) {
+		case BOOL: {
+			boolean[] values = new boolean[len];
+			for (int i = 0; i < len; i++) {
+				byte b = buf.get();
+				if (b > 1 || b < 0)
+					throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, "Not a boolean value");
+				values[i] = b == 1;
+			}
+			return primitive ? values : ArrayUtils.toObject(values);
+		}
+		case NAT8:
+		case INT8: {
+			byte[] values = new byte[len];
+			buf.get(values);
+			return primitive ? values : ArrayUtils.toObject(values);
+		}
+		case NAT16:
+		case INT16: {
+			short[] values = new short[len];
+			buf.asShortBuffer().get(values);
+			return primitive ? values : ArrayUtils.toObject(values);
+		}
+		case NAT32:
+		case INT32: {
+			int[] values = new int[len];
+			buf.asIntBuffer().get(values);
+			return primitive ? values : ArrayUtils.toObject(values);
+		}
+		case NAT64:
+		case INT64: {
+			long[] values = new long[len];
+			buf.asLongBuffer().get(values);
+			return primitive ? values : ArrayUtils.toObject(values);
+		}
+		case FLOAT32: {
+			float[] values = new float[len];
+			buf.asFloatBuffer().get(values);
+			return primitive ? values : ArrayUtils.toObject(values);
+		}
+		case FLOAT64: {
+			double[] values = new double[len];
+			buf.asDoubleBuffer().get(values);
+			return primitive ? values : ArrayUtils.toObject(values);
+		}
+		default:
+			throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, String.format("Unsupported element type %d", opcode.value));
+		}
+	}
+
 	public IDLValue deserializeRecord() {
 		int oldNesting = this.recordNestingDepth;
 		
@@ -443,7 +638,7 @@ public final class Deserializer {
 
 		this.recordNestingDepth++;
 
-		if (this.recordNestingDepth > this.table.table.size())
+		if (this.recordNestingDepth > this.table.size())
 			throw CandidError.create(CandidError.CandidErrorCode.CUSTOM,
 					"There is an infinite loop in the record definition, the type is isomorphic to an empty type");
 		
@@ -453,14 +648,12 @@ public final class Deserializer {
 			else
 				expectedTypeMap = Optional.ofNullable(expectedType.get().getTypeMap());
 
-		int len = this.table.popCurrentType().intValue();
+		int len = this.table.popCurrentType();
 
 		Map<Long, Optional> fs = new TreeMap<Long, Optional>();
 
-		Long[] currentType = (Long[]) this.table.currentType.toArray(new Long[this.table.currentType.size()]);
-
 		for (int i = 0; i < len; i++) {
-			Long hash = currentType[2 * i];
+			Long hash = Integer.toUnsignedLong(this.table.peekCurrentType(2 * i));
 			if (fs.put(hash, Optional.empty()) != null)
 				throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, String.format("Hash collision %d", hash));
 		}
@@ -478,7 +671,7 @@ public final class Deserializer {
 		for (int i = 0; i < len; i++) {
 			Object key;
 
-			Long hash = this.table.popCurrentType();
+			Long hash = this.table.popFieldId();
 
 			Optional field = fs.get(hash);
 
@@ -499,14 +692,22 @@ public final class Deserializer {
 			else
 				throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, "Invalid Label Type");
 			
-			// assign named Label, if exists
-			if(expectedTypeMap.isPresent())
+			// assign named Label, if exists, skip fields missing from expected type, an expected record without fields keeps all
+			if(expectedTypeMap.isPresent() && !expectedTypeMap.get().isEmpty())
+			{
 				if(labels.containsKey(key))
 				{
 					label = labels.get(key);
 					this.expectedType = Optional.ofNullable(expectedTypeMap.get().get(label));
 				}
-				else this.expectedType = Optional.empty();
+				else
+				{
+					this.skipValue();
+					continue;
+				}
+			}
+			else if(expectedTypeMap.isPresent())
+				this.expectedType = Optional.empty();
 
 			IDLValue idlValue = this.deserializeAny();
 			
@@ -539,14 +740,12 @@ public final class Deserializer {
 			else
 				typeMap = Optional.ofNullable(expectedType.get().getTypeMap());
 
-		int len = this.table.popCurrentType().intValue();
+		int len = this.table.popCurrentType();
 
 		Map<Long, Optional> fs = new TreeMap<Long, Optional>();
 
-		Long[] currentType = (Long[]) this.table.currentType.toArray(new Long[this.table.currentType.size()]);
-
 		for (int i = 0; i < len; i++) {
-			Long hash = currentType[2 * i];
+			Long hash = Integer.toUnsignedLong(this.table.peekCurrentType(2 * i));
 			if (fs.put(hash, Optional.empty()) != null)
 				throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, String.format("hash collision %d", hash));
 		}
@@ -555,14 +754,17 @@ public final class Deserializer {
 		
 		long idx = this.input.leb128Read();
 		
-		Optional<Long> indexTy = Optional.empty();
+		Optional<Integer> indexTy = Optional.empty();
 
 		Object key = null;
 		
 		Label label = null;
+
+		boolean skipped = false;
+
 		for (int i = 0; i < len; i++) {			
-			Long hash = this.table.popCurrentType();
-			Long ty = this.table.popCurrentType();
+			Long hash = this.table.popFieldId();
+			int ty = this.table.popCurrentType();
 			
 			if(i == idx)
 			{	
@@ -584,29 +786,56 @@ public final class Deserializer {
 					throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, "Invalid Label Type");				
 				
 				// assign named Label, if exists
-				if(typeMap.isPresent() && typeMap.get().keySet().iterator().hasNext())
+				this.expectedType = Optional.empty();
+
+				if(typeMap.isPresent() && !typeMap.get().isEmpty())
 				{
-					label = typeMap.get().keySet().iterator().next();
-					this.expectedType = Optional.ofNullable(typeMap.get().get(label));							
+					Label expectedLabel = null;
+
+					for(Label typeLabel : typeMap.get().keySet())
+						if(typeLabel.getIdValue() == hash)
+						{
+							expectedLabel = typeLabel;
+							break;
+						}
+
+					if(expectedLabel != null)
+					{
+						label = expectedLabel;
+						this.expectedType = Optional.ofNullable(typeMap.get().get(label));
+					}
+					else if(this.optDepth > 0)
+						skipped = true;
+					else
+						throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, String.format("Variant label %d is not in the expected type", hash));
 				}
-				else 
-					this.expectedType = Optional.empty();
 	
 				
 				indexTy = Optional.of(ty);
 			}
 		}
 				
-		this.table.currentType.addFirst(indexTy.get());
+		if(!indexTy.isPresent())
+			throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, String.format("Variant index %d larger than length %d", idx, len));
 		
-		IDLValue idlValue = this.deserializeAny();
+		this.table.pushCurrentType(indexTy.get());
 		
-		this.expectedType = expectedType;
-
 		if(label == null)
 			throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, String.format("Unknown variant label"));	
-		
-		map.put(label, idlValue.getValue());
+
+		// arm not mapped in expected type, inside an opt
+		if(skipped)
+		{
+			this.skipValue();
+			map.put(label, null);
+		}
+		else
+		{
+			IDLValue idlValue = this.deserializeAny();
+			map.put(label, idlValue.getValue());
+		}
+
+		this.expectedType = expectedType;
 
 		if(this.expectedType.isPresent())
 			return IDLValue.create(map, this.expectedType.get());
@@ -618,17 +847,7 @@ public final class Deserializer {
 		this.recordNestingDepth = 0;
 		this.table.checkType(Opcode.PRINCIPAL);
 
-		byte bit = this.input.parseByte();
-
-		if (bit != (byte) 1)
-			throw CandidError.create(CandidError.CandidErrorCode.CUSTOM,
-					String.format("Opaque reference not supported"));
-
-		int len = this.input.leb128Read().intValue();
-
-		byte[] bytes = this.input.parseBytes(len);
-
-		Principal value = Principal.from(bytes);
+		Principal value = readPrincipal(this.input);
 
 		return IDLValue.create(value);
 
@@ -643,25 +862,156 @@ public final class Deserializer {
 		return IDLValue.create(new Object(), Type.RESERVED);
 	}
 
+	void skipValue() {
+		this.recordNestingDepth = 0;
+
+		skipValue(this.table, this.input, this.table.popCurrentType(), 0);
+	}
+
+	// advances past a value of the given wire type without materializing it
+	static void skipValue(TypeTable table, Bytes input, int valueType, int recordDepth) {
+		int opcode = table.opcode(valueType);
+
+		switch (opcode) {
+		case -1:
+		case -16:
+			break;
+		case -2:
+		case -5:
+		case -9:
+			input.skip(1);
+			break;
+		case -6:
+		case -10:
+			input.skip(Short.BYTES);
+			break;
+		case -7:
+		case -11:
+		case -13:
+			input.skip(Integer.BYTES);
+			break;
+		case -8:
+		case -12:
+		case -14:
+			input.skip(Long.BYTES);
+			break;
+		case -3:
+		case -4:
+			input.skipLeb128();
+			break;
+		case -15:
+			input.skip(input.leb128Read());
+			break;
+		case -24:
+		case -23:
+			checkReference(input);
+			input.skip(input.leb128Read());
+			break;
+		case -22:
+			checkReference(input);
+			checkReference(input);
+			input.skip(input.leb128Read());
+			input.skip(input.leb128Read());
+			break;
+		case -18:
+			switch (input.parseByte()) {
+			case 0:
+				break;
+			case 1:
+				skipValue(table, input, table.get(valueType, 1), 0);
+				break;
+			default:
+				throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, "Not an option tag");
+			}
+			break;
+		case -19:
+			skipVec(table, input, table.get(valueType, 1), input.leb128Read());
+			break;
+		case -20: {
+			if (++recordDepth > table.size())
+				throw CandidError.create(CandidError.CandidErrorCode.CUSTOM,
+						"There is an infinite loop in the record definition, the type is isomorphic to an empty type");
+
+			int len = table.get(valueType, 1);
+
+			for (int i = 0; i < len; i++)
+				skipValue(table, input, table.getFieldType(valueType, i), recordDepth);
+			break;
+		}
+		case -21: {
+			int len = table.get(valueType, 1);
+			long idx = input.leb128Read();
+
+			if (idx >= len)
+				throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, String.format("Variant index %d larger than length %d", idx, len));
+
+			skipValue(table, input, table.getFieldType(valueType, (int) idx), 0);
+			break;
+		}
+		default:
+			throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, String.format("Unrecogized type %d", opcode));
+		}
+	}
+
+	static void skipVec(TypeTable table, Bytes input, int elementType, long len) {
+		int size = fixedSize(elementType);
+
+		// fixed size elements are skipped in one step
+		if (size >= 0)
+			input.skip(len * size);
+		else
+			for (long i = 0; i < len; i++)
+				skipValue(table, input, elementType, 0);
+	}
+
+	static int fixedSize(int type) {
+		switch (type) {
+		case -1:
+		case -16:
+			return 0;
+		case -2:
+		case -5:
+		case -9:
+			return 1;
+		case -6:
+		case -10:
+			return 2;
+		case -7:
+		case -11:
+		case -13:
+			return 4;
+		case -8:
+		case -12:
+		case -14:
+			return 8;
+		default:
+			return -1;
+		}
+	}
+
+	static void checkReference(Bytes input) {
+		if (input.parseByte() != (byte) 1)
+			throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, "Opaque reference not supported");
+	}
+
 	public IDLValue deserializeIdentifier() {
 		return null;
 	}
 
 	Object[] toArray(List value) {
-		Object[] array;
+		int ty = this.table.peekCurrentType();
 
-		Integer ty = this.table.popCurrentType().intValue();
+		return toArray(value, ty);
+	}
+	
+	// Array typed by the wire element type
+	static Object[] toArray(List value, int ty) {
+		Object[] array;
 
 		int size = value.size();
 
 		if(ty >= 0)
-		{
-			array = value.toArray(new Object[size]);
-			
-			this.table.currentType.addFirst(ty.longValue());
-			
-			return array;
-		}
+			return value.toArray(new Object[size]);
 		
 		Opcode type = Opcode.from(ty);
 
@@ -729,12 +1079,15 @@ public final class Deserializer {
 			array = value.toArray(new Object[size]);
 		}
 
-		this.table.currentType.addFirst(ty.longValue());
-
 		return array;
 	}
 	
 	IDLType toIDLType(Opcode opcode)
+	{
+		return toIDLType(opcode, this.table);
+	}
+	
+	static IDLType toIDLType(Opcode opcode, TypeTable table)
 	{
 		switch(opcode)
 		{
@@ -748,8 +1101,8 @@ public final class Deserializer {
 						args.add(IDLType.createType(Type.from(ty)));
 					else
 					{
-						Opcode subOpcode = this.table.rawValueToOpcode(ty);
-						args.add(toIDLType(subOpcode));
+						Opcode subOpcode = table.rawValueToOpcode(ty);
+						args.add(toIDLType(subOpcode, table));
 					}
 				}
 				
@@ -759,8 +1112,8 @@ public final class Deserializer {
 						rets.add(IDLType.createType(Type.from(ty)));
 					else
 					{
-						Opcode subOpcode = this.table.rawValueToOpcode(ty);
-						rets.add(toIDLType(subOpcode));
+						Opcode subOpcode = table.rawValueToOpcode(ty);
+						rets.add(toIDLType(subOpcode, table));
 					}						
 				}
 				return IDLType.createType(args, rets, opcode.modes);
@@ -773,8 +1126,8 @@ public final class Deserializer {
 						meths.put(meth.name, IDLType.createType(Type.from(meth.type)));
 					else
 					{
-						Opcode subOpcode = this.table.rawValueToOpcode(meth.type);
-						meths.put(meth.name,  toIDLType(subOpcode));
+						Opcode subOpcode = table.rawValueToOpcode(meth.type);
+						meths.put(meth.name,  toIDLType(subOpcode, table));
 					}		
 				}
 				return IDLType.createType(meths);
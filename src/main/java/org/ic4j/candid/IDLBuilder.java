@@ -16,56 +16,215 @@
 
 package org.ic4j.candid;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
 
+import org.ic4j.candid.parser.IDLType;
 import org.ic4j.candid.parser.IDLValue;
+import org.ic4j.candid.types.Type;
+import org.ic4j.types.Func;
+import org.ic4j.types.Principal;
+import org.ic4j.types.Service;
 
 public final class IDLBuilder {
 	static final String MAGIC = "DIDL";
 	
-	ValueSerializer valueSer = new ValueSerializer();
-	TypeSerialize typeSer = new TypeSerialize();
+	TypeSerialize typeSer;
+	
+	// precompiled type table, values are encoded with its argument types
+	TypeSignature signature;
+	
+	// values are encoded only after the type table, so they can be streamed to the output
+	List<IDLValue> values = new ArrayList<IDLValue>();
+	
+	public IDLBuilder()
+	{
+		this.typeSer = new TypeSerialize();
+	}
+	
+	public IDLBuilder(TypeSignature signature)
+	{
+		this.signature = signature;
+	}
 	
 	public void valueArg(IDLValue value)
 	{
-		this.typeSer.pushType(value.getIDLType());
+		if(this.signature == null)
+			this.typeSer.pushType(value.getIDLType());
+		else
+		{
+			// values are encoded with the argument type of the signature, as arg does
+			IDLType idlType = this.signatureType(this.values.size());
+			
+			checkValue(this.values.size(), value.getValue(), idlType);
+			
+			if(value.getIDLType() != idlType)
+				value = IDLValue.create(value.getValue(), idlType);
+		}
 		
-		value.idlSerialize(valueSer);
+		this.values.add(value);
+	}
+	
+	IDLType signatureType(int idx)
+	{
+		if(idx >= this.signature.size())
+			throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, String.format("Signature has only %d arguments", this.signature.size()));
+		
+		return this.signature.types.get(idx);
+	}
+	
+	// values encoded with a signature type must be of a Java class the type serializes
+	static void checkValue(int idx, Object value, IDLType idlType)
+	{
+		if(!matches(value, idlType))
+			throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, 
+					String.format("Argument %d of class %s does not match type %s", idx, value.getClass().getName(), idlType.getType()));
+	}
+	
+	static boolean matches(Object value, IDLType idlType)
+	{
+		if(value == null)
+			return true;
+		
+		switch(idlType.getType())
+		{
+		case BOOL:
+			return value instanceof Boolean;
+		case NAT:
+			return value instanceof BigInteger;
+		case INT:
+			return value instanceof Number || value instanceof byte[];
+		case NAT8:
+		case INT8:
+			return value instanceof Byte;
+		case NAT16:
+		case INT16:
+			return value instanceof Short;
+		case NAT32:
+		case INT32:
+			return value instanceof Integer;
+		case NAT64:
+		case INT64:
+			return value instanceof Long || value instanceof BigInteger;
+		case FLOAT32:
+			return value instanceof Float || value instanceof Double;
+		case FLOAT64:
+			return value instanceof Double || value instanceof Float || value instanceof BigDecimal;
+		case TEXT:
+			return value instanceof String;
+		case PRINCIPAL:
+			return value instanceof Principal || value instanceof byte[] || value instanceof String;
+		case FUNC:
+			return value instanceof Func;
+		case SERVICE:
+			return value instanceof Service;
+		case OPT:
+			if(!(value instanceof Optional))
+				return false;
+			
+			Optional<?> optional = (Optional<?>) value;
+			
+			return !optional.isPresent() || idlType.getInnerType() == null || matches(optional.get(), idlType.getInnerType());
+		case VEC:
+			if(!value.getClass().isArray())
+				return false;
+			
+			// primitive arrays are checked by the vec serializer
+			if(!(value instanceof Object[]) || idlType.getInnerType() == null)
+				return true;
+			
+			for(Object item : (Object[]) value)
+				if(!matches(item, idlType.getInnerType()))
+					return false;
+			
+			return true;
+		default:
+			// records and variants are maps or POJOs, their fields are checked by the serializer
+			return true;
+		}
 	}
 	
 	public <T> void arg(T value)
 	{
-		IDLValue idlValue = IDLValue.create(value);
+		IDLValue idlValue;
+		
+		if(this.signature == null)
+		{
+			// POJOs are encoded directly with the type of their class
+			if(value != null && PojoBinding.isBound(value.getClass()))
+				idlValue = IDLValue.create(value, PojoBinding.get(value.getClass()).getIDLType());
+			else if(value != null && PojoBinding.isBound(value.getClass().getComponentType()))
+				idlValue = IDLValue.create(value, IDLType.createType(Type.VEC, PojoBinding.get(value.getClass().getComponentType()).getIDLType()));
+			else
+				idlValue = IDLValue.create(value);
 		
-		this.typeSer.pushType(idlValue.getIDLType());
+			this.typeSer.pushType(idlValue.getIDLType());
+		}
+		else
+		{
+			IDLType idlType = this.signatureType(this.values.size());
+			
+			checkValue(this.values.size(), value, idlType);
+			
+			idlValue = IDLValue.create(value, idlType);
+		}
 		
-		idlValue.idlSerialize(valueSer);
+		this.values.add(idlValue);
 	}	
 	
 	public byte[] serializeToVec()
 	{
-		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		BufferSerializer valueSer = new BufferSerializer();
 		
-		try {
-			this.serialize(os);
-		} catch (IOException e) {
-			throw CandidError.create(CandidError.CandidErrorCode.PARSE, e, e.getLocalizedMessage());
-		}
+		this.serialize(valueSer);
 		
-		return os.toByteArray();
+		return valueSer.getResult();
 	}
 	
 	public void serialize(OutputStream os) throws IOException
 	{
-		os.write(MAGIC.getBytes());
+		BufferSerializer valueSer = BufferSerializer.create(os);
+		
+		this.serialize(valueSer);
+		
+		valueSer.flush();
+	}
+	
+	public void serialize(WritableByteChannel channel) throws IOException
+	{
+		BufferSerializer valueSer = BufferSerializer.create(channel, false);
 		
-		this.typeSer.serialize();
+		this.serialize(valueSer);
 		
-		os.write(this.typeSer.getResult());
+		valueSer.flush();
+	}
+	
+	void serialize(BufferSerializer valueSer)
+	{
+		if(this.signature != null)
+		{
+			if(this.values.size() != this.signature.size())
+				throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, String.format("Expected %d arguments, got %d", this.signature.size(), this.values.size()));
+			
+			valueSer.writeBytes(this.signature.prefix);
+		}
+		else
+		{
+			valueSer.writeBytes(MAGIC.getBytes());
+		
+			this.typeSer.serialize();
+		
+			valueSer.writeBytes(this.typeSer.getResult());
+		}
 		
-		os.write(this.valueSer.getResult());
+		for(IDLValue value : this.values)
+			value.idlSerialize(valueSer);
 	}
 
 }
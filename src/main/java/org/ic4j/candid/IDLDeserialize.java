@@ -16,9 +16,13 @@
 
 package org.ic4j.candid;
 
+import java.io.InputStream;
+import java.nio.channels.ReadableByteChannel;
+import java.util.List;
 import java.util.Optional;
 
 import org.ic4j.candid.parser.IDLType;
+import org.ic4j.candid.parser.IDLValue;
 
 public final class IDLDeserialize {
 	Deserializer de;
@@ -35,33 +39,73 @@ public final class IDLDeserialize {
 		
 	}
 	
+	public static IDLDeserialize create(byte[] bytes, TypeTableCache cache)
+	{
+		Deserializer de = Deserializer.fromBytes(bytes, cache);
+		
+		return new IDLDeserialize(de);
+	}
+	
+	public static IDLDeserialize create(InputStream input)
+	{
+		Deserializer de = Deserializer.fromStream(input);
+		
+		return new IDLDeserialize(de);
+	}
+	
+	public static IDLDeserialize create(ReadableByteChannel input)
+	{
+		Deserializer de = Deserializer.fromChannel(input);
+		
+		return new IDLDeserialize(de);
+	}
+	
 	public <T extends Deserialize> T getValue(Class<T> clazz)
 	{
 		T value;
 
-			try {
-				value = clazz.newInstance();
-			} catch (InstantiationException | IllegalAccessException e) {
-				throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, String.format("Cannot initialize class %s"),clazz.getCanonicalName());
-			}
+		try {
+			value = clazz.newInstance();
+		} catch (InstantiationException | IllegalAccessException e) {
+			throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, String.format("Cannot initialize class %s"),clazz.getCanonicalName());
+		}
+
+		this.de.table.nextType();
 
-		
-		Long ty = this.de.table.types.poll();
-		
-		if(ty == null)
-			CandidError.create(CandidError.CandidErrorCode.CUSTOM, "No more values to deserialize");
-		
-		this.de.table.currentType.add(ty);
-		
 		value.deserialize(this.de);
 		
-		if(this.de.table.currentType.isEmpty() && !this.de.fieldName.isPresent())
+		if(this.de.table.isCurrentTypeEmpty() && !this.de.fieldName.isPresent())
 			return value;
 		else
 			throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, "Trailing type after deserializing a value");
 		
 	}
 	
+	// Deserialize implementations decode themselves, other classes are decoded as POJO, enum or array straight from the wire
+	public <T> T getObject(Class<T> clazz)
+	{
+		if(Deserialize.class.isAssignableFrom(clazz))
+			return clazz.cast(this.getValue(clazz.asSubclass(Deserialize.class)));
+
+		if(clazz.isPrimitive())
+			throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, "Cannot decode primitive class " + clazz.getName() + ", use its wrapper class");
+
+		this.de.table.nextType();
+
+		T value = clazz.cast(PojoBinding.read(this.de, clazz, clazz));
+		
+		if(this.de.table.isCurrentTypeEmpty() && !this.de.fieldName.isPresent())
+			return value;
+		else
+			throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, "Trailing type after deserializing a value");
+	}
+	
+	// decode all remaining values with the compiled plan of the type table, expected type is not applied
+	public List<IDLValue> getCompiledValues()
+	{
+		return this.de.table.getPlan().decode(this.de.input, this.de.table);
+	}
+	
 	public void setExpectedType(IDLType expectedType)
 	{
 		this.de.expectedType = Optional.of(expectedType);
@@ -69,12 +113,12 @@ public final class IDLDeserialize {
 	
 	public boolean isDone()
 	{
-		return this.de.table.types.isEmpty();
+		return !this.de.table.hasNextType();
 	}
 	
 	public void done()
 	{
-		if(this.de.input.data.hasRemaining())
+		if(this.de.input.hasRemaining())
 			throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, "Trailing type after deserializing a value");
 	}
 
@@ -9,26 +9,65 @@ import java.util.Arrays;
 import java.util.List;
 
 import org.apache.commons.lang3.ArrayUtils;
+import org.ic4j.candid.parser.IDLType;
 import org.ic4j.candid.parser.IDLValue;
+import org.ic4j.candid.types.Label;
 import org.ic4j.types.Principal;
 
 public class IDLUtils {
 	public static BigInteger UINT_MAX = BigInteger.valueOf(4294967295l + 1);
 	
 	public static long idlHash(String value) {
-		BigInteger hash = BigInteger.ZERO;
+		if (value == null)
+			return 0;
 
-		if (value != null) {
-			byte[] bytes = value.getBytes();
+		return idlHash((CharSequence) value);
+	}
+
+	// hash = hash * 223 + byte mod 2^32 over UTF-8 bytes, int arithmetic wraps at 2^32
+	public static long idlHash(CharSequence value) {
+		if (value == null)
+			return 0;
+
+		int hash = 0;
+		int length = value.length();
+
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+
+			if (c < 0x80)
+				hash = hash * 223 + c;
+			else if (c < 0x800) {
+				hash = hash * 223 + (0xC0 | (c >> 6));
+				hash = hash * 223 + (0x80 | (c & 0x3F));
+			} else if (Character.isSurrogate(c)) {
+				if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+					int codePoint = Character.toCodePoint(c, value.charAt(++i));
 
-			for (byte b : bytes)
-			{	
-				hash = hash.multiply(BigInteger.valueOf(223)).mod(UINT_MAX);				
-				hash = hash.add(BigInteger.valueOf(Byte.toUnsignedInt(b))).mod(UINT_MAX);			
+					hash = hash * 223 + (0xF0 | (codePoint >> 18));
+					hash = hash * 223 + (0x80 | ((codePoint >> 12) & 0x3F));
+					hash = hash * 223 + (0x80 | ((codePoint >> 6) & 0x3F));
+					hash = hash * 223 + (0x80 | (codePoint & 0x3F));
+				} else
+					// malformed surrogate, encoded as '?' like String.getBytes
+					hash = hash * 223 + '?';
+			} else {
+				hash = hash * 223 + (0xE0 | (c >> 12));
+				hash = hash * 223 + (0x80 | ((c >> 6) & 0x3F));
+				hash = hash * 223 + (0x80 | (c & 0x3F));
 			}
 		}
 
-		return hash.longValue();
+		return Integer.toUnsignedLong(hash);
+	}
+
+	public static long idlHash(byte[] bytes, int offset, int length) {
+		int hash = 0;
+
+		for (int i = offset; i < offset + length; i++)
+			hash = hash * 223 + (bytes[i] & 0xFF);
+
+		return Integer.toUnsignedLong(hash);
 	}
 
 
@@ -184,5 +223,22 @@ public class IDLUtils {
 		return null;		
 	}
 	
-
+	// position of the variant arm in the type table, arms are written in label id order
+	static int variantIndex(IDLType idlType, Label label)
+	{
+		if(idlType == null || idlType.getTypeMap() == null)
+			return 0;
+		
+		int idx = 0;
+		
+		for(Label typeLabel : idlType.getTypeMap().keySet())
+		{
+			if(typeLabel.getIdValue() == label.getIdValue())
+				return idx;
+			
+			idx++;
+		}
+		
+		throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, String.format("Unknown variant label %s", label));
+	}
 }
@@ -0,0 +1,580 @@
+/*
+ * Copyright 2021 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+
+package org.ic4j.candid;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.ParameterizedType;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.lang3.ClassUtils;
+import org.ic4j.candid.parser.IDLType;
+import org.ic4j.candid.parser.IDLValue;
+import org.ic4j.candid.pojo.PojoDeserializer;
+import org.ic4j.candid.pojo.PojoMetadata;
+import org.ic4j.candid.pojo.PojoMetadata.FieldMetadata;
+import org.ic4j.candid.pojo.PojoUtils;
+import org.ic4j.candid.types.Label;
+import org.ic4j.candid.types.Opcode;
+import org.ic4j.candid.types.Type;
+import org.ic4j.types.Func;
+import org.ic4j.types.Service;
+
+// Decodes and encodes POJO values straight from and to the wire, record fields and variant arms are bound by label id
+final class PojoBinding {
+	static final ClassValue<PojoBinding> BINDINGS = new ClassValue<PojoBinding>() {
+		@Override
+		protected PojoBinding computeValue(Class<?> clazz) {
+			return new PojoBinding(clazz);
+		}
+	};
+
+	static final PojoDeserializer POJO_DESERIALIZER = PojoDeserializer.create();
+
+	// bound on the cached layouts per class, types beyond it get a new layout each time
+	static final int MAX_LAYOUTS = 64;
+
+	// class types under construction, guarded by the PojoBinding class lock
+	static final Map<Class<?>, IDLType> BUILDING = new HashMap<Class<?>, IDLType>();
+
+	final Class<?> clazz;
+	final PojoMetadata metadata;
+
+	// instance fields sorted by label id
+	final long[] ids;
+	final FieldMetadata[] fields;
+
+	// IDL type of the class and field layout of that type, computed once
+	volatile IDLType idlType;
+	volatile Layout layout;
+
+	// layouts of other types written with the class, keyed by structural equality
+	final Map<IDLType, Layout> layouts = new ConcurrentHashMap<IDLType, Layout>();
+
+	PojoBinding(Class<?> clazz) {
+		this.clazz = clazz;
+		this.metadata = PojoMetadata.get(clazz);
+
+		this.fields = this.metadata.getSortedFields();
+		this.ids = this.metadata.getSortedIds();
+
+		if (!clazz.isEnum() && !this.metadata.hasDefaultConstructor())
+			throw CandidError.create(CandidError.CandidErrorCode.CUSTOM,
+					"Cannot instantiate class " + clazz.getCanonicalName() + ". Missing constructor.");
+	}
+
+	static PojoBinding get(Class<?> clazz) {
+		return BINDINGS.get(clazz);
+	}
+
+	// classes decoded field by field, everything else goes through IDLValue and PojoDeserializer
+	static final ClassValue<Boolean> BOUND = new ClassValue<Boolean>() {
+		@Override
+		protected Boolean computeValue(Class<?> clazz) {
+			if (clazz.isPrimitive() || clazz.isArray() || clazz.isInterface() || clazz == Object.class)
+				return false;
+
+			if (IDLType.isDefaultType(clazz) || List.class.isAssignableFrom(clazz) || BigDecimal.class.isAssignableFrom(clazz)
+					|| Date.class.isAssignableFrom(clazz) || GregorianCalendar.class.isAssignableFrom(clazz)
+					|| Duration.class.isAssignableFrom(clazz) || Func.class.isAssignableFrom(clazz)
+					|| Service.class.isAssignableFrom(clazz) || IDLValue.class.isAssignableFrom(clazz))
+				return false;
+
+			return clazz.isEnum() || PojoMetadata.get(clazz).hasDefaultConstructor();
+		}
+	};
+
+	static boolean isBound(Class<?> clazz) {
+		return clazz != null && BOUND.get(clazz);
+	}
+
+	static Class<?> typeArgument(java.lang.reflect.Type genericType) {
+		if (genericType instanceof ParameterizedType) {
+			java.lang.reflect.Type argument = ((ParameterizedType) genericType).getActualTypeArguments()[0];
+
+			if (argument instanceof Class)
+				return (Class<?>) argument;
+		}
+
+		return null;
+	}
+
+	// Decode value of the type on top of currentType into the Java type
+	static Object read(Deserializer de, Class<?> clazz, java.lang.reflect.Type genericType) {
+		TypeTable table = de.table;
+
+		int ty = table.peekCurrentType();
+
+		switch (table.opcode(ty)) {
+		case -20:
+			if (isBound(clazz)) {
+				table.popCurrentType();
+				return get(clazz).readRecord(de, ty);
+			}
+			break;
+		case -21:
+			if (isBound(clazz)) {
+				table.popCurrentType();
+				de.recordNestingDepth = 0;
+				return get(clazz).readVariant(de, ty);
+			}
+			break;
+		case -18: {
+			boolean optional = Optional.class.isAssignableFrom(clazz);
+			Class<?> innerClass = optional ? typeArgument(genericType) : clazz;
+
+			if (!isBound(innerClass))
+				break;
+
+			table.popCurrentType();
+			de.recordNestingDepth = 0;
+
+			switch (de.input.parseByte()) {
+			case 0:
+				return optional ? Optional.empty() : null;
+			case 1:
+				table.pushCurrentType(table.get(ty, 1));
+
+				Object value;
+
+				de.optDepth++;
+
+				try {
+					value = read(de, innerClass, innerClass);
+				} finally {
+					de.optDepth--;
+				}
+
+				return optional ? Optional.ofNullable(value) : value;
+			default:
+				throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, "Not an option tag");
+			}
+		}
+		case -19: {
+			// fixed size primitive elements are decoded in bulk into primitive arrays, the width is checked there
+			if (clazz.isArray() && clazz.getComponentType().isPrimitive()) {
+				Opcode elementOpcode = Deserializer.primitiveElementOpcode(table.get(ty, 1));
+
+				if (elementOpcode == null)
+					break;
+
+				table.popCurrentType();
+				de.recordNestingDepth = 0;
+
+				int len = de.input.leb128Read().intValue();
+
+				return POJO_DESERIALIZER.getFieldValue(Deserializer.deserializePrimitiveVec(de.input, elementOpcode, len, clazz),
+						clazz, genericType);
+			}
+
+			boolean list = List.class.isAssignableFrom(clazz);
+			Class<?> componentClass = list ? typeArgument(genericType) : clazz.getComponentType();
+
+			if (!isBound(componentClass))
+				break;
+
+			table.popCurrentType();
+			de.recordNestingDepth = 0;
+
+			int elementType = table.get(ty, 1);
+			int len = de.input.leb128Read().intValue();
+
+			Object[] array = (Object[]) Array.newInstance(componentClass, len);
+
+			for (int i = 0; i < len; i++) {
+				table.pushCurrentType(elementType);
+				array[i] = read(de, componentClass, componentClass);
+			}
+
+			if (list)
+				return new ArrayList<Object>(Arrays.asList(array));
+			else
+				return array;
+		}
+		default:
+			break;
+		}
+
+		de.expectedType = Optional.empty();
+
+		IDLValue idlValue = de.deserializeAny();
+
+		return POJO_DESERIALIZER.getFieldValue(idlValue.getValue(), clazz, genericType);
+	}
+
+	Object readRecord(Deserializer de, int ty) {
+		TypeTable table = de.table;
+
+		int oldNesting = de.recordNestingDepth;
+
+		if (++de.recordNestingDepth > table.size())
+			throw CandidError.create(CandidError.CandidErrorCode.CUSTOM,
+					"There is an infinite loop in the record definition, the type is isomorphic to an empty type");
+
+		Object value = this.metadata.newInstance();
+
+		boolean[] assigned = new boolean[this.fields.length];
+
+		int len = table.get(ty, 1);
+
+		for (int i = 0; i < len; i++) {
+			int idx = Arrays.binarySearch(this.ids, table.getFieldId(ty, i));
+
+			table.pushCurrentType(table.getFieldType(ty, i));
+
+			// fields missing in the class are skipped
+			if (idx < 0)
+				de.skipValue();
+			else {
+				this.set(value, idx, read(de, this.fields[idx].getType(), this.fields[idx].getGenericType()));
+				assigned[idx] = true;
+			}
+		}
+
+		this.clearUnassigned(value, assigned);
+
+		de.recordNestingDepth = oldNesting;
+
+		return value;
+	}
+
+	Object readVariant(Deserializer de, int ty) {
+		TypeTable table = de.table;
+
+		int len = table.get(ty, 1);
+		long idx = de.input.leb128Read();
+
+		if (idx >= len)
+			throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, String.format("Variant index %d larger than length %d", idx, len));
+
+		long id = table.getFieldId(ty, (int) idx);
+
+		table.pushCurrentType(table.getFieldType(ty, (int) idx));
+
+		Object value;
+
+		if (this.clazz.isEnum()) {
+			value = this.metadata.getConstant(id);
+
+			// cannot find variant, only allowed inside an opt
+			if (value == null) {
+				checkUnknownArm(de, id);
+				de.skipValue();
+				return null;
+			}
+		} else
+			value = this.metadata.newInstance();
+
+		boolean[] assigned = new boolean[this.fields.length];
+
+		int field = Arrays.binarySearch(this.ids, id);
+
+		if (field < 0) {
+			// enum arms without a matching field carry no mapped value
+			if (!this.clazz.isEnum())
+				checkUnknownArm(de, id);
+			de.skipValue();
+		}
+		else {
+			this.set(value, field, read(de, this.fields[field].getType(), this.fields[field].getGenericType()));
+			assigned[field] = true;
+		}
+
+		this.clearUnassigned(value, assigned);
+
+		return value;
+	}
+
+	void set(Object value, int idx, Object item) {
+		try {
+			this.fields[idx].set(value, item);
+		} catch (IllegalArgumentException | IllegalAccessException e) {
+			// incompatible values are left unassigned, same as PojoDeserializer
+		}
+	}
+
+	// fields without a wire value are reset, same as PojoDeserializer
+	void clearUnassigned(Object value, boolean[] assigned) {
+		for (int i = 0; i < this.fields.length; i++)
+			if (!assigned[i] && !this.fields[i].getType().isPrimitive())
+				this.set(value, i, null);
+	}
+
+	// IDL type derived from the field classes, field annotations apply to the innermost type
+	IDLType getIDLType() {
+		IDLType idlType = this.idlType;
+
+		if (idlType != null)
+			return idlType;
+
+		// one lock for all classes, nested classes are resolved while it is held
+		synchronized (PojoBinding.class) {
+			if (this.idlType == null) {
+				IDLType building = BUILDING.get(this.clazz);
+
+				// recursive class, the type is completed by the outer call
+				if (building != null)
+					return building;
+
+				Map<Label, IDLType> typeMap = new TreeMap<Label, IDLType>();
+
+				building = IDLType.createType(this.clazz.isEnum() ? Type.VARIANT : Type.RECORD, typeMap);
+				building.setName(this.clazz.getSimpleName());
+				building.setJavaType(this.clazz);
+
+				BUILDING.put(this.clazz, building);
+
+				try {
+					for (FieldMetadata field : this.fields)
+						typeMap.put(field.getLabel(), fieldType(field, field.getType(), field.getGenericType()));
+
+					// if there is no Enum value, set it to null
+					if (this.clazz.isEnum())
+						for (Enum constant : this.metadata.getConstants()) {
+							Label label = this.metadata.getConstantLabel(constant);
+
+							if (!typeMap.containsKey(label))
+								typeMap.put(label, IDLType.createType(Type.NULL));
+						}
+				} finally {
+					BUILDING.remove(this.clazz);
+				}
+
+				this.idlType = building;
+			}
+
+			return this.idlType;
+		}
+	}
+
+	static IDLType fieldType(FieldMetadata field, Class<?> clazz, java.lang.reflect.Type genericType) {
+		if (Optional.class.isAssignableFrom(clazz) && typeArgument(genericType) != null)
+			return IDLType.createType(Type.OPT, fieldType(field, typeArgument(genericType), null));
+
+		if (List.class.isAssignableFrom(clazz) && typeArgument(genericType) != null)
+			return IDLType.createType(Type.VEC, fieldType(field, typeArgument(genericType), null));
+
+		if (clazz.isArray()) {
+			// primitive arrays are serialized in bulk
+			if (clazz.getComponentType().isPrimitive() && field.getAnnotatedType() == null)
+				return IDLType.createType(clazz);
+
+			if (!clazz.getComponentType().isPrimitive())
+				return IDLType.createType(Type.VEC, fieldType(field, clazz.getComponentType(), null));
+		}
+
+		if (isBound(clazz))
+			return get(clazz).getIDLType();
+
+		IDLType fieldType;
+
+		if (field.getAnnotatedType() != null)
+			fieldType = IDLType.createType(field.getAnnotatedType());
+		else
+			fieldType = PojoUtils.getIDLType(clazz.isPrimitive() ? ClassUtils.primitiveToWrapper(clazz) : clazz);
+
+		// handle Func type
+		if (fieldType.getType() == Type.FUNC && field.getModes().length > 0)
+			fieldType.modes.add(field.getModes()[0]);
+
+		return fieldType;
+	}
+
+	Layout getLayout(IDLType idlType) {
+		Layout layout = this.layout;
+
+		if (layout != null && layout.idlType == idlType)
+			return layout;
+
+		// types from signatures or built by the caller, equal types share the layout
+		layout = this.layouts.get(idlType);
+
+		if (layout != null)
+			return layout;
+
+		layout = new Layout(this, idlType);
+
+		// keep the layout of the class type
+		if (idlType == this.idlType)
+			this.layout = layout;
+		else if (this.layouts.size() < MAX_LAYOUTS)
+			this.layouts.putIfAbsent(idlType, layout);
+
+		return layout;
+	}
+
+	// Encode value of the IDL type, nested POJOs, options and vectors are written without IDLValue wrappers
+	static void write(BufferSerializer serializer, Object value, IDLType idlType) {
+		switch (idlType.getType()) {
+		case RECORD:
+			if (value != null && !(value instanceof Map)) {
+				get(value.getClass()).writeRecord(serializer, value, idlType);
+				return;
+			}
+			break;
+		case VARIANT:
+			if (value != null && !(value instanceof Map)) {
+				get(value.getClass()).writeVariant(serializer, value, idlType);
+				return;
+			}
+			break;
+		case OPT: {
+			Object innerValue = value instanceof Optional ? ((Optional<?>) value).orElse(null) : value;
+
+			if (innerValue == null) {
+				serializer.writeByte((byte) 0);
+				return;
+			}
+
+			if (idlType.getInnerType() != null) {
+				serializer.writeByte((byte) 1);
+				write(serializer, innerValue, idlType.getInnerType());
+				return;
+			}
+
+			value = Optional.of(innerValue);
+			break;
+		}
+		case VEC:
+			if (value instanceof Collection)
+				value = ((Collection<?>) value).toArray();
+
+			if (idlType.getInnerType() != null && value instanceof Object[] && !(value instanceof Byte[])) {
+				Object[] array = (Object[]) value;
+
+				serializer.writeUnsigned(array.length);
+
+				for (Object element : array)
+					write(serializer, element, idlType.getInnerType());
+				return;
+			}
+			break;
+		case NULL:
+		case RESERVED:
+			return;
+		default:
+			break;
+		}
+
+		if (value == null)
+			throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, String.format("Missing value of type %s", idlType.getType()));
+
+		// handle GregorianCalendar and Date like nanosecond timestamp
+		if (value instanceof GregorianCalendar)
+			value = ((GregorianCalendar) value).getTimeInMillis() * 1000000;
+		else if (value instanceof Date)
+			value = ((Date) value).getTime() * 1000000;
+		else if (value instanceof BigDecimal)
+			value = ((BigDecimal) value).doubleValue();
+		else if (value instanceof Duration)
+			value = org.ic4j.types.Duration.serialize((Duration) value).getValue();
+
+		if (idlType.getType() == Type.NAT)
+			value = IDLUtils.objectToBigInt(value);
+
+		IDLValue.idlSerialize(value, idlType, serializer);
+	}
+
+	void writeRecord(BufferSerializer serializer, Object value, IDLType idlType) {
+		Layout layout = this.getLayout(idlType);
+
+		for (int i = 0; i < layout.ids.length; i++)
+			if (layout.types[i] != null)
+				write(serializer, this.get(value, layout.fields[i]), layout.types[i]);
+	}
+
+	void writeVariant(BufferSerializer serializer, Object value, IDLType idlType) {
+		Layout layout = this.getLayout(idlType);
+
+		int idx = -1;
+
+		if (this.clazz.isEnum())
+			idx = Arrays.binarySearch(layout.ids, this.metadata.getConstantLabel((Enum) value).getIdValue());
+		else
+			// first field with value is the variant arm
+			for (int i = 0; i < layout.ids.length; i++)
+				if (this.get(value, layout.fields[i]) != null) {
+					idx = i;
+					break;
+				}
+
+		if (idx < 0)
+			throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, String.format("Unknown variant label for %s", value));
+
+		serializer.writeUnsigned(idx);
+
+		if (layout.types[idx] != null)
+			write(serializer, this.get(value, layout.fields[idx]), layout.types[idx]);
+	}
+
+	void checkUnknownArm(Deserializer de, long id) {
+		if (de.optDepth == 0)
+			throw CandidError.create(CandidError.CandidErrorCode.CUSTOM,
+					String.format("Variant label %d is not in %s", id, this.clazz.getSimpleName()));
+	}
+
+	Object get(Object value, int idx) {
+		if (idx < 0)
+			return null;
+
+		try {
+			return this.fields[idx].get(value);
+		} catch (IllegalArgumentException | IllegalAccessException e) {
+			throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, e, e.getLocalizedMessage());
+		}
+	}
+
+	// Labels of the IDL type in wire order, mapped to the bound fields
+	static final class Layout {
+		final IDLType idlType;
+		final long[] ids;
+		final IDLType[] types;
+		final int[] fields;
+
+		Layout(PojoBinding binding, IDLType idlType) {
+			this.idlType = idlType;
+
+			Map<Label, IDLType> typeMap = idlType.getTypeMap();
+
+			Label[] labels = typeMap.keySet().toArray(new Label[typeMap.size()]);
+
+			Arrays.sort(labels);
+
+			this.ids = new long[labels.length];
+			this.types = new IDLType[labels.length];
+			this.fields = new int[labels.length];
+
+			for (int i = 0; i < labels.length; i++) {
+				this.ids[i] = labels[i].getIdValue();
+				this.types[i] = typeMap.get(labels[i]);
+				this.fields[i] = Arrays.binarySearch(binding.ids, this.ids[i]);
+			}
+		}
+	}
+}
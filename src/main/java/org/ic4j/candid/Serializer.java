@@ -19,6 +19,7 @@ package org.ic4j.candid;
 import java.math.BigInteger;
 import java.util.Optional;
 
+import org.apache.commons.lang3.ArrayUtils;
 import org.ic4j.candid.parser.IDLType;
 import org.ic4j.types.Func;
 import org.ic4j.types.Principal;
@@ -67,6 +68,31 @@ public interface Serializer {
 	
 	public <T> void serializeVec(T[] value, IDLType idlType);	
 	
+	// primitive arrays, implementations can write them in bulk
+	public default void serializeVec(boolean[] value, IDLType idlType) {
+		this.serializeVec(ArrayUtils.toObject(value), idlType);
+	}
+	
+	public default void serializeVec(short[] value, IDLType idlType) {
+		this.serializeVec(ArrayUtils.toObject(value), idlType);
+	}
+	
+	public default void serializeVec(int[] value, IDLType idlType) {
+		this.serializeVec(ArrayUtils.toObject(value), idlType);
+	}
+	
+	public default void serializeVec(long[] value, IDLType idlType) {
+		this.serializeVec(ArrayUtils.toObject(value), idlType);
+	}
+	
+	public default void serializeVec(float[] value, IDLType idlType) {
+		this.serializeVec(ArrayUtils.toObject(value), idlType);
+	}
+	
+	public default void serializeVec(double[] value, IDLType idlType) {
+		this.serializeVec(ArrayUtils.toObject(value), idlType);
+	}
+	
 	public void serializeBinary(byte[] value,IDLType idlType);
 	
 	public void serializeBinary(Byte[] value,IDLType idlType);
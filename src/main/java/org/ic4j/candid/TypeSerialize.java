@@ -273,7 +273,7 @@ public final class TypeSerialize {
 	}
 
 	void serialize() {
-		this.result = ArrayUtils.addAll(this.result, Leb128.writeUnsigned(this.typeTable.size()));
+		this.result = Leb128.writeUnsigned(this.typeTable.size());
 
 		// TODO serialize content of type table
 		for (byte[] type : this.typeTable)
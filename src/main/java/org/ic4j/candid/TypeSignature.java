@@ -0,0 +1,160 @@
+/*
+ * Copyright 2021 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.ic4j.candid;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.lang3.ArrayUtils;
+import org.ic4j.candid.parser.IDLType;
+
+/*
+ * Argument types compiled once into the encoded message prefix,
+ * magic number, type table and argument types. Instances are immutable
+ * and can be shared between threads, the IDLTypes must not be modified
+ * after compilation.
+ */
+public final class TypeSignature {
+	static final int MAX_SIGNATURES = 1024;
+	static final Map<Key, TypeSignature> SIGNATURES = new ConcurrentHashMap<Key, TypeSignature>();
+
+	final List<IDLType> types;
+	final byte[] prefix;
+
+	TypeSignature(List<IDLType> types, byte[] prefix) {
+		this.types = types;
+		this.prefix = prefix;
+	}
+
+	public static TypeSignature compile(List<IDLType> types) {
+		List<IDLType> signatureTypes = Collections.unmodifiableList(new ArrayList<IDLType>(types));
+
+		TypeSerialize typeSer = new TypeSerialize();
+
+		for (IDLType type : signatureTypes)
+			typeSer.pushType(type);
+
+		typeSer.serialize();
+
+		byte[] prefix = ArrayUtils.addAll(IDLBuilder.MAGIC.getBytes(), typeSer.getResult());
+
+		return new TypeSignature(signatureTypes, prefix);
+	}
+
+	public static TypeSignature compile(IDLType... types) {
+		return compile(Arrays.asList(types));
+	}
+
+	// cached by structurally equal argument types with the same java types, values are encoded by them
+	public static TypeSignature get(List<IDLType> types) {
+		Key key = new Key(types);
+
+		TypeSignature signature = SIGNATURES.get(key);
+
+		if (signature != null)
+			return signature;
+
+		signature = compile(types);
+
+		if (SIGNATURES.size() < MAX_SIGNATURES) {
+			TypeSignature previous = SIGNATURES.putIfAbsent(new Key(signature.types), signature);
+
+			if (previous != null)
+				return previous;
+		}
+
+		return signature;
+	}
+
+	public static TypeSignature get(IDLType... types) {
+		return get(Arrays.asList(types));
+	}
+
+	public List<IDLType> getTypes() {
+		return this.types;
+	}
+
+	public int size() {
+		return this.types.size();
+	}
+
+	public byte[] getPrefix() {
+		return this.prefix.clone();
+	}
+
+	static final class Key {
+		final List<IDLType> types;
+
+		// java types of all type nodes in traversal order
+		final List<Class<?>> javaTypes = new ArrayList<Class<?>>();
+
+		Key(List<IDLType> types) {
+			this.types = types;
+
+			Set<IDLType> visited = Collections.newSetFromMap(new IdentityHashMap<IDLType, Boolean>());
+
+			for (IDLType type : types)
+				this.collect(type, visited);
+		}
+
+		void collect(IDLType idlType, Set<IDLType> visited) {
+			if (idlType == null || !visited.add(idlType))
+				return;
+
+			this.javaTypes.add(idlType.getJavaType());
+
+			this.collect(idlType.getInnerType(), visited);
+
+			for (IDLType type : idlType.getTypeMap().values())
+				this.collect(type, visited);
+
+			for (IDLType type : idlType.getArgs())
+				this.collect(type, visited);
+
+			for (IDLType type : idlType.getRets())
+				this.collect(type, visited);
+
+			for (IDLType type : idlType.getMeths().values())
+				this.collect(type, visited);
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (this == other)
+				return true;
+
+			if (!(other instanceof Key))
+				return false;
+
+			Key otherKey = (Key) other;
+
+			return this.types.equals(otherKey.types) && this.javaTypes.equals(otherKey.javaTypes);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(this.types, this.javaTypes);
+		}
+	}
+}
@@ -16,104 +16,222 @@
 
 package org.ic4j.candid;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.Deque;
-import java.util.LinkedList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.ListIterator;
-import java.util.Optional;
-import java.util.Queue;
 
 import org.ic4j.candid.types.Meths;
 import org.ic4j.candid.types.Mode;
 import org.ic4j.candid.types.Opcode;
 
 public final class TypeTable {
-	// Raw value of the type description table
-	List<List<Long>> table;
+	static final long MAX_FIELD_ID = 0xFFFFFFFFL;
+
+	// Raw values of the type description table, entry i is entries[offsets[i]] .. entries[offsets[i + 1] - 1].
+	// Field ids are stored as unsigned 32 bit values.
+	final int[] entries;
+	final int[] offsets;
 
 	// Value types for deserialization
-	Queue<Long> types;
+	final int[] types;
+	int typeIndex;
 
-	// The front of current_type queue always points to the type of the value we are
+	// The top of currentType stack always points to the type of the value we are
 	// deserializing.
-	Deque<Long> currentType;
+	final IntStack currentType;
+
+	// parsed table this one was copied from
+	TypeTable shared;
+	volatile DecoderPlan plan;
 
-	TypeTable(List<List<Long>> table, Queue<Long> types, Deque<Long> currentType) {
-		this.table = table;
+	TypeTable(int[] entries, int[] offsets, int[] types) {
+		this.entries = entries;
+		this.offsets = offsets;
 		this.types = types;
-		this.currentType = currentType;
+		this.currentType = new IntStack(16);
+	}
+
+	// Shares the parsed table, cursor state is per message
+	TypeTable(TypeTable table) {
+		this(table.entries, table.offsets, table.types);
 
+		this.shared = table;
+	}
+
+	// Compiled once per parsed table, shared by cached copies
+	DecoderPlan getPlan() {
+		if (this.shared != null)
+			return this.shared.getPlan();
+
+		DecoderPlan plan = this.plan;
+
+		if (plan == null) {
+			plan = DecoderPlan.compile(this);
+			this.plan = plan;
+		}
+
+		return plan;
 	}
 
 	// Parse the type table and return the remaining bytes
 	public static TypeTableResponse fromBytes(byte[] input) {
-		List<List<Long>> table = new ArrayList<List<Long>>();
+		Bytes bytes = new Bytes(input);
 
-		Queue<Long> types = new LinkedList<Long>();
+		TypeTable typeTable = fromBytes(bytes);
 
-		Bytes bytes = new Bytes(input);
+		TypeTableResponse response = new TypeTableResponse();
+
+		response.typeTable = typeTable;
+
+		response.data = new byte[bytes.data.remaining()];
+		bytes.data.get(response.data);
+
+		return response;
+	}
+
+	// Parse the type table, bytes is left positioned at the start of the values
+	public static TypeTable fromBytes(Bytes bytes) {
+		bytes.parseMagic();
+
+		return parse(bytes);
+	}
+
+	// Look up the type table in the cache, parse and add it on a miss.
+	// Only in memory input is cached, streamed input is parsed.
+	public static TypeTable fromBytes(Bytes bytes, TypeTableCache cache) {
+		if (cache == null || bytes.source != null)
+			return fromBytes(bytes);
 
 		bytes.parseMagic();
 
+		int start = bytes.data.position();
+
+		skip(bytes);
+
+		ByteBuffer key = bytes.data.duplicate();
+		key.limit(bytes.data.position());
+		key.position(start);
+
+		TypeTable table = cache.get(key);
+
+		if (table == null) {
+			bytes.data.position(start);
+
+			table = parse(bytes);
+
+			cache.put(key, table);
+		}
+
+		return new TypeTable(table);
+	}
+
+	// Walk over the type table without building it
+	static void skip(Bytes bytes) {
+		long len = bytes.leb128Read();
+
+		for (long i = 0; i < len; i++) {
+			int ty = bytes.leb128ReadSigned();
+
+			if (ty == Opcode.OPT.value || ty == Opcode.VEC.value)
+				bytes.skipLeb128();
+			else if (ty == Opcode.RECORD.value || ty == Opcode.VARIANT.value) {
+				long objLen = bytes.leb128Read();
+
+				for (long j = 0; j < 2 * objLen; j++)
+					bytes.skipLeb128();
+			} else if (ty == Opcode.FUNC.value) {
+				for (int k = 0; k < 2; k++) {
+					long objLen = bytes.leb128Read();
+
+					for (long j = 0; j < objLen; j++)
+						bytes.skipLeb128();
+				}
+
+				bytes.skip(bytes.leb128Read());
+			} else if (ty == Opcode.SERVICE.value) {
+				long objLen = bytes.leb128Read();
+
+				for (long j = 0; j < objLen; j++) {
+					bytes.skip(bytes.leb128Read());
+					bytes.skipLeb128();
+				}
+			} else
+				throw CandidError.create(CandidError.CandidErrorCode.CUSTOM,
+						String.format("Unsupported op_code %d in type table", ty));
+		}
+
+		len = bytes.leb128Read();
+
+		for (long i = 0; i < len; i++)
+			bytes.skipLeb128();
+	}
+
+	static TypeTable parse(Bytes bytes) {
 		int len = bytes.leb128Read().intValue();
 
+		// grown while parsing, len is not trusted for allocation
+		IntStack buf = new IntStack(64);
+		IntStack offsets = new IntStack(16);
+
 		for (int i = 0; i < len; i++) {
-			List<Long> buf = new ArrayList<Long>();
+			offsets.push(buf.size);
 
-			Integer ty = bytes.leb128ReadSigned();
-			
-			buf.add(ty.longValue());
+			int ty = bytes.leb128ReadSigned();
+
+			buf.push(ty);
 			if (ty == Opcode.OPT.value || ty == Opcode.VEC.value) {
 				ty = bytes.leb128ReadSigned();
 				validateTypeRange(ty, len);
-				buf.add(ty.longValue());
+				buf.push(ty);
 			} else if (ty == Opcode.RECORD.value || ty == Opcode.VARIANT.value) {
-				Integer objLen = bytes.leb128Read().intValue();
-				buf.add(objLen.longValue());
+				int objLen = bytes.leb128Read().intValue();
+				buf.push(objLen);
 
-				Optional<Long> prevHash = Optional.empty();
+				long prevHash = -1;
 
 				for (int j = 0; j < objLen; j++) {
-					Long hash = bytes.leb128Read();
+					long hash = bytes.leb128Read();
 
-					if (prevHash.isPresent()) {
-						if (prevHash.get() >= hash)
-							throw CandidError.create(CandidError.CandidErrorCode.CUSTOM,
-									"Field id collision or not sorted");
-					}
+					if (prevHash >= hash)
+						throw CandidError.create(CandidError.CandidErrorCode.CUSTOM,
+								"Field id collision or not sorted");
+
+					if (hash > MAX_FIELD_ID)
+						throw CandidError.create(CandidError.CandidErrorCode.CUSTOM,
+								String.format("Field id %d out of range", hash));
 
-					prevHash = Optional.of(hash);
-					buf.add(hash);
+					prevHash = hash;
+					buf.push((int) hash);
 					ty = bytes.leb128ReadSigned();
 					validateTypeRange(ty, len);
-					buf.add(ty.longValue());
+					buf.push(ty);
 				}
 			}
 			else if (ty == Opcode.FUNC.value) {
-				Integer objLen = bytes.leb128Read().intValue();
+				int objLen = bytes.leb128Read().intValue();
 				
-				buf.add(objLen.longValue());
+				buf.push(objLen);
 				
 				for (int j = 0; j < objLen; j++) {
 					ty = bytes.leb128ReadSigned();
 					isPrimitiveType(ty);
-					buf.add(ty.longValue());
+					buf.push(ty);
 				}
 				
 				objLen = bytes.leb128Read().intValue();
 				
-				buf.add(objLen.longValue());
+				buf.push(objLen);
 				
 				for (int j = 0; j < objLen; j++) {
 					ty = bytes.leb128ReadSigned();
 					isPrimitiveType(ty);
-					buf.add(ty.longValue());
+					buf.push(ty);
 				}
 				
 				objLen = bytes.leb128Read().intValue();
 				
-				buf.add(objLen.longValue());
+				buf.push(objLen);
 				
 				if(objLen > 1)
 					throw CandidError.create(CandidError.CandidErrorCode.CUSTOM,
@@ -127,56 +245,48 @@ public final class TypeTable {
 						throw CandidError.create(CandidError.CandidErrorCode.CUSTOM,
 								String.format("Unknown annotation %d", mode));					
 					
-					buf.add((long) mode);
+					buf.push(mode);
 				}
 			}
 			else if (ty == Opcode.SERVICE.value) {
-				Integer objLen = bytes.leb128Read().intValue();
+				int objLen = bytes.leb128Read().intValue();
 				
-				buf.add(objLen.longValue());
+				buf.push(objLen);
 				
 				for (int j = 0; j < objLen; j++) {
-					Integer nameLen = bytes.leb128Read().intValue();
+					int nameLen = bytes.leb128Read().intValue();
 					
-					buf.add(nameLen.longValue());
+					buf.push(nameLen);
 					
 					byte[] nameBytes =bytes.parseBytes(nameLen);
 				
 					for(byte nameByte : nameBytes)
-						buf.add((long) nameByte);
+						buf.push(nameByte);
 					
 					ty = bytes.leb128ReadSigned();
 					isPrimitiveType(ty);
-					buf.add(ty.longValue());
+					buf.push(ty);
 				}
 			}
 			else {
 				throw CandidError.create(CandidError.CandidErrorCode.CUSTOM,
 						String.format("Unsupported op_code %d in type table", ty));
 			}
-
-			table.add(buf);
 		}
 
+		offsets.push(buf.size);
+
 		len = bytes.leb128Read().intValue();
 
+		IntStack types = new IntStack(16);
+
 		for (int i = 0; i < len; i++) {
-			Integer ty = bytes.leb128ReadSigned();
-			validateTypeRange(ty, table.size());
-			types.add(ty.longValue());
+			int ty = bytes.leb128ReadSigned();
+			validateTypeRange(ty, offsets.size - 1);
+			types.push(ty);
 		}
 
-		TypeTable typeTable = new TypeTable(table, types, new LinkedList<Long>());
-
-		TypeTableResponse response = new TypeTableResponse();
-
-		response.typeTable = typeTable;
-
-		response.data = new byte[bytes.data.remaining()];
-		bytes.data.get(response.data);
-
-		return response;
-
+		return new TypeTable(buf.toArray(), offsets.toArray(), types.toArray());
 	}
 
 	static boolean isPrimitiveType(int ty) {
@@ -190,32 +300,90 @@ public final class TypeTable {
 			CandidError.create(CandidError.CandidErrorCode.CUSTOM, String.format("Unknown type %d", ty));
 	}
 
-	Long popCurrentType() {
-
-		Long type = this.currentType.pop();
+	// Number of entries in the type table
+	int size() {
+		return this.offsets.length - 1;
+	}
+	
+	// Raw value at position pos of type table entry idx
+	int get(int idx, int pos) {
+		return this.entries[this.offsets[idx] + pos];
+	}
+	
+	// Field id of RECORD or VARIANT entry idx
+	long getFieldId(int idx, int field) {
+		return Integer.toUnsignedLong(this.get(idx, 2 + 2 * field));
+	}
+	
+	// Field type of RECORD or VARIANT entry idx
+	int getFieldType(int idx, int field) {
+		return this.get(idx, 3 + 2 * field);
+	}
+	
+	// Opcode of the type, table indexes are resolved to the opcode of their entry
+	int opcode(int type) {
+		if (type >= 0) {
+			if (type >= this.size())
+				throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, String.format("Unknown type %d", type));
+			
+			return this.get(type, 0);
+		}
+		
+		return type;
+	}
+	
+	// Number of argument types
+	int typesSize() {
+		return this.types.length;
+	}
+	
+	boolean hasNextType() {
+		return this.typeIndex < this.types.length;
+	}
+	
+	// Start deserialization of the next argument
+	void nextType() {
+		if (!this.hasNextType())
+			throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, "No more values to deserialize");
+		
+		this.currentType.push(this.types[this.typeIndex++]);
+	}
 
-		if (type != null)
-			return type;
-		else
+	int popCurrentType() {
+		if (this.currentType.size == 0)
 			throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, "Empty current_type");
-
+		
+		return this.currentType.pop();
+	}
+	
+	long popFieldId() {
+		return Integer.toUnsignedLong(this.popCurrentType());
 	}
 
-	Long peekCurrentType() {
-
-		Long type = this.currentType.peek();
-
-		if (type != null)
-			return type;
-		else
+	int peekCurrentType() {
+		return this.peekCurrentType(0);
+	}
+	
+	// Value depth positions below the top of currentType
+	int peekCurrentType(int depth) {
+		if (depth >= this.currentType.size)
 			throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, "Empty current_type");
-
+		
+		return this.currentType.peek(depth);
+	}
+	
+	void pushCurrentType(int type) {
+		this.currentType.push(type);
+	}
+	
+	boolean isCurrentTypeEmpty() {
+		return this.currentType.size == 0;
 	}
 
 	Opcode rawValueToOpcode(int value) {
 		int prevValue = value;
-		if (value >= 0 && value < this.table.size())
-			value = this.table.get(value).get(0).intValue();
+		if (value >= 0 && value < this.size())
+			value = this.get(value, 0);
 		
 		
 		if(value == Opcode.FUNC.value)
@@ -225,26 +393,22 @@ public final class TypeTable {
 			List<Mode> modes = new ArrayList<Mode>();
 			
 			int i = 1;
-			Integer objLen = this.table.get(prevValue).get(i++).intValue();
+			int objLen = this.get(prevValue, i++);
 			
 			
-			for (int j = 0; j < objLen; j++) {
-				Integer ty = this.table.get(prevValue).get(i++).intValue();
-				args.add(ty);
-			}
+			for (int j = 0; j < objLen; j++)
+				args.add(this.get(prevValue, i++));
 			
-			objLen = this.table.get(prevValue).get(i++).intValue();
+			objLen = this.get(prevValue, i++);
 			
-			for (int j = 0; j < objLen; j++) {
-				Integer ty = this.table.get(prevValue).get(i++).intValue();
-				rets.add(ty);
-			}
+			for (int j = 0; j < objLen; j++)
+				rets.add(this.get(prevValue, i++));
 			
-			objLen = this.table.get(prevValue).get(i++).intValue();
+			objLen = this.get(prevValue, i++);
 			
 			if(objLen == 1)
 			{	
-				Mode mode = Mode.from(this.table.get(prevValue).get(i++).intValue());
+				Mode mode = Mode.from(this.get(prevValue, i++));
 				
 				modes.add(mode);
 			}
@@ -257,19 +421,19 @@ public final class TypeTable {
 			List<Meths> meths = new ArrayList<Meths>();
 			
 			int i = 1;
-			Integer objLen = this.table.get(prevValue).get(i++).intValue();
+			int objLen = this.get(prevValue, i++);
 						
 			for (int j = 0; j < objLen; j++) {
-				Integer nameLen = this.table.get(prevValue).get(i++).intValue();
+				int nameLen = this.get(prevValue, i++);
 				
 				byte[] nameBytes = new byte[nameLen];
 				
 				for (int k = 0; k < nameLen; k++) 
-					nameBytes[k] = this.table.get(prevValue).get(i++).byteValue();
+					nameBytes[k] = (byte) this.get(prevValue, i++);
 					
 				String name = new String(nameBytes);	
 				
-				Integer ty = this.table.get(prevValue).get(i++).intValue();
+				int ty = this.get(prevValue, i++);
 				
 				meths.add(new Meths(name, ty));
 			}	
@@ -280,37 +444,33 @@ public final class TypeTable {
 		return Opcode.from(value);
 	}
 
-	// Pop type opcode from the front of currentType.
+	// Pop type opcode from the top of currentType.
 	// If the opcode is an index (>= 0), we push the corresponding entry from table,
-	// to currentType queue, and pop the opcode from the front.
-
-	// Same logic as parseType, but not poping the currentType queue.
-
+	// to currentType stack, and pop the opcode from the top.
 	Opcode parseType() {
-		Long op = this.popCurrentType();
+		int op = this.popCurrentType();
 
-		if (op >= 0 && op < this.table.size()) {
-			List<Long> ty = this.table.get(op.intValue());	
+		if (op >= 0 && op < this.size()) {
+			int start = this.offsets[op];
+			int end = this.offsets[op + 1];
 
-			ListIterator<Long> it = ty.listIterator(ty.size());
-			
-			if(ty.get(0) == Opcode.FUNC.value || ty.get(0) == Opcode.SERVICE.value)
-				this.currentType.push(ty.get(0));
+			if(this.entries[start] == Opcode.FUNC.value || this.entries[start] == Opcode.SERVICE.value)
+				this.currentType.push(this.entries[start]);
 			else
-				while (it.hasPrevious())			
-					this.currentType.push(it.previous());
+				for (int i = end - 1; i >= start; i--)
+					this.currentType.push(this.entries[i]);
 
 			op = this.popCurrentType();
 		}
 
-		return Opcode.from(op.intValue());
+		return Opcode.from(op);
 	}
 
-	// Same logic as parseType, but not poping the currentType queue.
+	// Same logic as parseType, but not poping the currentType stack.
 	Opcode peekType() {
-		Long op = this.peekCurrentType();
+		int op = this.peekCurrentType();
 
-		return this.rawValueToOpcode(op.intValue());
+		return this.rawValueToOpcode(op);
 	}
 
 	// Check if currentType matches the provided type
@@ -322,4 +482,32 @@ public final class TypeTable {
 					.format("Type mismatch. Type on the wire: %d; Expected type: %d", wireType.value, expected.value));
 	}
 
+	// Growable stack of primitive ints, peek(0) is the top
+	static final class IntStack {
+		int[] values;
+		int size;
+
+		IntStack(int capacity) {
+			this.values = new int[Math.max(capacity, 4)];
+		}
+
+		void push(int value) {
+			if (this.size == this.values.length)
+				this.values = Arrays.copyOf(this.values, this.values.length * 2);
+
+			this.values[this.size++] = value;
+		}
+
+		int pop() {
+			return this.values[--this.size];
+		}
+
+		int peek(int depth) {
+			return this.values[this.size - 1 - depth];
+		}
+
+		int[] toArray() {
+			return Arrays.copyOf(this.values, this.size);
+		}
+	}
 }
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2021 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.ic4j.candid;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Bounded LRU cache of parsed type tables, keyed by the raw type table bytes.
+ * Messages returned by the same canister method share the type table prefix,
+ * a hit skips parsing and validation and goes straight to the values.
+ */
+public final class TypeTableCache {
+	public static final int DEFAULT_MAX_ENTRIES = 256;
+
+	final Map<ByteBuffer, TypeTable> tables;
+
+	final AtomicLong hits = new AtomicLong();
+	final AtomicLong misses = new AtomicLong();
+
+	TypeTableCache(final int maxEntries) {
+		if (maxEntries <= 0)
+			throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, "Cache size must be positive");
+
+		this.tables = new LinkedHashMap<ByteBuffer, TypeTable>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<ByteBuffer, TypeTable> eldest) {
+				return this.size() > maxEntries;
+			}
+		};
+	}
+
+	public static TypeTableCache create() {
+		return new TypeTableCache(DEFAULT_MAX_ENTRIES);
+	}
+
+	public static TypeTableCache create(int maxEntries) {
+		return new TypeTableCache(maxEntries);
+	}
+
+	// key is the type table byte range, ByteBuffer equality and hash are content based
+	synchronized TypeTable get(ByteBuffer key) {
+		TypeTable table = this.tables.get(key);
+
+		if (table != null)
+			this.hits.incrementAndGet();
+		else
+			this.misses.incrementAndGet();
+
+		return table;
+	}
+
+	// key bytes are copied, the message buffer can be reused by the caller
+	synchronized void put(ByteBuffer key, TypeTable table) {
+		byte[] bytes = new byte[key.remaining()];
+
+		key.duplicate().get(bytes);
+
+		this.tables.put(ByteBuffer.wrap(bytes), table);
+	}
+
+	public long getHits() {
+		return this.hits.get();
+	}
+
+	public long getMisses() {
+		return this.misses.get();
+	}
+
+	public synchronized int size() {
+		return this.tables.size();
+	}
+
+	public synchronized void clear() {
+		this.tables.clear();
+	}
+}
@@ -348,16 +348,14 @@ public final class ValueSerializer implements Serializer{
 
 	@Override
 	public void serializeVariant(Object value, IDLType idlType) {
-		int idx = 0;
-		
 		if(value instanceof Map)
 			if(!((Map<Label,Object>) value).isEmpty())
 			{
-				byte[] leb128 = Leb128.writeUnsigned(idx);
+		    	Label label = ((Map<Label,Object>)value).keySet().iterator().next();
 		    	
-		    	this.value = ArrayUtils.addAll(this.value,leb128);
+				byte[] leb128 = Leb128.writeUnsigned(IDLUtils.variantIndex(idlType, label));
 		    	
-		    	Label label = ((Map<Label,Object>)value).keySet().iterator().next();		    	
+		    	this.value = ArrayUtils.addAll(this.value,leb128);
 		    	
 				Object element = ((Map<Label,Object>) value).get(label);				
 				
@@ -0,0 +1,305 @@
+/*
+ * Copyright 2021 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+
+package org.ic4j.candid.gson;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import org.ic4j.candid.jackson.CandidParser;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/*
+ * Gson reader pulling tokens from a CandidParser. Blobs, embedded byte arrays on
+ * the parser, are read as arrays of numbers as Gson reads byte[] and lists, signed
+ * for vec int8 and unsigned for vec nat8.
+ * The character reader of the base class is never used.
+ */
+final class CandidJsonReader extends JsonReader {
+	static final Reader UNREADABLE_READER = new Reader() {
+		@Override
+		public int read(char[] buffer, int offset, int count) {
+			throw new AssertionError();
+		}
+
+		@Override
+		public void close() {
+			throw new AssertionError();
+		}
+	};
+
+	final CandidParser parser;
+
+	// next token, null until peeked
+	JsonToken peeked;
+
+	// blob being read as array, null otherwise
+	byte[] blob;
+	int blobIndex;
+	boolean blobSigned;
+
+	CandidJsonReader(CandidParser parser) {
+		super(UNREADABLE_READER);
+		this.parser = parser;
+	}
+
+	@Override
+	public JsonToken peek() throws IOException {
+		if (this.peeked != null)
+			return this.peeked;
+
+		if (this.blob != null) {
+			this.peeked = this.blobIndex < this.blob.length ? JsonToken.NUMBER : JsonToken.END_ARRAY;
+			return this.peeked;
+		}
+
+		com.fasterxml.jackson.core.JsonToken token = this.parser.nextToken();
+
+		if (token == null) {
+			this.peeked = JsonToken.END_DOCUMENT;
+			return this.peeked;
+		}
+
+		switch (token) {
+		case START_OBJECT:
+			this.peeked = JsonToken.BEGIN_OBJECT;
+			break;
+		case END_OBJECT:
+			this.peeked = JsonToken.END_OBJECT;
+			break;
+		case START_ARRAY:
+			this.peeked = JsonToken.BEGIN_ARRAY;
+			break;
+		case END_ARRAY:
+			this.peeked = JsonToken.END_ARRAY;
+			break;
+		case FIELD_NAME:
+			this.peeked = JsonToken.NAME;
+			break;
+		case VALUE_NUMBER_INT:
+		case VALUE_NUMBER_FLOAT:
+			this.peeked = JsonToken.NUMBER;
+			break;
+		case VALUE_TRUE:
+		case VALUE_FALSE:
+			this.peeked = JsonToken.BOOLEAN;
+			break;
+		case VALUE_NULL:
+			this.peeked = JsonToken.NULL;
+			break;
+		case VALUE_EMBEDDED_OBJECT:
+			Object value = this.parser.getEmbeddedObject();
+
+			if (value instanceof byte[]) {
+				this.blob = (byte[]) value;
+				this.blobIndex = 0;
+				this.blobSigned = this.parser.isSignedBinary();
+				this.peeked = JsonToken.BEGIN_ARRAY;
+			} else
+				// func references are read as their text
+				this.peeked = JsonToken.STRING;
+			break;
+		default:
+			this.peeked = JsonToken.STRING;
+			break;
+		}
+
+		return this.peeked;
+	}
+
+	void consume(JsonToken expected) throws IOException {
+		JsonToken token = this.peek();
+
+		if (token != expected)
+			throw new IllegalStateException("Expected " + expected + " but was " + token + this.locationString());
+
+		this.peeked = null;
+	}
+
+	// consumes a NUMBER or STRING value
+	void consumeScalar(JsonToken token) {
+		if (token != JsonToken.NUMBER && token != JsonToken.STRING)
+			throw new IllegalStateException("Expected a number or string but was " + token + this.locationString());
+
+		this.peeked = null;
+	}
+
+	String locationString() {
+		return " at path " + this.getPath();
+	}
+
+	@Override
+	public void beginArray() throws IOException {
+		this.consume(JsonToken.BEGIN_ARRAY);
+	}
+
+	@Override
+	public void endArray() throws IOException {
+		this.consume(JsonToken.END_ARRAY);
+		this.blob = null;
+	}
+
+	@Override
+	public void beginObject() throws IOException {
+		this.consume(JsonToken.BEGIN_OBJECT);
+	}
+
+	@Override
+	public void endObject() throws IOException {
+		this.consume(JsonToken.END_OBJECT);
+	}
+
+	@Override
+	public boolean hasNext() throws IOException {
+		JsonToken token = this.peek();
+
+		return token != JsonToken.END_OBJECT && token != JsonToken.END_ARRAY && token != JsonToken.END_DOCUMENT;
+	}
+
+	@Override
+	public String nextName() throws IOException {
+		this.consume(JsonToken.NAME);
+		return this.parser.currentName();
+	}
+
+	int nextBlobValue() {
+		byte value = this.blob[this.blobIndex++];
+
+		return this.blobSigned ? value : value & 0xFF;
+	}
+
+	@Override
+	public String nextString() throws IOException {
+		JsonToken token = this.peek();
+
+		if (this.blob != null && token == JsonToken.NUMBER) {
+			this.peeked = null;
+			return String.valueOf(this.nextBlobValue());
+		}
+
+		this.consumeScalar(token);
+		return this.parser.getText();
+	}
+
+	@Override
+	public boolean nextBoolean() throws IOException {
+		this.consume(JsonToken.BOOLEAN);
+		return this.parser.currentToken() == com.fasterxml.jackson.core.JsonToken.VALUE_TRUE;
+	}
+
+	@Override
+	public void nextNull() throws IOException {
+		this.consume(JsonToken.NULL);
+	}
+
+	@Override
+	public double nextDouble() throws IOException {
+		if (this.peek() == JsonToken.STRING) {
+			this.peeked = null;
+			return Double.parseDouble(this.parser.getText());
+		}
+
+		this.consume(JsonToken.NUMBER);
+
+		if (this.blob != null)
+			return this.nextBlobValue();
+
+		return this.parser.getDoubleValue();
+	}
+
+	@Override
+	public long nextLong() throws IOException {
+		if (this.peek() == JsonToken.STRING) {
+			this.peeked = null;
+			return Long.parseLong(this.parser.getText());
+		}
+
+		this.consume(JsonToken.NUMBER);
+
+		if (this.blob != null)
+			return this.nextBlobValue();
+
+		return this.parser.getLongValue();
+	}
+
+	@Override
+	public int nextInt() throws IOException {
+		long value = this.nextLong();
+
+		if (value != (int) value)
+			throw new NumberFormatException("Expected an int but was " + value + this.locationString());
+
+		return (int) value;
+	}
+
+	@Override
+	public void skipValue() throws IOException {
+		JsonToken token = this.peek();
+
+		switch (token) {
+		case NAME:
+			this.peeked = null;
+			this.skipValue();
+			break;
+		case BEGIN_ARRAY:
+		case BEGIN_OBJECT:
+			this.peeked = null;
+
+			// skips the blob or the encoded children without decoding them
+			if (this.blob != null)
+				this.blob = null;
+			else
+				this.parser.skipChildren();
+			break;
+		case NUMBER:
+			this.peeked = null;
+
+			if (this.blob != null)
+				this.blobIndex++;
+			break;
+		case END_DOCUMENT:
+			break;
+		default:
+			this.peeked = null;
+			break;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.peeked = null;
+		this.blob = null;
+		this.parser.close();
+	}
+
+	@Override
+	public String getPath() {
+		return "$";
+	}
+
+	@Override
+	public String getPreviousPath() {
+		return "$";
+	}
+
+	@Override
+	public String toString() {
+		return this.getClass().getSimpleName();
+	}
+}
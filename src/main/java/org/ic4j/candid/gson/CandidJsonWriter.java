@@ -0,0 +1,172 @@
+/*
+ * Copyright 2021 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+
+package org.ic4j.candid.gson;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.google.gson.stream.JsonWriter;
+
+/*
+ * Gson writer forwarding tokens to a CandidGenerator, which encodes them against
+ * the schema type. The character writer of the base class is never used.
+ */
+final class CandidJsonWriter extends JsonWriter {
+	static final Writer UNWRITABLE_WRITER = new Writer() {
+		@Override
+		public void write(char[] buffer, int offset, int counter) {
+			throw new AssertionError();
+		}
+
+		@Override
+		public void flush() {
+			throw new AssertionError();
+		}
+
+		@Override
+		public void close() {
+			throw new AssertionError();
+		}
+	};
+
+	final JsonGenerator generator;
+
+	CandidJsonWriter(JsonGenerator generator) {
+		super(UNWRITABLE_WRITER);
+		this.generator = generator;
+	}
+
+	@Override
+	public JsonWriter beginArray() throws IOException {
+		this.generator.writeStartArray();
+		return this;
+	}
+
+	@Override
+	public JsonWriter endArray() throws IOException {
+		this.generator.writeEndArray();
+		return this;
+	}
+
+	@Override
+	public JsonWriter beginObject() throws IOException {
+		this.generator.writeStartObject();
+		return this;
+	}
+
+	@Override
+	public JsonWriter endObject() throws IOException {
+		this.generator.writeEndObject();
+		return this;
+	}
+
+	@Override
+	public JsonWriter name(String name) throws IOException {
+		if (name == null)
+			throw new NullPointerException("name == null");
+
+		this.generator.writeFieldName(name);
+		return this;
+	}
+
+	@Override
+	public JsonWriter value(String value) throws IOException {
+		if (value == null)
+			return this.nullValue();
+
+		this.generator.writeString(value);
+		return this;
+	}
+
+	@Override
+	public JsonWriter jsonValue(String value) throws IOException {
+		throw new UnsupportedOperationException("Raw JSON values cannot be written as Candid");
+	}
+
+	@Override
+	public JsonWriter nullValue() throws IOException {
+		this.generator.writeNull();
+		return this;
+	}
+
+	@Override
+	public JsonWriter value(boolean value) throws IOException {
+		this.generator.writeBoolean(value);
+		return this;
+	}
+
+	@Override
+	public JsonWriter value(Boolean value) throws IOException {
+		if (value == null)
+			return this.nullValue();
+
+		this.generator.writeBoolean(value);
+		return this;
+	}
+
+	@Override
+	public JsonWriter value(float value) throws IOException {
+		this.generator.writeNumber(value);
+		return this;
+	}
+
+	@Override
+	public JsonWriter value(double value) throws IOException {
+		this.generator.writeNumber(value);
+		return this;
+	}
+
+	@Override
+	public JsonWriter value(long value) throws IOException {
+		this.generator.writeNumber(value);
+		return this;
+	}
+
+	@Override
+	public JsonWriter value(Number value) throws IOException {
+		if (value == null)
+			return this.nullValue();
+
+		if (value instanceof BigInteger)
+			this.generator.writeNumber((BigInteger) value);
+		else if (value instanceof BigDecimal)
+			this.generator.writeNumber((BigDecimal) value);
+		else if (value instanceof Double || value instanceof Float)
+			this.generator.writeNumber(value.doubleValue());
+		else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte)
+			this.generator.writeNumber(value.longValue());
+		else
+			// LazilyParsedNumber and other numbers keep their decimal text
+			this.generator.writeNumber(value.toString());
+
+		return this;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		this.generator.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.generator.close();
+	}
+}
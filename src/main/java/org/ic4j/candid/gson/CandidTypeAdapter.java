@@ -0,0 +1,133 @@
+/*
+ * Copyright 2021 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+
+package org.ic4j.candid.gson;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.ic4j.candid.jackson.CandidFactory;
+import org.ic4j.candid.jackson.CandidParser;
+import org.ic4j.candid.jackson.CandidSchema;
+import org.ic4j.candid.parser.IDLType;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.google.gson.FieldNamingStrategy;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/*
+ * Gson adapter of a class that also encodes and decodes Candid messages. The
+ * delegate adapter, usually Gson's reflective adapter, writes its tokens to a
+ * Candid encoder and reads them from a Candid decoder, without JsonElement trees.
+ * The expected type is GsonSerializer.getIDLType of the class with the field naming
+ * strategy of the Gson instance, bound at first use, or set with withIDLType. JSON reads and writes go to the delegate unchanged.
+ */
+public final class CandidTypeAdapter<T> extends TypeAdapter<T> {
+	static final CandidFactory CANDID_FACTORY = new CandidFactory();
+
+	final TypeAdapter<T> delegate;
+	final Class<?> rawType;
+
+	// names the fields of the expected type like the delegate does
+	final FieldNamingStrategy namingStrategy;
+
+	// schema of the expected type, null until first used
+	volatile CandidSchema schema;
+
+	CandidTypeAdapter(TypeAdapter<T> delegate, Class<?> rawType, FieldNamingStrategy namingStrategy, CandidSchema schema) {
+		this.delegate = delegate;
+		this.rawType = rawType;
+		this.namingStrategy = namingStrategy;
+		this.schema = schema;
+	}
+
+	public static <T> CandidTypeAdapter<T> create(TypeAdapter<T> delegate, IDLType idlType) {
+		return new CandidTypeAdapter<T>(delegate, null, null, CandidSchema.create(idlType));
+	}
+
+	// adapter with the same delegate and another expected type
+	public CandidTypeAdapter<T> withIDLType(IDLType idlType) {
+		return new CandidTypeAdapter<T>(this.delegate, this.rawType, this.namingStrategy, CandidSchema.create(idlType));
+	}
+
+	public IDLType getIDLType() {
+		return this.schema().getIDLType();
+	}
+
+	CandidSchema schema() {
+		CandidSchema schema = this.schema;
+
+		if (schema == null) {
+			schema = CandidSchema.create(GsonSerializer.getIDLType(this.namingStrategy, this.rawType));
+			this.schema = schema;
+		}
+
+		return schema;
+	}
+
+	@Override
+	public void write(JsonWriter out, T value) throws IOException {
+		this.delegate.write(out, value);
+	}
+
+	@Override
+	public T read(JsonReader in) throws IOException {
+		return this.delegate.read(in);
+	}
+
+	// Candid message with the value as single argument
+	public byte[] toCandid(T value) throws IOException {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+
+		this.toCandid(value, os);
+
+		return os.toByteArray();
+	}
+
+	public void toCandid(T value, OutputStream os) throws IOException {
+		JsonGenerator generator = CANDID_FACTORY.createGenerator(os);
+
+		generator.setSchema(this.schema());
+		this.delegate.write(new CandidJsonWriter(generator), value);
+		generator.flush();
+	}
+
+	// first argument of the Candid message, null if there are no arguments
+	public T fromCandid(byte[] input) throws IOException {
+		return this.fromCandid(CANDID_FACTORY.createParser(input));
+	}
+
+	public T fromCandid(InputStream input) throws IOException {
+		return this.fromCandid(CANDID_FACTORY.createParser(input));
+	}
+
+	T fromCandid(CandidParser parser) throws IOException {
+		parser.setSchema(this.schema());
+
+		JsonReader reader = new CandidJsonReader(parser);
+
+		if (reader.peek() == JsonToken.END_DOCUMENT)
+			return null;
+
+		return this.delegate.read(reader);
+	}
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2021 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+
+package org.ic4j.candid.gson;
+
+import java.io.IOException;
+
+import org.ic4j.candid.parser.IDLType;
+import org.ic4j.types.Principal;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/*
+ * Creates CandidTypeAdapters for POJO and enum types. Gson caches the adapter per
+ * type, so field reflection and the Candid schema are bound once per class.
+ * Principals are written as text, enums are read from variants by label. Numbers, strings, maps, arrays and JsonElement
+ * keep Gson's adapters.
+ *
+ * Gson gson = new GsonBuilder().registerTypeAdapterFactory(CandidTypeAdapterFactory.create()).create();
+ * byte[] buf = CandidTypeAdapterFactory.getAdapter(gson, Pojo.class).toCandid(pojo);
+ */
+public final class CandidTypeAdapterFactory implements TypeAdapterFactory {
+	static final TypeAdapter<Principal> PRINCIPAL_ADAPTER = new TypeAdapter<Principal>() {
+		@Override
+		public void write(JsonWriter out, Principal value) throws IOException {
+			out.value(value.toString());
+		}
+
+		@Override
+		public Principal read(JsonReader in) throws IOException {
+			return Principal.fromString(in.nextString());
+		}
+	}.nullSafe();
+
+	public static CandidTypeAdapterFactory create() {
+		return new CandidTypeAdapterFactory();
+	}
+
+	@Override
+	public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+		Class<? super T> rawType = type.getRawType();
+
+		if (Principal.class.isAssignableFrom(rawType)) {
+			@SuppressWarnings("unchecked")
+			TypeAdapter<T> adapter = (TypeAdapter<T>) PRINCIPAL_ADAPTER;
+
+			return adapter;
+		}
+
+		if (rawType.isPrimitive() || rawType.isArray() || IDLType.isDefaultType(rawType)
+				|| JsonElement.class.isAssignableFrom(rawType))
+			return null;
+
+		TypeAdapter<T> delegate = gson.getDelegateAdapter(this, type);
+
+		if (Enum.class.isAssignableFrom(rawType) && rawType != Enum.class)
+			delegate = variantAdapter(delegate);
+
+		return new CandidTypeAdapter<T>(delegate, rawType, gson.fieldNamingStrategy(), null);
+	}
+
+	// enum constants are read from their name or from a variant object, {"label": null}
+	static <T> TypeAdapter<T> variantAdapter(TypeAdapter<T> delegate) {
+		return new TypeAdapter<T>() {
+			@Override
+			public void write(JsonWriter out, T value) throws IOException {
+				delegate.write(out, value);
+			}
+
+			@Override
+			public T read(JsonReader in) throws IOException {
+				if (in.peek() != JsonToken.BEGIN_OBJECT)
+					return delegate.read(in);
+
+				in.beginObject();
+
+				String label = in.nextName();
+				in.skipValue();
+
+				while (in.hasNext())
+					in.skipValue();
+
+				in.endObject();
+
+				return delegate.fromJsonTree(new JsonPrimitive(label));
+			}
+		};
+	}
+
+	// Candid adapter of the type, wraps the Gson adapter if the factory is not registered
+	public static <T> CandidTypeAdapter<T> getAdapter(Gson gson, TypeToken<T> type) {
+		TypeAdapter<T> adapter = gson.getAdapter(type);
+
+		if (adapter instanceof CandidTypeAdapter) {
+			@SuppressWarnings("unchecked")
+			CandidTypeAdapter<T> candidAdapter = (CandidTypeAdapter<T>) adapter;
+
+			return candidAdapter;
+		}
+
+		return new CandidTypeAdapter<T>(adapter, type.getRawType(), gson.fieldNamingStrategy(), null);
+	}
+
+	public static <T> CandidTypeAdapter<T> getAdapter(Gson gson, Class<T> clazz) {
+		return getAdapter(gson, TypeToken.get(clazz));
+	}
+}
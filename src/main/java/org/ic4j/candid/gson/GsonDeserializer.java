@@ -33,7 +33,6 @@ import org.ic4j.candid.types.Type;
 import org.ic4j.types.Principal;
 
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonNull;
@@ -42,7 +41,7 @@ import com.google.gson.JsonPrimitive;
 
 public class GsonDeserializer implements ObjectDeserializer {
 	Optional<IDLType> idlType = Optional.empty();
-	Gson gson = new GsonBuilder().create();
+	Gson gson = GsonSerializer.DEFAULT_GSON;
 
 	public static GsonDeserializer create(IDLType idlType) {
 		GsonDeserializer deserializer = new GsonDeserializer();
@@ -18,6 +18,7 @@ package org.ic4j.candid.gson;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.ParameterizedType;
+import java.util.Collections;
 import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.Iterator;
@@ -25,6 +26,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.ic4j.candid.CandidError;
 import org.ic4j.candid.ObjectSerializer;
@@ -34,6 +37,8 @@ import org.ic4j.candid.types.Label;
 import org.ic4j.candid.types.Type;
 import org.ic4j.types.Principal;
 
+import com.google.gson.FieldNamingPolicy;
+import com.google.gson.FieldNamingStrategy;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonArray;
@@ -44,9 +49,23 @@ import com.google.gson.annotations.Expose;
 import com.google.gson.annotations.SerializedName;
 
 public class GsonSerializer implements ObjectSerializer {
+	// shared by adapters, Gson is thread safe
+	static final Gson DEFAULT_GSON = new GsonBuilder().create();
+	
+	// IDL types of Java classes, field reflection runs once per class
+	static final ClassValue<IDLType> IDL_TYPES = new ClassValue<IDLType>() {
+		@Override
+		protected IDLType computeValue(Class<?> clazz) {
+			return computeIDLType(FieldNamingPolicy.IDENTITY, clazz);
+		}
+	};
+	
+	// IDL types of fields named by other naming strategies
+	static final Map<FieldNamingStrategy, Map<Class<?>, IDLType>> NAMED_IDL_TYPES = Collections.synchronizedMap(new WeakHashMap<FieldNamingStrategy, Map<Class<?>, IDLType>>());
+	
 	Optional<IDLType> idlType = Optional.empty();
 
-	Gson gson = new GsonBuilder().create();
+	Gson gson = DEFAULT_GSON;
 
 	public static GsonSerializer create(IDLType idlType) {
 		GsonSerializer deserializer = new GsonSerializer();
@@ -317,13 +336,47 @@ public class GsonSerializer implements ObjectSerializer {
 
 	}
 	
+	// cached per class, the returned type is shared and must not be modified
 	public static IDLType getIDLType(Class valueClass)
 	{
 		// handle null values
 		if(valueClass == null)
 			return IDLType.createType(Type.NULL);
 		
-		if(IDLType.isDefaultType(valueClass))
+		return IDL_TYPES.get(valueClass);
+	}
+	
+	// fields without @SerializedName are named by the strategy, cached per strategy and class, the returned type is shared and must not be modified
+	public static IDLType getIDLType(FieldNamingStrategy namingStrategy, Class valueClass)
+	{
+		if(namingStrategy == null || namingStrategy == FieldNamingPolicy.IDENTITY)
+			return getIDLType(valueClass);
+		
+		// handle null values
+		if(valueClass == null)
+			return IDLType.createType(Type.NULL);
+		
+		Map<Class<?>, IDLType> idlTypes = NAMED_IDL_TYPES.computeIfAbsent(namingStrategy, key -> new ConcurrentHashMap<Class<?>, IDLType>());
+		
+		// nested classes are computed recursively, cannot use computeIfAbsent
+		IDLType idlType = idlTypes.get(valueClass);
+		
+		if(idlType == null)
+		{
+			idlType = computeIDLType(namingStrategy, valueClass);
+			
+			IDLType cached = idlTypes.putIfAbsent(valueClass, idlType);
+			
+			if(cached != null)
+				idlType = cached;
+		}
+		
+		return idlType;
+	}
+	
+	static IDLType computeIDLType(FieldNamingStrategy namingStrategy, Class valueClass)
+	{
+		if(IDLType.isDefaultType(valueClass) || valueClass.isPrimitive())
 			return IDLType.createType(valueClass);		
 		
 		if(Optional.class.isAssignableFrom(valueClass))
@@ -367,17 +420,26 @@ public class GsonSerializer implements ObjectSerializer {
 			
 			Class typeClass = field.getType();	
 			
-			IDLType fieldType = getIDLType(typeClass);
+			IDLType fieldType = getIDLType(namingStrategy, typeClass);
 			
 			if(field.isAnnotationPresent(SerializedName.class))
 				name = field.getAnnotation(SerializedName.class).value();
+			else
+				name = namingStrategy.translateName(field);
 			
 			Label label = Label.createNamedLabel((String)name);			
 						
 			boolean isArray = typeClass.isArray();
 			boolean isOptional = Optional.class.isAssignableFrom(typeClass);
 			
-			if(IDLType.isDefaultType(typeClass) || GregorianCalendar.class.isAssignableFrom(typeClass) || Date.class.isAssignableFrom(typeClass))
+			// array fields are vec of the component type
+			if(isArray)
+			{
+				typeClass = typeClass.getComponentType();
+				fieldType = getIDLType(namingStrategy, typeClass);
+			}
+			
+			if(!isArray && (IDLType.isDefaultType(typeClass) || GregorianCalendar.class.isAssignableFrom(typeClass) || Date.class.isAssignableFrom(typeClass)))
 			{
 				// if we do not specify type in annotation and type is one of default
 				typeMap.put(label, fieldType);	
@@ -388,7 +450,7 @@ public class GsonSerializer implements ObjectSerializer {
 				isArray = true;
 				typeClass = (Class)((ParameterizedType)field.getGenericType()).getActualTypeArguments()[0];
 				
-				fieldType = getIDLType(typeClass);
+				fieldType = getIDLType(namingStrategy, typeClass);
 			}			
 			
 			// do nested type introspection if type is RECORD		
@@ -396,14 +458,16 @@ public class GsonSerializer implements ObjectSerializer {
 			{
 				String className = typeClass.getSimpleName();
 				
-				// handle RECORD arrays
-				if(isArray)
+				// nested types are cached and shared, rename a copy
+				if(!className.equals(fieldType.getName()))
 				{
+					fieldType = fieldType.copy();
 					fieldType.setName(className);
-					fieldType = IDLType.createType(Type.VEC, fieldType);
 				}
-				else
-					fieldType.setName(className);
+				
+				// handle RECORD arrays
+				if(isArray)
+					fieldType = IDLType.createType(Type.VEC, fieldType);
 
 			}else if(isArray)
 			{
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2021 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+
+package org.ic4j.candid.jackson;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Arrays;
+
+import org.ic4j.candid.CandidReader;
+
+import com.fasterxml.jackson.core.FormatSchema;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.ObjectCodec;
+import com.fasterxml.jackson.core.format.InputAccessor;
+import com.fasterxml.jackson.core.format.MatchStrength;
+import com.fasterxml.jackson.core.io.IOContext;
+
+/*
+ * Jackson data format for Candid messages. An ObjectMapper created with this factory
+ * writes and reads Candid with its bean serializers, the expected type is passed as
+ * CandidSchema:
+ *
+ * ObjectMapper mapper = new ObjectMapper(new CandidFactory());
+ * byte[] buf = mapper.writer(schema).writeValueAsBytes(value);
+ * T value = mapper.readerFor(T.class).with(schema).readValue(buf);
+ */
+public class CandidFactory extends JsonFactory {
+	private static final long serialVersionUID = 1L;
+
+	public static final String FORMAT_NAME = "Candid";
+
+	static final byte[] MAGIC_NUMBER = { 'D', 'I', 'D', 'L' };
+
+	public CandidFactory() {
+		super();
+	}
+
+	public CandidFactory(ObjectCodec codec) {
+		super(codec);
+	}
+
+	protected CandidFactory(CandidFactory src, ObjectCodec codec) {
+		super(src, codec);
+	}
+
+	@Override
+	public CandidFactory copy() {
+		return new CandidFactory(this, null);
+	}
+
+	@Override
+	public String getFormatName() {
+		return FORMAT_NAME;
+	}
+
+	@Override
+	public boolean canUseSchema(FormatSchema schema) {
+		return schema instanceof CandidSchema;
+	}
+
+	@Override
+	public boolean requiresPropertyOrdering() {
+		return false;
+	}
+
+	@Override
+	public boolean canHandleBinaryNatively() {
+		return true;
+	}
+
+	@Override
+	public boolean canUseCharArrays() {
+		return false;
+	}
+
+	@Override
+	public MatchStrength hasFormat(InputAccessor acc) throws IOException {
+		for (byte b : MAGIC_NUMBER)
+			if (!acc.hasMoreBytes() || acc.nextByte() != b)
+				return MatchStrength.NO_MATCH;
+
+		return MatchStrength.FULL_MATCH;
+	}
+
+	// Candid is binary, the encoding is ignored
+	@Override
+	public CandidGenerator createGenerator(OutputStream out, JsonEncoding enc) throws IOException {
+		return this.createCandidGenerator(out, this._createContext(this._createContentReference(out), false));
+	}
+
+	@Override
+	public CandidGenerator createGenerator(OutputStream out) throws IOException {
+		return this.createGenerator(out, JsonEncoding.UTF8);
+	}
+
+	@Override
+	public CandidParser createParser(InputStream in) throws IOException {
+		return (CandidParser) super.createParser(in);
+	}
+
+	@Override
+	public CandidParser createParser(byte[] data) throws IOException {
+		return (CandidParser) super.createParser(data);
+	}
+
+	@Override
+	protected JsonParser _createParser(InputStream in, IOContext ctxt) throws IOException {
+		return new CandidParser(ctxt, this._parserFeatures, this._objectCodec, CandidReader.create(in), in);
+	}
+
+	@Override
+	protected JsonParser _createParser(byte[] data, int offset, int len, IOContext ctxt) throws IOException {
+		if (offset != 0 || len != data.length)
+			data = Arrays.copyOfRange(data, offset, offset + len);
+
+		return new CandidParser(ctxt, this._parserFeatures, this._objectCodec, CandidReader.create(data), null);
+	}
+
+	@Override
+	protected JsonParser _createParser(Reader r, IOContext ctxt) throws IOException {
+		throw nonByteSource();
+	}
+
+	@Override
+	protected JsonParser _createParser(char[] data, int offset, int len, IOContext ctxt, boolean recyclable)
+			throws IOException {
+		throw nonByteSource();
+	}
+
+	@Override
+	protected JsonParser _createParser(DataInput input, IOContext ctxt) throws IOException {
+		throw nonByteSource();
+	}
+
+	@Override
+	protected JsonGenerator _createGenerator(Writer out, IOContext ctxt) throws IOException {
+		throw nonByteTarget();
+	}
+
+	@Override
+	protected JsonGenerator _createUTF8Generator(OutputStream out, IOContext ctxt) throws IOException {
+		return this.createCandidGenerator(out, ctxt);
+	}
+
+	@Override
+	protected Writer _createWriter(OutputStream out, JsonEncoding enc, IOContext ctxt) throws IOException {
+		throw nonByteTarget();
+	}
+
+	CandidGenerator createCandidGenerator(OutputStream out, IOContext ctxt) {
+		return new CandidGenerator(ctxt, this._generatorFeatures, this._objectCodec, out);
+	}
+
+	static UnsupportedOperationException nonByteSource() {
+		return new UnsupportedOperationException("Can not create Candid parser for character input");
+	}
+
+	static UnsupportedOperationException nonByteTarget() {
+		return new UnsupportedOperationException("Can not create Candid generator for character output");
+	}
+}
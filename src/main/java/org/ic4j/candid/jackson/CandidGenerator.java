@@ -0,0 +1,832 @@
+/*
+ * Copyright 2021 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+
+package org.ic4j.candid.jackson;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.ic4j.candid.BufferSerializer;
+import org.ic4j.candid.CandidError;
+import org.ic4j.candid.IDLUtils;
+import org.ic4j.candid.parser.IDLType;
+import org.ic4j.candid.types.Type;
+import org.ic4j.types.Principal;
+
+import com.fasterxml.jackson.core.Base64Variant;
+import com.fasterxml.jackson.core.FormatSchema;
+import com.fasterxml.jackson.core.ObjectCodec;
+import com.fasterxml.jackson.core.Version;
+import com.fasterxml.jackson.core.base.GeneratorBase;
+import com.fasterxml.jackson.core.io.IOContext;
+import com.fasterxml.jackson.core.json.JsonWriteContext;
+
+/*
+ * Writes one Candid message of the CandidSchema type from Jackson tokens. Vecs are length
+ * prefixed and record fields are written in label id order, so elements and fields are buffered
+ * as encoded Candid until their array or object is closed. The buffers are reused by nesting depth.
+ * Options take the value or null, an empty array is none. Unknown fields are skipped.
+ */
+public final class CandidGenerator extends GeneratorBase {
+	static final int ROOT = 0;
+	static final int VEC = 1;
+	static final int RECORD = 2;
+	static final int TUPLE = 3;
+	static final int VARIANT = 4;
+	static final int SKIP = 5;
+	static final int NONE = 6;
+
+	final OutputStream os;
+
+	CandidSchema schema;
+
+	// message content after the type table, created with the first value
+	BufferSerializer root;
+
+	Context[] stack = new Context[16];
+	int depth;
+
+	// target of the next value
+	IDLType valueType;
+	BufferSerializer valueOut;
+
+	CandidGenerator(IOContext ctxt, int features, ObjectCodec codec, OutputStream os) {
+		super(features, codec, ctxt);
+
+		this.os = os;
+
+		for (int i = 0; i < this.stack.length; i++)
+			this.stack[i] = new Context();
+
+		this.stack[0].kind = ROOT;
+	}
+
+	@Override
+	public Version version() {
+		return Version.unknownVersion();
+	}
+
+	@Override
+	public boolean canUseSchema(FormatSchema schema) {
+		return schema instanceof CandidSchema;
+	}
+
+	@Override
+	public void setSchema(FormatSchema schema) {
+		if (!(schema instanceof CandidSchema))
+			super.setSchema(schema);
+
+		this.schema = (CandidSchema) schema;
+	}
+
+	@Override
+	public FormatSchema getSchema() {
+		return this.schema;
+	}
+
+	@Override
+	public boolean canWriteBinaryNatively() {
+		return true;
+	}
+
+	@Override
+	public void writeStartArray() throws IOException {
+		this._verifyValueWrite("start an array");
+		this._writeContext = this._writeContext.createChildArrayContext(null);
+
+		if (!this.nextValue()) {
+			this.push(SKIP, null, null);
+			return;
+		}
+
+		IDLType idlType = this.valueType;
+		boolean optional = false;
+
+		// non empty array is the value of an option of vec or tuple
+		if (idlType != null && idlType.getType() == Type.OPT) {
+			IDLType innerType = idlType.getInnerType();
+
+			if (innerType == null || (innerType.getType() != Type.VEC && innerType.getType() != Type.RECORD)) {
+				this.push(NONE, idlType, this.valueOut);
+				return;
+			}
+
+			idlType = innerType;
+			optional = true;
+		}
+
+		switch (typeOf(idlType)) {
+		case NULL:
+		case RESERVED:
+			this.push(SKIP, null, null);
+			break;
+		case VEC:
+			this.push(VEC, idlType, this.valueOut).optional = optional;
+			break;
+		case RECORD:
+			this.push(TUPLE, idlType, this.valueOut).optional = optional;
+			break;
+		default:
+			throw mismatch("array", idlType);
+		}
+	}
+
+	@Override
+	public void writeEndArray() throws IOException {
+		if (!this._writeContext.inArray())
+			this._reportError("Current context not Array but " + this._writeContext.typeDesc());
+
+		this._writeContext = this._writeContext.clearAndGetParent();
+
+		Context context = this.pop();
+
+		switch (context.kind) {
+		case VEC:
+			if (context.optional && context.count == 0) {
+				context.out.writeUnsigned(0);
+				break;
+			}
+
+			if (context.optional)
+				context.out.writeUnsigned(1);
+
+			context.out.writeUnsigned(context.count);
+			context.elements().writeTo(context.out);
+			break;
+		case TUPLE:
+			if (context.optional && context.count == 0) {
+				context.out.writeUnsigned(0);
+				break;
+			}
+
+			if (context.optional)
+				context.out.writeUnsigned(1);
+
+			this.writeFields(context);
+			break;
+		case NONE:
+			context.out.writeUnsigned(0);
+			break;
+		default:
+			break;
+		}
+	}
+
+	@Override
+	public void writeStartObject() throws IOException {
+		this._verifyValueWrite("start an object");
+		this._writeContext = this._writeContext.createChildObjectContext(null);
+
+		if (!this.nextValue()) {
+			this.push(SKIP, null, null);
+			return;
+		}
+
+		IDLType idlType = this.optionalValue();
+
+		switch (typeOf(idlType)) {
+		case NULL:
+		case RESERVED:
+			this.push(SKIP, null, null);
+			break;
+		case RECORD:
+			this.push(RECORD, idlType, this.valueOut);
+			break;
+		case VARIANT:
+			this.push(VARIANT, idlType, this.valueOut);
+			break;
+		default:
+			throw mismatch("object", idlType);
+		}
+	}
+
+	@Override
+	public void writeEndObject() throws IOException {
+		if (!this._writeContext.inObject())
+			this._reportError("Current context not Object but " + this._writeContext.typeDesc());
+
+		this._writeContext = this._writeContext.clearAndGetParent();
+
+		Context context = this.pop();
+
+		switch (context.kind) {
+		case RECORD:
+			this.writeFields(context);
+			break;
+		case VARIANT:
+			if (!context.written)
+				throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, "Missing variant value for " + context.idlType);
+			break;
+		default:
+			break;
+		}
+	}
+
+	@Override
+	public void writeFieldName(String name) throws IOException {
+		if (this._writeContext.writeFieldName(name) == JsonWriteContext.STATUS_EXPECT_VALUE)
+			this._reportError("Can not write a field name, expecting a value");
+
+		Context context = this.stack[this.depth];
+
+		if (context.kind != RECORD && context.kind != VARIANT)
+			return;
+
+		context.field = context.layout.indexOf(IDLUtils.idlHash(name));
+
+		// first known arm is the variant value, other fields are skipped
+		if (context.kind == VARIANT && context.written)
+			context.field = -1;
+	}
+
+	@Override
+	public void writeString(String text) throws IOException {
+		this._verifyValueWrite(WRITE_STRING);
+
+		if (text == null) {
+			this.writeNullValue();
+			return;
+		}
+
+		if (!this.nextValue())
+			return;
+
+		IDLType idlType = this.optionalValue();
+
+		switch (typeOf(idlType)) {
+		case TEXT:
+			this.valueOut.serializeText(text);
+			break;
+		case PRINCIPAL:
+			this.valueOut.serializePrincipal(Principal.fromString(text));
+			break;
+		case VARIANT: {
+			// name of an arm without value, null and reserved arms or opt arms written as none
+			LabelLayout layout = this.schemaLayout(idlType);
+
+			int idx = layout.indexOf(IDLUtils.idlHash(text));
+
+			if (idx < 0)
+				throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, "Unknown variant " + text);
+
+			Type armType = typeOf(layout.types[idx]);
+
+			if (armType != Type.NULL && armType != Type.RESERVED && armType != Type.OPT)
+				throw CandidError.create(CandidError.CandidErrorCode.CUSTOM,
+						String.format("Missing value of variant %s of type %s", text, armType.name()));
+
+			this.valueOut.writeUnsigned(idx);
+
+			if (armType == Type.OPT)
+				this.valueOut.writeUnsigned(0);
+			break;
+		}
+		case FLOAT32:
+		case FLOAT64:
+			this.writeFloating(idlType, Double.parseDouble(text.trim()));
+			break;
+		case NAT:
+		case INT:
+		case NAT8:
+		case NAT16:
+		case NAT32:
+		case NAT64:
+		case INT8:
+		case INT16:
+		case INT32:
+		case INT64:
+			// big numbers may be quoted
+			this.writeIntegral(idlType, new BigInteger(text.trim()));
+			break;
+		case NULL:
+		case RESERVED:
+			break;
+		default:
+			throw mismatch("string", idlType);
+		}
+	}
+
+	@Override
+	public void writeString(char[] text, int offset, int len) throws IOException {
+		this.writeString(new String(text, offset, len));
+	}
+
+	@Override
+	public void writeRawUTF8String(byte[] text, int offset, int length) throws IOException {
+		this.writeString(new String(text, offset, length, StandardCharsets.UTF_8));
+	}
+
+	@Override
+	public void writeUTF8String(byte[] text, int offset, int length) throws IOException {
+		this.writeString(new String(text, offset, length, StandardCharsets.UTF_8));
+	}
+
+	@Override
+	public void writeRaw(String text) throws IOException {
+		this._reportUnsupportedOperation();
+	}
+
+	@Override
+	public void writeRaw(String text, int offset, int len) throws IOException {
+		this._reportUnsupportedOperation();
+	}
+
+	@Override
+	public void writeRaw(char[] text, int offset, int len) throws IOException {
+		this._reportUnsupportedOperation();
+	}
+
+	@Override
+	public void writeRaw(char c) throws IOException {
+		this._reportUnsupportedOperation();
+	}
+
+	@Override
+	public void writeBinary(Base64Variant bv, byte[] data, int offset, int len) throws IOException {
+		this._verifyValueWrite(WRITE_BINARY);
+
+		if (data == null) {
+			this.writeNullValue();
+			return;
+		}
+
+		if (!this.nextValue())
+			return;
+
+		IDLType idlType = this.optionalValue();
+
+		if (offset != 0 || len != data.length)
+			data = Arrays.copyOfRange(data, offset, offset + len);
+
+		switch (typeOf(idlType)) {
+		case PRINCIPAL:
+			this.valueOut.serializePrincipal(Principal.from(data));
+			break;
+		case VEC: {
+			Type innerType = typeOf(idlType.getInnerType());
+
+			if (innerType != Type.NAT8 && innerType != Type.INT8)
+				throw mismatch("binary", idlType);
+
+			this.valueOut.serializeBinary(data, idlType);
+			break;
+		}
+		case NULL:
+		case RESERVED:
+			break;
+		default:
+			throw mismatch("binary", idlType);
+		}
+	}
+
+	@Override
+	public void writeNumber(int v) throws IOException {
+		this.writeNumber((long) v);
+	}
+
+	@Override
+	public void writeNumber(long v) throws IOException {
+		this._verifyValueWrite(WRITE_NUMBER);
+
+		if (this.nextValue())
+			this.writeIntegral(this.optionalValue(), v);
+	}
+
+	@Override
+	public void writeNumber(BigInteger v) throws IOException {
+		this._verifyValueWrite(WRITE_NUMBER);
+
+		if (v == null) {
+			this.writeNullValue();
+			return;
+		}
+
+		if (this.nextValue())
+			this.writeIntegral(this.optionalValue(), v);
+	}
+
+	@Override
+	public void writeNumber(double v) throws IOException {
+		this._verifyValueWrite(WRITE_NUMBER);
+
+		if (this.nextValue())
+			this.writeFloating(this.optionalValue(), v);
+	}
+
+	@Override
+	public void writeNumber(float v) throws IOException {
+		this.writeNumber((double) v);
+	}
+
+	@Override
+	public void writeNumber(BigDecimal v) throws IOException {
+		this._verifyValueWrite(WRITE_NUMBER);
+
+		if (v == null) {
+			this.writeNullValue();
+			return;
+		}
+
+		if (!this.nextValue())
+			return;
+
+		IDLType idlType = this.optionalValue();
+
+		Type type = typeOf(idlType);
+
+		if (type == Type.FLOAT32 || type == Type.FLOAT64)
+			this.writeFloating(idlType, v.doubleValue());
+		else
+			this.writeIntegral(idlType, v.toBigInteger());
+	}
+
+	@Override
+	public void writeNumber(String encodedValue) throws IOException {
+		this.writeNumber(new BigDecimal(encodedValue));
+	}
+
+	@Override
+	public void writeBoolean(boolean state) throws IOException {
+		this._verifyValueWrite(WRITE_BOOLEAN);
+
+		if (!this.nextValue())
+			return;
+
+		IDLType idlType = this.optionalValue();
+
+		switch (typeOf(idlType)) {
+		case BOOL:
+			this.valueOut.serializeBool(state);
+			break;
+		case NULL:
+		case RESERVED:
+			break;
+		default:
+			throw mismatch("boolean", idlType);
+		}
+	}
+
+	@Override
+	public void writeNull() throws IOException {
+		this._verifyValueWrite(WRITE_NULL);
+
+		this.writeNullValue();
+	}
+
+	void writeNullValue() {
+		if (!this.nextValue())
+			return;
+
+		switch (typeOf(this.valueType)) {
+		case OPT:
+			this.valueOut.writeUnsigned(0);
+			break;
+		case NULL:
+		case RESERVED:
+			break;
+		default:
+			throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, "Missing value of type " + this.valueType);
+		}
+	}
+
+	void writeIntegral(IDLType idlType, long v) {
+		switch (typeOf(idlType)) {
+		case NAT:
+			this.valueOut.serializeNat(BigInteger.valueOf(v));
+			break;
+		case INT:
+			this.valueOut.serializeInt(BigInteger.valueOf(v));
+			break;
+		case FLOAT32:
+		case FLOAT64:
+			this.writeFloating(idlType, v);
+			break;
+		default:
+			this.writeFixed(idlType, v);
+			break;
+		}
+	}
+
+	void writeIntegral(IDLType idlType, BigInteger v) {
+		switch (typeOf(idlType)) {
+		case NAT:
+			this.valueOut.serializeNat(v);
+			break;
+		case INT:
+			this.valueOut.serializeInt(v);
+			break;
+		case FLOAT32:
+		case FLOAT64:
+			this.writeFloating(idlType, v.doubleValue());
+			break;
+		default:
+			this.writeFixed(idlType, v.longValue());
+			break;
+		}
+	}
+
+	void writeFloating(IDLType idlType, double v) {
+		switch (typeOf(idlType)) {
+		case FLOAT32:
+			this.valueOut.serializeFloat32((float) v);
+			break;
+		case FLOAT64:
+			this.valueOut.serializeFloat64(v);
+			break;
+		case NAT:
+		case INT:
+			this.writeIntegral(idlType, BigDecimal.valueOf(v).toBigInteger());
+			break;
+		default:
+			this.writeFixed(idlType, (long) v);
+			break;
+		}
+	}
+
+	void writeFixed(IDLType idlType, long v) {
+		switch (typeOf(idlType)) {
+		case NAT8:
+			this.valueOut.serializeNat8((byte) v);
+			break;
+		case NAT16:
+			this.valueOut.serializeNat16((short) v);
+			break;
+		case NAT32:
+			this.valueOut.serializeNat32((int) v);
+			break;
+		case NAT64:
+			this.valueOut.serializeNat64(v);
+			break;
+		case INT8:
+			this.valueOut.serializeInt8((byte) v);
+			break;
+		case INT16:
+			this.valueOut.serializeInt16((short) v);
+			break;
+		case INT32:
+			this.valueOut.serializeInt32((int) v);
+			break;
+		case INT64:
+			this.valueOut.serializeInt64(v);
+			break;
+		case NULL:
+		case RESERVED:
+			break;
+		default:
+			throw mismatch("number", idlType);
+		}
+	}
+
+	// Resolve type and target of the next value, false if the value is skipped
+	boolean nextValue() {
+		Context context = this.stack[this.depth];
+
+		switch (context.kind) {
+		case ROOT:
+			if (this.schema == null)
+				throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, "Missing Candid schema");
+
+			if (this.root != null)
+				throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, "Candid message already written");
+
+			try {
+				this.os.write(this.schema.prefix);
+			} catch (IOException e) {
+				throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, e, e.getLocalizedMessage());
+			}
+
+			this.root = BufferSerializer.create(this.os);
+
+			this.valueType = this.schema.idlType;
+			this.valueOut = this.root;
+			return true;
+		case VEC:
+			this.valueType = context.idlType.getInnerType();
+			this.valueOut = context.elements();
+			context.count++;
+			return true;
+		case TUPLE:
+			context.field = context.layout.indexOf(context.count++);
+			return this.nextField(context);
+		case RECORD:
+			return this.nextField(context);
+		case VARIANT:
+			if (context.field < 0)
+				return false;
+
+			context.out.writeUnsigned(context.field);
+			context.written = true;
+
+			this.valueType = context.layout.types[context.field];
+			this.valueOut = context.out;
+
+			context.field = -1;
+			return true;
+		case NONE:
+			throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, "Unexpected JSON array for " + context.idlType);
+		default:
+			return false;
+		}
+	}
+
+	// fields missing in the expected type are skipped, duplicates are replaced
+	boolean nextField(Context context) {
+		int idx = context.field;
+
+		if (idx < 0)
+			return false;
+
+		BufferSerializer buffer = context.buffer(idx);
+
+		if (context.assigned[idx])
+			buffer.reset();
+
+		context.assigned[idx] = true;
+		context.field = -1;
+
+		this.valueType = context.layout.types[idx];
+		this.valueOut = buffer;
+		return true;
+	}
+
+	// Write option tags of a present value, returns the type of the value
+	IDLType optionalValue() {
+		IDLType idlType = this.valueType;
+
+		while (idlType != null && idlType.getType() == Type.OPT) {
+			if (idlType.getInnerType() == null)
+				throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, "Missing inner type of " + idlType);
+
+			this.valueOut.writeUnsigned(1);
+			idlType = idlType.getInnerType();
+		}
+
+		return idlType;
+	}
+
+	void writeFields(Context context) {
+		LabelLayout layout = context.layout;
+
+		for (int i = 0; i < layout.ids.length; i++) {
+			if (context.assigned[i]) {
+				context.buffer(i).writeTo(context.out);
+				continue;
+			}
+
+			Type type = typeOf(layout.types[i]);
+
+			if (type == Type.OPT)
+				context.out.writeUnsigned(0);
+			else if (type != Type.NULL && type != Type.RESERVED)
+				throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, "Missing field with label id " + layout.ids[i]);
+		}
+	}
+
+	LabelLayout schemaLayout(IDLType idlType) {
+		LabelLayout layout = this.schema.layout(idlType);
+
+		if (layout == null)
+			throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, "Missing fields of type " + idlType);
+
+		return layout;
+	}
+
+	Context push(int kind, IDLType idlType, BufferSerializer out) {
+		if (++this.depth == this.stack.length) {
+			this.stack = Arrays.copyOf(this.stack, this.stack.length << 1);
+
+			for (int i = this.depth; i < this.stack.length; i++)
+				this.stack[i] = new Context();
+		}
+
+		LabelLayout layout = kind == RECORD || kind == TUPLE || kind == VARIANT ? this.schemaLayout(idlType) : null;
+
+		Context context = this.stack[this.depth];
+
+		context.set(kind, idlType, layout, out);
+
+		return context;
+	}
+
+	Context pop() {
+		return this.stack[this.depth--];
+	}
+
+	static Type typeOf(IDLType idlType) {
+		return idlType == null ? Type.NULL : idlType.getType();
+	}
+
+	static CandidError mismatch(String token, IDLType idlType) {
+		return CandidError.create(CandidError.CandidErrorCode.CUSTOM,
+				String.format("Cannot write JSON %s as Candid %s", token, typeOf(idlType).name()));
+	}
+
+	@Override
+	public void flush() throws IOException {
+		if (this.root != null)
+			this.root.flush();
+		else
+			this.os.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (this.isClosed())
+			return;
+
+		super.close();
+
+		if (this.root != null)
+			this.root.flush();
+
+		if (this._ioContext.isResourceManaged() || this.isEnabled(Feature.AUTO_CLOSE_TARGET))
+			this.os.close();
+		else if (this.isEnabled(Feature.FLUSH_PASSED_TO_STREAM))
+			this.os.flush();
+	}
+
+	@Override
+	protected void _releaseBuffers() {
+	}
+
+	@Override
+	protected void _verifyValueWrite(String typeMsg) throws IOException {
+		if (this._writeContext.writeValue() == JsonWriteContext.STATUS_EXPECT_NAME)
+			this._reportError("Can not " + typeMsg + ", expecting field name");
+	}
+
+	// Open array or object, with the encoded content of its elements or fields
+	static final class Context {
+		int kind;
+		IDLType idlType;
+		LabelLayout layout;
+
+		// target of the finished value
+		BufferSerializer out;
+
+		// array of an option, none if empty
+		boolean optional;
+
+		// elements of a vec or tuple
+		long count;
+
+		// label index of the next field or variant arm, -1 if skipped
+		int field;
+		boolean written;
+
+		final List<BufferSerializer> buffers = new ArrayList<BufferSerializer>();
+		boolean[] assigned = new boolean[0];
+
+		void set(int kind, IDLType idlType, LabelLayout layout, BufferSerializer out) {
+			this.kind = kind;
+			this.idlType = idlType;
+			this.layout = layout;
+			this.out = out;
+			this.optional = false;
+			this.count = 0;
+			this.field = -1;
+			this.written = false;
+
+			int size = kind == VEC ? 1 : (kind == RECORD || kind == TUPLE ? layout.ids.length : 0);
+
+			if (this.assigned.length < size)
+				this.assigned = new boolean[size];
+			else
+				Arrays.fill(this.assigned, 0, size, false);
+
+			for (int i = 0; i < size; i++)
+				this.buffer(i).reset();
+		}
+
+		BufferSerializer elements() {
+			return this.buffer(0);
+		}
+
+		BufferSerializer buffer(int idx) {
+			while (this.buffers.size() <= idx)
+				this.buffers.add(BufferSerializer.create());
+
+			return this.buffers.get(idx);
+		}
+	}
+}
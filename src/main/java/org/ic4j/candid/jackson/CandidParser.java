@@ -0,0 +1,549 @@
+/*
+ * Copyright 2021 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+
+package org.ic4j.candid.jackson;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+
+import org.ic4j.candid.CandidReader;
+import org.ic4j.candid.CandidReader.Event;
+import org.ic4j.candid.parser.IDLType;
+import org.ic4j.candid.types.Opcode;
+import org.ic4j.candid.types.Type;
+
+import com.fasterxml.jackson.core.Base64Variant;
+import com.fasterxml.jackson.core.Base64Variants;
+import com.fasterxml.jackson.core.FormatSchema;
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.ObjectCodec;
+import com.fasterxml.jackson.core.Version;
+import com.fasterxml.jackson.core.base.ParserMinimalBase;
+import com.fasterxml.jackson.core.io.IOContext;
+import com.fasterxml.jackson.core.json.JsonReadContext;
+
+/*
+ * Reads a Candid message as Jackson tokens with CandidReader events, each argument is a root
+ * level value. Options are the value or null, vec of nat8 or int8 is an embedded byte array,
+ * principals are text and func values are embedded Func objects. Records and variants with
+ * named labels in the CandidSchema type are objects, others are arrays. The schema applies to
+ * the first argument.
+ */
+public final class CandidParser extends ParserMinimalBase {
+	final IOContext ioContext;
+	final CandidReader reader;
+
+	// source closed with the parser, null for byte arrays
+	final InputStream source;
+
+	ObjectCodec codec;
+	CandidSchema schema;
+
+	boolean closed;
+	boolean started;
+
+	JsonReadContext parsingContext = JsonReadContext.createRootContext(null);
+
+	Frame[] stack = new Frame[16];
+	int depth;
+
+	// expected type of the next value
+	IDLType expected;
+
+	// value of the current token
+	Object value;
+	NumberType numberType;
+
+	// embedded byte array of the current token is a vec int8
+	boolean signedBinary;
+
+	// variant arm read ahead of its START_OBJECT, returned as the next FIELD_NAME
+	boolean fieldPending;
+
+	CandidParser(IOContext ctxt, int features, ObjectCodec codec, CandidReader reader, InputStream source) {
+		super(features, ctxt.streamReadConstraints());
+
+		this.ioContext = ctxt;
+		this.codec = codec;
+		this.reader = reader;
+		this.source = source;
+
+		for (int i = 0; i < this.stack.length; i++)
+			this.stack[i] = new Frame();
+	}
+
+	@Override
+	public Version version() {
+		return Version.unknownVersion();
+	}
+
+	@Override
+	public ObjectCodec getCodec() {
+		return this.codec;
+	}
+
+	@Override
+	public void setCodec(ObjectCodec codec) {
+		this.codec = codec;
+	}
+
+	@Override
+	public boolean canUseSchema(FormatSchema schema) {
+		return schema instanceof CandidSchema;
+	}
+
+	@Override
+	public void setSchema(FormatSchema schema) {
+		if (!(schema instanceof CandidSchema))
+			super.setSchema(schema);
+
+		this.schema = (CandidSchema) schema;
+
+		if (!this.started)
+			this.expected = this.schema.idlType;
+	}
+
+	@Override
+	public FormatSchema getSchema() {
+		return this.schema;
+	}
+
+	@Override
+	public boolean canReadTypeId() {
+		return false;
+	}
+
+	@Override
+	public JsonToken nextToken() throws IOException {
+		this.started = true;
+
+		if (this.closed)
+			return this._currToken = null;
+
+		this.value = null;
+		this.numberType = null;
+		this.signedBinary = false;
+
+		while (true) {
+			Event event = this.fieldPending ? Event.FIELD : this.reader.next();
+
+			this.fieldPending = false;
+
+			switch (event) {
+			case END_MESSAGE:
+				this._handleEOF();
+				return this._currToken = null;
+			case START_OPT:
+				this.expected = innerType(this.expected, Type.OPT);
+				continue;
+			case END_OPT:
+				continue;
+			case FIELD: {
+				Frame frame = this.stack[this.depth];
+				LabelLayout layout = frame.layout;
+
+				long id = this.reader.getFieldId();
+				int idx = layout == null ? -1 : layout.indexOf(id);
+
+				this.expected = idx < 0 ? null : layout.types[idx];
+
+				// fields of arrays are positional
+				if (!frame.named)
+					continue;
+
+				this.parsingContext.setCurrentName(idx < 0 ? Long.toString(id) : layout.labels[idx].getValue().toString());
+				return this._currToken = JsonToken.FIELD_NAME;
+			}
+			case START_VEC: {
+				Opcode elementOpcode = this.reader.getElementOpcode();
+				byte[] bytes = this.reader.readBytes();
+
+				if (bytes != null) {
+					this.signedBinary = elementOpcode == Opcode.INT8;
+					return this.scalar(JsonToken.VALUE_EMBEDDED_OBJECT, bytes, null);
+				}
+
+				this.push(false, null, innerType(this.expected, Type.VEC));
+				return this._currToken = JsonToken.START_ARRAY;
+			}
+			case START_RECORD:
+			case START_VARIANT: {
+				Type type = event == Event.START_RECORD ? Type.RECORD : Type.VARIANT;
+				LabelLayout layout = this.schema == null || typeOf(this.expected) != type ? null : this.schema.layout(this.expected);
+				boolean named = layout != null && layout.named;
+
+				// arms without type in the expected variant are enum constants, read as their name
+				if (named && type == Type.VARIANT) {
+					this.reader.next();
+
+					int idx = layout.indexOf(this.reader.getFieldId());
+
+					if (idx >= 0 && layout.types[idx] == null) {
+						this.reader.skipValue();
+						this.reader.next();
+
+						return this.scalar(JsonToken.VALUE_STRING, layout.labels[idx].getValue().toString(), null);
+					}
+
+					this.fieldPending = true;
+				}
+
+				this.push(named, layout, null);
+				return this._currToken = named ? JsonToken.START_OBJECT : JsonToken.START_ARRAY;
+			}
+			case END_VEC:
+			case END_RECORD:
+			case END_VARIANT:
+				return this._currToken = this.pop();
+			case NULL:
+			case RESERVED:
+			case NONE:
+				return this.scalar(JsonToken.VALUE_NULL, null, null);
+			case BOOL:
+				return this.scalar(this.reader.getBoolean() ? JsonToken.VALUE_TRUE : JsonToken.VALUE_FALSE, null, null);
+			case NAT:
+			case INT:
+				return this.scalar(JsonToken.VALUE_NUMBER_INT, this.reader.getBigInteger(), NumberType.BIG_INTEGER);
+			case NAT8:
+			case NAT16:
+			case INT8:
+			case INT16:
+			case INT32:
+				return this.scalar(JsonToken.VALUE_NUMBER_INT, this.reader.getInt(), NumberType.INT);
+			case NAT32:
+			case INT64:
+				return this.scalar(JsonToken.VALUE_NUMBER_INT, this.reader.getLong(), NumberType.LONG);
+			case NAT64:
+				// unsigned values above Long.MAX_VALUE
+				if (this.reader.getLong() < 0)
+					return this.scalar(JsonToken.VALUE_NUMBER_INT, this.reader.getBigInteger(), NumberType.BIG_INTEGER);
+
+				return this.scalar(JsonToken.VALUE_NUMBER_INT, this.reader.getLong(), NumberType.LONG);
+			case FLOAT32:
+				return this.scalar(JsonToken.VALUE_NUMBER_FLOAT, this.reader.getFloat(), NumberType.FLOAT);
+			case FLOAT64:
+				return this.scalar(JsonToken.VALUE_NUMBER_FLOAT, this.reader.getDouble(), NumberType.DOUBLE);
+			case TEXT:
+				return this.scalar(JsonToken.VALUE_STRING, this.reader.getText(), null);
+			case PRINCIPAL:
+				return this.scalar(JsonToken.VALUE_STRING, this.reader.getPrincipal().toString(), null);
+			case SERVICE:
+				return this.scalar(JsonToken.VALUE_STRING, this.reader.getService().getPrincipal().toString(), null);
+			case FUNC:
+				return this.scalar(JsonToken.VALUE_EMBEDDED_OBJECT, this.reader.getFunc(), null);
+			default:
+				this._reportError("Unexpected Candid event " + event);
+			}
+		}
+	}
+
+	JsonToken scalar(JsonToken token, Object value, NumberType numberType) {
+		this.value = value;
+		this.numberType = numberType;
+
+		this.valueDone();
+
+		return this._currToken = token;
+	}
+
+	// expected type of the next sibling, fields set theirs with the label
+	void valueDone() {
+		this.expected = this.depth == 0 ? null : this.stack[this.depth].elementType;
+	}
+
+	void push(boolean named, LabelLayout layout, IDLType elementType) {
+		if (++this.depth == this.stack.length) {
+			this.stack = Arrays.copyOf(this.stack, this.stack.length << 1);
+
+			for (int i = this.depth; i < this.stack.length; i++)
+				this.stack[i] = new Frame();
+		}
+
+		Frame frame = this.stack[this.depth];
+
+		frame.named = named;
+		frame.layout = layout;
+		frame.elementType = elementType;
+
+		this.expected = elementType;
+
+		this.parsingContext = named ? this.parsingContext.createChildObjectContext(-1, -1)
+				: this.parsingContext.createChildArrayContext(-1, -1);
+	}
+
+	JsonToken pop() {
+		boolean named = this.stack[this.depth--].named;
+
+		this.parsingContext = this.parsingContext.clearAndGetParent();
+
+		this.valueDone();
+
+		return named ? JsonToken.END_OBJECT : JsonToken.END_ARRAY;
+	}
+
+	// nested values are skipped on the wire without decoding them
+	@Override
+	public CandidParser skipChildren() throws IOException {
+		if (this._currToken != JsonToken.START_OBJECT && this._currToken != JsonToken.START_ARRAY)
+			return this;
+
+		if (this.fieldPending) {
+			this.fieldPending = false;
+
+			this.reader.skipValue();
+			this.reader.next();
+		} else
+			this.reader.skipChildren();
+
+		this._currToken = this.pop();
+
+		return this;
+	}
+
+	@Override
+	protected void _handleEOF() {
+	}
+
+	@Override
+	public String currentName() throws IOException {
+		if (this._currToken == JsonToken.START_OBJECT || this._currToken == JsonToken.START_ARRAY) {
+			JsonReadContext parent = this.parsingContext.getParent();
+
+			if (parent != null)
+				return parent.getCurrentName();
+		}
+
+		return this.parsingContext.getCurrentName();
+	}
+
+	@Deprecated
+	@Override
+	public String getCurrentName() throws IOException {
+		return this.currentName();
+	}
+
+	@Override
+	public void overrideCurrentName(String name) {
+		JsonReadContext context = this.parsingContext;
+
+		if (this._currToken == JsonToken.START_OBJECT || this._currToken == JsonToken.START_ARRAY)
+			context = context.getParent();
+
+		try {
+			context.setCurrentName(name);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Override
+	public JsonStreamContext getParsingContext() {
+		return this.parsingContext;
+	}
+
+	@Override
+	public JsonLocation currentLocation() {
+		return JsonLocation.NA;
+	}
+
+	@Override
+	public JsonLocation currentTokenLocation() {
+		return JsonLocation.NA;
+	}
+
+	@Deprecated
+	@Override
+	public JsonLocation getCurrentLocation() {
+		return this.currentLocation();
+	}
+
+	@Deprecated
+	@Override
+	public JsonLocation getTokenLocation() {
+		return this.currentTokenLocation();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (this.closed)
+			return;
+
+		this.closed = true;
+
+		if (this.source != null && (this.ioContext.isResourceManaged() || this.isEnabled(Feature.AUTO_CLOSE_SOURCE)))
+			this.source.close();
+	}
+
+	@Override
+	public boolean isClosed() {
+		return this.closed;
+	}
+
+	@Override
+	public String getText() throws IOException {
+		if (this._currToken == null)
+			return null;
+
+		switch (this._currToken) {
+		case VALUE_STRING:
+			return (String) this.value;
+		case FIELD_NAME:
+			return this.currentName();
+		case VALUE_NUMBER_INT:
+		case VALUE_NUMBER_FLOAT:
+			return this.value.toString();
+		case VALUE_EMBEDDED_OBJECT:
+			if (this.value instanceof byte[])
+				return Base64Variants.getDefaultVariant().encode((byte[]) this.value);
+
+			return String.valueOf(this.value);
+		default:
+			return this._currToken.asString();
+		}
+	}
+
+	@Override
+	public char[] getTextCharacters() throws IOException {
+		String text = this.getText();
+
+		return text == null ? null : text.toCharArray();
+	}
+
+	@Override
+	public boolean hasTextCharacters() {
+		return false;
+	}
+
+	@Override
+	public int getTextLength() throws IOException {
+		String text = this.getText();
+
+		return text == null ? 0 : text.length();
+	}
+
+	@Override
+	public int getTextOffset() throws IOException {
+		return 0;
+	}
+
+	@Override
+	public byte[] getBinaryValue(Base64Variant b64variant) throws IOException {
+		if (this._currToken == JsonToken.VALUE_EMBEDDED_OBJECT && this.value instanceof byte[])
+			return (byte[]) this.value;
+
+		if (this._currToken == JsonToken.VALUE_STRING)
+			return b64variant.decode((String) this.value);
+
+		this._reportError("Current token (" + this._currToken + ") not binary");
+		return null;
+	}
+
+	// True if the current embedded byte array holds int8 elements, bytes are then signed
+	public boolean isSignedBinary() {
+		return this.signedBinary;
+	}
+
+	@Override
+	public Object getEmbeddedObject() throws IOException {
+		return this._currToken == JsonToken.VALUE_EMBEDDED_OBJECT ? this.value : null;
+	}
+
+	@Override
+	public Number getNumberValue() throws IOException {
+		if (this._currToken == null || !this._currToken.isNumeric())
+			this._reportError("Current token (" + this._currToken + ") not numeric, can not use numeric value accessors");
+
+		return (Number) this.value;
+	}
+
+	@Override
+	public NumberType getNumberType() throws IOException {
+		return this.numberType;
+	}
+
+	@Override
+	public int getIntValue() throws IOException {
+		return this.getNumberValue().intValue();
+	}
+
+	@Override
+	public long getLongValue() throws IOException {
+		return this.getNumberValue().longValue();
+	}
+
+	@Override
+	public BigInteger getBigIntegerValue() throws IOException {
+		Number number = this.getNumberValue();
+
+		if (number instanceof BigInteger)
+			return (BigInteger) number;
+
+		if (this._currToken == JsonToken.VALUE_NUMBER_FLOAT)
+			return this.getDecimalValue().toBigInteger();
+
+		return BigInteger.valueOf(number.longValue());
+	}
+
+	@Override
+	public float getFloatValue() throws IOException {
+		return this.getNumberValue().floatValue();
+	}
+
+	@Override
+	public double getDoubleValue() throws IOException {
+		return this.getNumberValue().doubleValue();
+	}
+
+	@Override
+	public BigDecimal getDecimalValue() throws IOException {
+		Number number = this.getNumberValue();
+
+		if (number instanceof BigInteger)
+			return new BigDecimal((BigInteger) number);
+
+		// shortest decimal of the float or double
+		if (this._currToken == JsonToken.VALUE_NUMBER_FLOAT)
+			return new BigDecimal(number.toString());
+
+		return BigDecimal.valueOf(number.longValue());
+	}
+
+	static Type typeOf(IDLType idlType) {
+		return idlType == null ? Type.NULL : idlType.getType();
+	}
+
+	static IDLType innerType(IDLType idlType, Type type) {
+		if (idlType == null || idlType.getType() != type)
+			return null;
+
+		return idlType.getInnerType();
+	}
+
+	// Open Candid container, written as JSON object or array
+	static final class Frame {
+		boolean named;
+		LabelLayout layout;
+
+		// expected type of vec elements
+		IDLType elementType;
+	}
+}
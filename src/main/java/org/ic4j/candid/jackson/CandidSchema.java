@@ -0,0 +1,77 @@
+/*
+ * Copyright 2021 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+
+package org.ic4j.candid.jackson;
+
+import java.util.Map;
+
+import org.ic4j.candid.CandidError;
+import org.ic4j.candid.TypeSignature;
+import org.ic4j.candid.parser.IDLType;
+
+import com.fasterxml.jackson.core.FormatSchema;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/*
+ * Expected Candid type of the values written by CandidGenerator and read by CandidParser.
+ * The type signature and label layouts are computed once, instances can be shared.
+ */
+public final class CandidSchema implements FormatSchema {
+	public static final String TYPE = "candid";
+
+	final IDLType idlType;
+	final byte[] prefix;
+
+	// records and variants of the type, labels in wire order
+	final Map<IDLType, LabelLayout> layouts;
+
+	CandidSchema(IDLType idlType) {
+		this.idlType = idlType;
+		this.prefix = TypeSignature.get(idlType).getPrefix();
+		this.layouts = LabelLayout.collect(idlType);
+	}
+
+	public static CandidSchema create(IDLType idlType) {
+		if (idlType == null)
+			throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, "Missing expected type");
+
+		return new CandidSchema(idlType);
+	}
+
+	// IDL type of the class fields, named by @JsonProperty
+	public static CandidSchema create(Class<?> clazz) {
+		return create(JacksonSerializer.getIDLType(clazz));
+	}
+
+	// IDL type of the class properties, named by the mapper naming strategy and mixins
+	public static CandidSchema create(ObjectMapper mapper, Class<?> clazz) {
+		return create(JacksonSerializer.getIDLType(mapper, clazz));
+	}
+
+	public IDLType getIDLType() {
+		return this.idlType;
+	}
+
+	@Override
+	public String getSchemaType() {
+		return TYPE;
+	}
+
+	LabelLayout layout(IDLType idlType) {
+		return idlType == null ? null : this.layouts.get(idlType);
+	}
+}
@@ -49,7 +49,7 @@ import com.fasterxml.jackson.databind.node.TextNode;
 
 public final class JacksonDeserializer implements ObjectDeserializer {
 	Optional<IDLType> idlType = Optional.empty();
-	ObjectMapper mapper = new ObjectMapper();	
+	ObjectMapper mapper = JacksonSerializer.DEFAULT_MAPPER;	
 	
 	public static JacksonDeserializer create(IDLType idlType)
 	{
@@ -64,11 +64,28 @@ public final class JacksonDeserializer implements ObjectDeserializer {
 		return deserializer; 
 	}
 	
+	public static JacksonDeserializer create(IDLType idlType, ObjectMapper mapper)
+	{
+		JacksonDeserializer deserializer = create(idlType);
+		deserializer.setMapper(mapper);
+		return deserializer;
+	}
+	
+	public static JacksonDeserializer create(ObjectMapper mapper) {
+		return create(null, mapper);
+	}
+	
 	public void setIDLType(IDLType idlType)
 	{
 		this.idlType = Optional.ofNullable(idlType);
 	}
 	
+	// mapper binding JsonNode to POJOs, the shared default mapper if null
+	public void setMapper(ObjectMapper mapper)
+	{
+		this.mapper = mapper == null ? JacksonSerializer.DEFAULT_MAPPER : mapper;
+	}
+	
 	
 	public Class<?> getDefaultResponseClass() {
 		return JsonNode.class;
@@ -89,7 +106,7 @@ public final class JacksonDeserializer implements ObjectDeserializer {
 			{
 				try {
 					if(!this.idlType.isPresent())
-						this.idlType = Optional.ofNullable(JacksonSerializer.getIDLType(clazz));
+						this.idlType = Optional.ofNullable(JacksonSerializer.getIDLType(this.mapper, clazz));
 					
 					JsonNode jsonNode = this.getValue(value.getIDLType(), this.idlType, value.getValue());
 					return (T) mapper.treeToValue(jsonNode, clazz);
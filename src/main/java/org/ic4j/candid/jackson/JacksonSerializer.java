@@ -18,13 +18,18 @@ package org.ic4j.candid.jackson;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.ParameterizedType;
+import java.util.Collections;
 import java.util.Date;
 import java.util.GregorianCalendar;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.ic4j.candid.CandidError;
 import org.ic4j.candid.ObjectSerializer;
@@ -36,15 +41,31 @@ import org.ic4j.types.Principal;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.BeanDescription;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 public final class JacksonSerializer implements ObjectSerializer {
+	// shared by adapters without own mapper, ObjectMapper is thread safe once configured
+	static final ObjectMapper DEFAULT_MAPPER = new ObjectMapper();
+	
+	// IDL types of Java classes, field reflection runs once per class
+	static final ClassValue<IDLType> IDL_TYPES = new ClassValue<IDLType>() {
+		@Override
+		protected IDLType computeValue(Class<?> clazz) {
+			return computeIDLType(DEFAULT_MAPPER, clazz);
+		}
+	};
+	
+	// IDL types derived by custom mappers, their naming strategy and mixins change the labels
+	static final Map<ObjectMapper, Map<Class<?>, IDLType>> MAPPER_IDL_TYPES = Collections.synchronizedMap(new WeakHashMap<ObjectMapper, Map<Class<?>, IDLType>>());
+	
 	Optional<IDLType> idlType = Optional.empty();
 	
-	ObjectMapper mapper = new ObjectMapper();
+	ObjectMapper mapper = DEFAULT_MAPPER;
 
 	public static JacksonSerializer create(IDLType idlType) {
 		JacksonSerializer deserializer = new JacksonSerializer();
@@ -58,10 +79,26 @@ public final class JacksonSerializer implements ObjectSerializer {
 		return deserializer;
 	}
 	
+	public static JacksonSerializer create(IDLType idlType, ObjectMapper mapper) {
+		JacksonSerializer serializer = create(idlType);
+		serializer.setMapper(mapper);
+		return serializer;
+	}
+	
+	public static JacksonSerializer create(ObjectMapper mapper) {
+		return create(null, mapper);
+	}
+	
 	public void setIDLType(IDLType idlType)
 	{
 		this.idlType = Optional.ofNullable(idlType);
 	}	
+	
+	// mapper converting POJOs to JsonNode, the shared default mapper if null
+	public void setMapper(ObjectMapper mapper)
+	{
+		this.mapper = mapper == null ? DEFAULT_MAPPER : mapper;
+	}
 
 	@Override
 	public IDLValue serialize(Object value) {
@@ -329,13 +366,47 @@ public final class JacksonSerializer implements ObjectSerializer {
 
 	}
 	
+	// cached per class, the returned type is shared and must not be modified
 	public static IDLType getIDLType(Class valueClass)
 	{
 		// handle null values
 		if(valueClass == null)
 			return IDLType.createType(Type.NULL);
 		
-		if(IDLType.isDefaultType(valueClass))
+		return IDL_TYPES.get(valueClass);
+	}
+	
+	// labels named by the mapper, cached per mapper and class, the returned type is shared and must not be modified
+	public static IDLType getIDLType(ObjectMapper mapper, Class valueClass)
+	{
+		if(mapper == null || mapper == DEFAULT_MAPPER)
+			return getIDLType(valueClass);
+		
+		// handle null values
+		if(valueClass == null)
+			return IDLType.createType(Type.NULL);
+		
+		Map<Class<?>, IDLType> idlTypes = MAPPER_IDL_TYPES.computeIfAbsent(mapper, key -> new ConcurrentHashMap<Class<?>, IDLType>());
+		
+		// nested classes are computed recursively, cannot use computeIfAbsent
+		IDLType idlType = idlTypes.get(valueClass);
+		
+		if(idlType == null)
+		{
+			idlType = computeIDLType(mapper, valueClass);
+			
+			IDLType cached = idlTypes.putIfAbsent(valueClass, idlType);
+			
+			if(cached != null)
+				idlType = cached;
+		}
+		
+		return idlType;
+	}
+	
+	static IDLType computeIDLType(ObjectMapper mapper, Class valueClass)
+	{
+		if(IDLType.isDefaultType(valueClass) || valueClass.isPrimitive())
 			return IDLType.createType(valueClass);		
 		
 		if(Optional.class.isAssignableFrom(valueClass))
@@ -351,6 +422,16 @@ public final class JacksonSerializer implements ObjectSerializer {
 			return IDLType.createType(Type.INT);		
 
 		Map<Label,IDLType> typeMap = new TreeMap<Label,IDLType>();
+		
+		// property names after mixins and naming strategy, keyed by field name
+		BeanDescription beanDescription = mapper.getSerializationConfig().introspect(mapper.constructType(valueClass));
+		
+		Map<String, String> propertyNames = new HashMap<String, String>();
+		
+		for(BeanPropertyDefinition property : beanDescription.findProperties())
+			propertyNames.put(property.getInternalName(), property.getName());
+		
+		Set<String> ignoredNames = beanDescription.getIgnoredPropertyNames();
 
 		Field[] fields = valueClass.getDeclaredFields();		
 		
@@ -372,11 +453,16 @@ public final class JacksonSerializer implements ObjectSerializer {
 			if(name.startsWith("ENUM$VALUES"))
 				continue;			
 			
+			if(ignoredNames.contains(name))
+				continue;
+			
 			Class typeClass = field.getType();	
 			
-			IDLType fieldType = getIDLType(typeClass);
+			IDLType fieldType = getIDLType(mapper, typeClass);
 			
-			if(field.isAnnotationPresent(JsonProperty.class))
+			if(propertyNames.containsKey(name))
+				name = propertyNames.get(name);
+			else if(field.isAnnotationPresent(JsonProperty.class))
 				name = field.getAnnotation(JsonProperty.class).value();
 			
 			Label label = Label.createNamedLabel((String)name);			
@@ -384,7 +470,14 @@ public final class JacksonSerializer implements ObjectSerializer {
 			boolean isArray = typeClass.isArray();
 			boolean isOptional = Optional.class.isAssignableFrom(typeClass);
 			
-			if(IDLType.isDefaultType(typeClass) || GregorianCalendar.class.isAssignableFrom(typeClass) || Date.class.isAssignableFrom(typeClass))
+			// array fields are vec of the component type
+			if(isArray)
+			{
+				typeClass = typeClass.getComponentType();
+				fieldType = getIDLType(mapper, typeClass);
+			}
+			
+			if(!isArray && (IDLType.isDefaultType(typeClass) || GregorianCalendar.class.isAssignableFrom(typeClass) || Date.class.isAssignableFrom(typeClass)))
 			{
 				// if we do not specify type in annotation and type is one of default
 				typeMap.put(label, fieldType);	
@@ -395,7 +488,7 @@ public final class JacksonSerializer implements ObjectSerializer {
 				isArray = true;
 				typeClass = (Class)((ParameterizedType)field.getGenericType()).getActualTypeArguments()[0];
 				
-				fieldType = getIDLType(typeClass);
+				fieldType = getIDLType(mapper, typeClass);
 			}			
 			
 			// do nested type introspection if type is RECORD		
@@ -403,14 +496,16 @@ public final class JacksonSerializer implements ObjectSerializer {
 			{
 				String className = typeClass.getSimpleName();
 				
-				// handle RECORD arrays
-				if(isArray)
+				// nested types are cached and shared, rename a copy
+				if(!className.equals(fieldType.getName()))
 				{
+					fieldType = fieldType.copy();
 					fieldType.setName(className);
-					fieldType = IDLType.createType(Type.VEC, fieldType);
 				}
-				else
-					fieldType.setName(className);
+				
+				// handle RECORD arrays
+				if(isArray)
+					fieldType = IDLType.createType(Type.VEC, fieldType);
 
 			}else if(isArray)
 			{
@@ -0,0 +1,241 @@
+/*
+ * Copyright 2021 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+
+package org.ic4j.candid.jackson;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.Map;
+
+import org.ic4j.candid.CandidError;
+import org.ic4j.candid.CandidReader;
+import org.ic4j.candid.CandidReader.Event;
+import org.ic4j.candid.parser.IDLType;
+import org.ic4j.candid.types.Type;
+import org.ic4j.types.Func;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/*
+ * Transcodes a Candid message to JSON tokens with CandidReader events, without
+ * building IDLValue or JsonNode trees. Values are written as JacksonDeserializer
+ * writes them: options as the value or null, vec of nat8 or int8 as binary,
+ * records and variants with named labels as objects, others as arrays. The expected
+ * type only provides field names, values follow the wire types. Instances are
+ * immutable and can be shared.
+ */
+public final class JacksonStreamDeserializer {
+	final IDLType idlType;
+
+	// records and variants of the expected type, labels in wire order
+	final Map<IDLType, LabelLayout> layouts;
+
+	JacksonStreamDeserializer(IDLType idlType) {
+		this.idlType = idlType;
+		this.layouts = idlType == null ? Collections.<IDLType, LabelLayout>emptyMap() : LabelLayout.collect(idlType);
+	}
+
+	public static JacksonStreamDeserializer create(IDLType idlType) {
+		return new JacksonStreamDeserializer(idlType);
+	}
+
+	// without expected type labels are not known, records and variants are written as arrays
+	public static JacksonStreamDeserializer create() {
+		return new JacksonStreamDeserializer(null);
+	}
+
+	public IDLType getIDLType() {
+		return this.idlType;
+	}
+
+	// JSON text of the first argument of the message
+	public byte[] deserialize(byte[] input) throws IOException {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+
+		this.deserialize(CandidReader.create(input), os);
+
+		return os.toByteArray();
+	}
+
+	public void deserialize(InputStream input, OutputStream os) throws IOException {
+		this.deserialize(CandidReader.create(input), os);
+	}
+
+	void deserialize(CandidReader reader, OutputStream os) throws IOException {
+		try (JsonGenerator generator = JacksonStreamSerializer.JSON_FACTORY.createGenerator(os, JsonEncoding.UTF8)) {
+			this.deserialize(reader, generator);
+		}
+	}
+
+	// Write the first argument of the message, other arguments are skipped, no argument is written as null
+	public void deserialize(CandidReader reader, JsonGenerator generator) throws IOException {
+		if (!this.deserializeNext(reader, generator))
+			generator.writeNull();
+
+		while (reader.next() != Event.END_MESSAGE)
+			reader.skipChildren();
+	}
+
+	// Write the next argument of the message, false at the end of the message
+	public boolean deserializeNext(CandidReader reader, JsonGenerator generator) throws IOException {
+		if (reader.next() == Event.END_MESSAGE)
+			return false;
+
+		this.write(reader, generator, this.idlType);
+
+		return true;
+	}
+
+	// write the value started by the current event
+	void write(CandidReader reader, JsonGenerator generator, IDLType idlType) throws IOException {
+		switch (reader.getEvent()) {
+		case NULL:
+		case RESERVED:
+		case NONE:
+			generator.writeNull();
+			break;
+		case BOOL:
+			generator.writeBoolean(reader.getBoolean());
+			break;
+		case NAT:
+		case INT:
+			generator.writeNumber(reader.getBigInteger());
+			break;
+		case NAT8:
+		case NAT16:
+		case INT8:
+		case INT16:
+		case INT32:
+			generator.writeNumber(reader.getInt());
+			break;
+		case NAT32:
+		case INT64:
+			generator.writeNumber(reader.getLong());
+			break;
+		case NAT64:
+			// unsigned values above Long.MAX_VALUE
+			if (reader.getLong() < 0)
+				generator.writeNumber(reader.getBigInteger());
+			else
+				generator.writeNumber(reader.getLong());
+			break;
+		case FLOAT32:
+			generator.writeNumber(reader.getFloat());
+			break;
+		case FLOAT64:
+			generator.writeNumber(reader.getDouble());
+			break;
+		case TEXT:
+			generator.writeString(reader.getText());
+			break;
+		case PRINCIPAL:
+			generator.writeString(reader.getPrincipal().toString());
+			break;
+		case SERVICE:
+			generator.writeString(reader.getService().getPrincipal().toString());
+			break;
+		case FUNC: {
+			Func func = reader.getFunc();
+
+			generator.writeStartArray();
+			generator.writeString(func.getPrincipal().toString());
+			generator.writeString(func.getMethod());
+			generator.writeEndArray();
+			break;
+		}
+		case START_OPT:
+			reader.next();
+			this.write(reader, generator, innerType(idlType, Type.OPT));
+
+			// END_OPT
+			reader.next();
+			break;
+		case START_VEC:
+			this.writeVec(reader, generator, innerType(idlType, Type.VEC));
+			break;
+		case START_RECORD:
+			this.writeFields(reader, generator, this.layout(idlType, Type.RECORD), Event.END_RECORD);
+			break;
+		case START_VARIANT:
+			this.writeFields(reader, generator, this.layout(idlType, Type.VARIANT), Event.END_VARIANT);
+			break;
+		default:
+			throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, "Unexpected Candid event " + reader.getEvent());
+		}
+	}
+
+	void writeVec(CandidReader reader, JsonGenerator generator, IDLType innerType) throws IOException {
+		byte[] bytes = reader.readBytes();
+
+		if (bytes != null) {
+			generator.writeBinary(bytes);
+			return;
+		}
+
+		generator.writeStartArray();
+
+		while (reader.next() != Event.END_VEC)
+			this.write(reader, generator, innerType);
+
+		generator.writeEndArray();
+	}
+
+	// fields of a record or the arm of a variant, labels without name in the expected type are keyed by id
+	void writeFields(CandidReader reader, JsonGenerator generator, LabelLayout layout, Event end) throws IOException {
+		boolean named = layout != null && layout.named;
+
+		if (named)
+			generator.writeStartObject();
+		else
+			generator.writeStartArray();
+
+		while (reader.next() != end) {
+			long id = reader.getFieldId();
+			int idx = layout == null ? -1 : layout.indexOf(id);
+
+			if (named)
+				generator.writeFieldName(idx < 0 ? Long.toString(id) : layout.labels[idx].getValue().toString());
+
+			reader.next();
+			this.write(reader, generator, idx < 0 ? null : layout.types[idx]);
+		}
+
+		if (named)
+			generator.writeEndObject();
+		else
+			generator.writeEndArray();
+	}
+
+	LabelLayout layout(IDLType idlType, Type type) {
+		if (idlType == null || idlType.getType() != type)
+			return null;
+
+		return this.layouts.get(idlType);
+	}
+
+	static IDLType innerType(IDLType idlType, Type type) {
+		if (idlType == null || idlType.getType() != type)
+			return null;
+
+		return idlType.getInnerType();
+	}
+}
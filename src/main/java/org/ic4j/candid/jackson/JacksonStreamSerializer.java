@@ -0,0 +1,80 @@
+/*
+ * Copyright 2021 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+
+package org.ic4j.candid.jackson;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.ic4j.candid.CandidError;
+import org.ic4j.candid.parser.IDLType;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+
+/*
+ * Transcodes JSON tokens to a Candid message of the expected type, without
+ * building JsonNode trees or IDLValues. The tokens are copied to a CandidGenerator,
+ * which buffers only encoded Candid of the open arrays and objects.
+ * Instances are immutable and can be shared.
+ */
+public final class JacksonStreamSerializer {
+	static final JsonFactory JSON_FACTORY = new JsonFactory();
+	static final CandidFactory CANDID_FACTORY = new CandidFactory();
+
+	final CandidSchema schema;
+
+	JacksonStreamSerializer(CandidSchema schema) {
+		this.schema = schema;
+	}
+
+	public static JacksonStreamSerializer create(IDLType idlType) {
+		return new JacksonStreamSerializer(CandidSchema.create(idlType));
+	}
+
+	public IDLType getIDLType() {
+		return this.schema.idlType;
+	}
+
+	// Candid message with the JSON value read from the parser
+	public byte[] serialize(JsonParser parser) throws IOException {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+
+		this.serialize(parser, os);
+
+		return os.toByteArray();
+	}
+
+	public void serialize(InputStream json, OutputStream os) throws IOException {
+		try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+			this.serialize(parser, os);
+		}
+	}
+
+	public void serialize(JsonParser parser, OutputStream os) throws IOException {
+		if (parser.currentToken() == null && parser.nextToken() == null)
+			throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, "Missing JSON value");
+
+		CandidGenerator generator = CANDID_FACTORY.createGenerator(os);
+
+		generator.setSchema(this.schema);
+		generator.copyCurrentStructure(parser);
+		generator.flush();
+	}
+}
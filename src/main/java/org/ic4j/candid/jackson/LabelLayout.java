@@ -0,0 +1,89 @@
+/*
+ * Copyright 2021 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+
+package org.ic4j.candid.jackson;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.ic4j.candid.parser.IDLType;
+import org.ic4j.candid.types.Label;
+import org.ic4j.candid.types.Type;
+
+// Labels of a record or variant type sorted by id, the order of the type table
+final class LabelLayout {
+	final long[] ids;
+	final Label[] labels;
+	final IDLType[] types;
+
+	// at least one label has a name, values are written as JSON objects
+	final boolean named;
+
+	LabelLayout(IDLType idlType) {
+		Map<Label, IDLType> typeMap = idlType.getTypeMap();
+
+		this.labels = typeMap.keySet().toArray(new Label[typeMap.size()]);
+
+		Arrays.sort(this.labels);
+
+		this.ids = new long[this.labels.length];
+		this.types = new IDLType[this.labels.length];
+
+		boolean named = false;
+
+		for (int i = 0; i < this.labels.length; i++) {
+			this.ids[i] = this.labels[i].getIdValue();
+			this.types[i] = typeMap.get(this.labels[i]);
+
+			named |= this.labels[i].getType() == Label.LabelType.NAMED;
+		}
+
+		this.named = named;
+	}
+
+	int indexOf(long id) {
+		return Arrays.binarySearch(this.ids, id);
+	}
+
+	// layouts of all records and variants reachable from the type, keyed by type identity
+	static Map<IDLType, LabelLayout> collect(IDLType idlType) {
+		Map<IDLType, LabelLayout> layouts = new IdentityHashMap<IDLType, LabelLayout>();
+
+		collect(idlType, layouts);
+
+		return layouts;
+	}
+
+	static void collect(IDLType idlType, Map<IDLType, LabelLayout> layouts) {
+		if (idlType == null || layouts.containsKey(idlType))
+			return;
+
+		if (idlType.getType() == Type.RECORD || idlType.getType() == Type.VARIANT) {
+			if (idlType.getTypeMap() == null)
+				return;
+
+			LabelLayout layout = new LabelLayout(idlType);
+
+			layouts.put(idlType, layout);
+
+			for (IDLType fieldType : layout.types)
+				collect(fieldType, layouts);
+		} else if (idlType.getType() == Type.OPT || idlType.getType() == Type.VEC)
+			collect(idlType.getInnerType(), layouts);
+	}
+}
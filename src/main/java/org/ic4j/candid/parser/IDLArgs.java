@@ -16,6 +16,7 @@
 
 package org.ic4j.candid.parser;
 
+import java.io.InputStream;
 import java.io.Reader;
 import java.io.StringReader;
 import java.util.ArrayList;
@@ -23,6 +24,8 @@ import java.util.List;
 
 import org.ic4j.candid.IDLBuilder;
 import org.ic4j.candid.IDLDeserialize;
+import org.ic4j.candid.TypeSignature;
+import org.ic4j.candid.TypeTableCache;
 
 public final class IDLArgs {
 	List<IDLValue> args;
@@ -47,6 +50,16 @@ public final class IDLArgs {
 
 	}
 	
+	// encode with a precompiled type table
+	public byte[] toBytes(TypeSignature signature) {
+		IDLBuilder idl = new IDLBuilder(signature);
+
+		for (IDLValue arg : args)
+			idl.valueArg(arg);
+
+		return idl.serializeToVec();
+	}
+	
 	public static IDLArgs fromIDL(String idl)
 	{
 		Reader reader = new StringReader(idl);
@@ -58,8 +71,34 @@ public final class IDLArgs {
 	
 	public static IDLArgs fromBytes(byte[] bytes)
 	{
-		IDLDeserialize de = IDLDeserialize.create(bytes);
+		return fromDeserialize(IDLDeserialize.create(bytes));			
+	}
+	
+	public static IDLArgs fromBytes(byte[] bytes, TypeTableCache cache)
+	{
+		return fromDeserialize(IDLDeserialize.create(bytes, cache));			
+	}
+	
+	// decode with the compiled plan of the type table, plans are reused with cached type tables
+	public static IDLArgs fromBytesCompiled(byte[] bytes, TypeTableCache cache)
+	{
+		IDLDeserialize de = IDLDeserialize.create(bytes, cache);
+		
+		List<IDLValue> args = de.getCompiledValues();
 		
+		de.done();
+		
+		return new IDLArgs(args);
+	}
+	
+	// decode while the message is still arriving, without materializing it
+	public static IDLArgs fromStream(InputStream input)
+	{
+		return fromDeserialize(IDLDeserialize.create(input));			
+	}
+	
+	static IDLArgs fromDeserialize(IDLDeserialize de)
+	{
 		List<IDLValue> args = new ArrayList<IDLValue>();
 		
 		while(!de.isDone())
@@ -19,10 +19,13 @@ package org.ic4j.candid.parser;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.TreeMap;
 
 import org.ic4j.candid.types.Label;
@@ -50,6 +53,12 @@ public final class IDLType {
 	
 	Class<?> javaType;
 	
+	// memoized structural hash, 0 if not computed yet
+	int hash;
+	
+	// memoized shape, FINITE or CYCLIC, 0 if not computed yet
+	byte shape;
+	
 
 	void addInnerTypes(Object value) {
 		if (value == null)
@@ -64,6 +73,13 @@ public final class IDLType {
 		else if (value.getClass().isArray()) {
 			//Class clazz = ((Object[]) value).getClass().getComponentType();
 			
+			// primitive arrays, element type is defined by the component class
+			if(value.getClass().getComponentType().isPrimitive())
+			{
+				this.innerType = IDLType.createType(value.getClass().getComponentType());
+				return;
+			}
+			
 			Object[] arrayValue = (Object[]) value;
 			
 			if(arrayValue.length > 0)
@@ -221,21 +237,21 @@ public final class IDLType {
 
 		idlType.type = Type.NULL;
 
-		if (clazz == Boolean.class)
+		if (clazz == Boolean.class || clazz == boolean.class)
 			idlType.type = Type.BOOL;
 		else if (clazz == BigInteger.class)
 			idlType.type = Type.INT;
-		else if (clazz == Byte.class)
+		else if (clazz == Byte.class || clazz == byte.class)
 			idlType.type = Type.INT8;
-		else if (clazz == Short.class)
+		else if (clazz == Short.class || clazz == short.class)
 			idlType.type = Type.INT16;
-		else if (clazz == Integer.class)
+		else if (clazz == Integer.class || clazz == int.class)
 			idlType.type = Type.INT32;
-		else if (clazz == Long.class)
+		else if (clazz == Long.class || clazz == long.class)
 			idlType.type = Type.INT64;
-		else if (clazz == Float.class)
+		else if (clazz == Float.class || clazz == float.class)
 			idlType.type = Type.FLOAT32;
-		else if (clazz == Double.class)
+		else if (clazz == Double.class || clazz == double.class)
 			idlType.type = Type.FLOAT64;
 		else if (clazz == BigDecimal.class)
 			idlType.type = Type.FLOAT64;		
@@ -393,6 +409,227 @@ public final class IDLType {
 		this.javaType = javaType;
 	}
 	
+	// Deep copy with names, descriptions and java types, shared and recursive nodes are copied once
+	public IDLType copy() {
+		return copy(this, new IdentityHashMap<IDLType, IDLType>());
+	}
+
+	static IDLType copy(IDLType idlType, Map<IDLType, IDLType> copies) {
+		if (idlType == null)
+			return null;
+
+		IDLType copy = copies.get(idlType);
+
+		if (copy != null)
+			return copy;
+
+		copy = new IDLType();
+		copies.put(idlType, copy);
+
+		copy.type = idlType.type;
+		copy.innerType = copy(idlType.innerType, copies);
+
+		for (Map.Entry<Label, IDLType> entry : idlType.typeMap.entrySet())
+			copy.typeMap.put(entry.getKey(), copy(entry.getValue(), copies));
+
+		for (IDLType arg : idlType.args)
+			copy.args.add(copy(arg, copies));
+
+		for (IDLType ret : idlType.rets)
+			copy.rets.add(copy(ret, copies));
+
+		copy.modes.addAll(idlType.modes);
+
+		for (Map.Entry<String, IDLType> entry : idlType.meths.entrySet())
+			copy.meths.put(entry.getKey(), copy(entry.getValue(), copies));
+
+		copy.name = idlType.name;
+		copy.description = idlType.description;
+		copy.javaType = idlType.javaType;
+
+		// same structure, same hash and shape
+		copy.hash = idlType.hash;
+		copy.shape = idlType.shape;
+
+		return copy;
+	}
+
+	// Structural equality, two types are equal if they have the same wire encoding.
+	// Name, description and javaType are ignored. The hash is memoized per node,
+	// a type must not be modified after it or a type containing it was used as a key.
+	@Override
+	public boolean equals(Object other) {
+		if (this == other)
+			return true;
+
+		if (!(other instanceof IDLType))
+			return false;
+
+		IDLType otherType = (IDLType) other;
+
+		if (this.hash != 0 && otherType.hash != 0 && this.hash != otherType.hash)
+			return false;
+
+		return equals(this, otherType, new IdentityHashMap<IDLType, List<IDLType>>());
+	}
+
+	@Override
+	public int hashCode() {
+		int h = this.hash;
+
+		if (h == 0) {
+			h = hashCode(this, HASH_DEPTH);
+
+			if (h == 0)
+				h = 1;
+
+			this.hash = h;
+		}
+
+		return h;
+	}
+
+	static final byte FINITE = 1;
+	static final byte CYCLIC = 2;
+
+	// types reaching a cycle are hashed up to this depth, finite types are hashed entirely
+	static final int HASH_DEPTH = 8;
+
+	static int hashCode(IDLType idlType, int depth) {
+		if (idlType == null)
+			return 0;
+
+		// finite types are hashed once over their whole structure, children use their memoized hash
+		if (depth < HASH_DEPTH && isFinite(idlType))
+			return idlType.hashCode();
+
+		int h = idlType.type == null ? 0 : idlType.type.hashCode();
+
+		if (depth == 0)
+			return h;
+
+		int childDepth = isFinite(idlType) ? HASH_DEPTH - 1 : depth - 1;
+
+		h = 31 * h + hashCode(idlType.innerType, childDepth);
+
+		// maps are hashed independent of the iteration order
+		int fields = 0;
+
+		for (Map.Entry<Label, IDLType> entry : idlType.typeMap.entrySet())
+			fields += entry.getKey().hashCode() ^ hashCode(entry.getValue(), childDepth);
+
+		h = 31 * h + fields;
+
+		for (IDLType arg : idlType.args)
+			h = 31 * h + hashCode(arg, childDepth);
+
+		for (IDLType ret : idlType.rets)
+			h = 31 * h + hashCode(ret, childDepth);
+
+		h = 31 * h + idlType.modes.hashCode();
+
+		int meths = 0;
+
+		for (Map.Entry<String, IDLType> entry : idlType.meths.entrySet())
+			meths += entry.getKey().hashCode() ^ hashCode(entry.getValue(), childDepth);
+
+		return 31 * h + meths;
+	}
+
+	// equal types either both reach a cycle or are both finite, so the hash follows equals
+	static boolean isFinite(IDLType idlType) {
+		if (idlType.shape == 0)
+			isFinite(idlType, Collections.newSetFromMap(new IdentityHashMap<IDLType, Boolean>()));
+
+		return idlType.shape == FINITE;
+	}
+
+	// path holds the types under visit, reaching one of them again closes a cycle
+	static boolean isFinite(IDLType idlType, Set<IDLType> path) {
+		if (idlType == null)
+			return true;
+
+		if (idlType.shape != 0)
+			return idlType.shape == FINITE;
+
+		if (!path.add(idlType))
+			return false;
+
+		boolean finite = isFinite(idlType.innerType, path);
+
+		for (IDLType field : idlType.typeMap.values())
+			finite &= isFinite(field, path);
+
+		for (IDLType arg : idlType.args)
+			finite &= isFinite(arg, path);
+
+		for (IDLType ret : idlType.rets)
+			finite &= isFinite(ret, path);
+
+		for (IDLType meth : idlType.meths.values())
+			finite &= isFinite(meth, path);
+
+		path.remove(idlType);
+
+		idlType.shape = finite ? FINITE : CYCLIC;
+
+		return finite;
+	}
+
+	// visited keeps the pairs already under comparison, cycles are assumed equal
+	static boolean equals(IDLType left, IDLType right, Map<IDLType, List<IDLType>> visited) {
+		if (left == right)
+			return true;
+
+		if (left == null || right == null)
+			return false;
+
+		if (left.type != right.type)
+			return false;
+
+		List<IDLType> pairs = visited.get(left);
+
+		if (pairs == null) {
+			pairs = new ArrayList<IDLType>();
+			visited.put(left, pairs);
+		} else
+			for (IDLType pair : pairs)
+				if (pair == right)
+					return true;
+
+		pairs.add(right);
+
+		if (!equals(left.innerType, right.innerType, visited))
+			return false;
+
+		if (left.typeMap.size() != right.typeMap.size() || left.args.size() != right.args.size()
+				|| left.rets.size() != right.rets.size() || left.meths.size() != right.meths.size())
+			return false;
+
+		if (!left.modes.equals(right.modes))
+			return false;
+
+		for (Map.Entry<Label, IDLType> field : left.typeMap.entrySet())
+			if (!right.typeMap.containsKey(field.getKey())
+					|| !equals(field.getValue(), right.typeMap.get(field.getKey()), visited))
+				return false;
+
+		for (int i = 0; i < left.args.size(); i++)
+			if (!equals(left.args.get(i), right.args.get(i), visited))
+				return false;
+
+		for (int i = 0; i < left.rets.size(); i++)
+			if (!equals(left.rets.get(i), right.rets.get(i), visited))
+				return false;
+
+		for (Map.Entry<String, IDLType> meth : left.meths.entrySet())
+			if (!right.meths.containsKey(meth.getKey())
+					|| !equals(meth.getValue(), right.meths.get(meth.getKey()), visited))
+				return false;
+
+		return true;
+	}
+	
 
 
 }
@@ -111,113 +111,131 @@ public final class IDLValue implements Deserialize{
 	
 	public void idlSerialize(Serializer serializer)
 	{
-		if(!value.isPresent())
+		idlSerialize(this.value.orElse(null), this.idlType, serializer);
+	}
+	
+	// serialize plain value with its type, without creating IDLValue wrapper
+	public static void idlSerialize(Object value, IDLType idlType, Serializer serializer)
+	{
+		if(value == null)
 		{
 			serializer.serializeNull();
 			return;
 		}
 		
-		switch(this.idlType.type)
+		switch(idlType.type)
 		{
 		case NULL:
 			serializer.serializeNull();
 			break;		
 		case BOOL:
-			serializer.serializeBool((Boolean) value.get());
+			serializer.serializeBool((Boolean) value);
 			break;
 		case NAT:
-			serializer.serializeNat((BigInteger) value.get());
+			serializer.serializeNat((BigInteger) value);
 			break;
 		case NAT8:			
-			serializer.serializeNat8((Byte) value.get());
+			serializer.serializeNat8((Byte) value);
 			break;
 		case NAT16:
-			serializer.serializeNat16((Short) value.get());
+			serializer.serializeNat16((Short) value);
 			break;
 		case NAT32:
-			serializer.serializeNat32((Integer)value.get());
+			serializer.serializeNat32((Integer)value);
 			break;
 		case NAT64:	
-			if(value.isPresent() && value.get() instanceof BigInteger)
+			if(value instanceof BigInteger)
 			{
-				Long longValue = ((BigInteger)value.get()).longValue();
+				Long longValue = ((BigInteger)value).longValue();
 				serializer.serializeNat64((Long) longValue);
 			}
 			else
-				serializer.serializeNat64((Long) value.get());
+				serializer.serializeNat64((Long) value);
 			break;			
 		case INT:
-			serializer.serializeInt((BigInteger) IDLUtils.objectToBigInt(value.get()));			
+			serializer.serializeInt((BigInteger) IDLUtils.objectToBigInt(value));			
 			break;
 		case INT8:
-			serializer.serializeInt8((Byte) value.get());
+			serializer.serializeInt8((Byte) value);
 			break;	
 		case INT16:
-			serializer.serializeInt16((Short) value.get());
+			serializer.serializeInt16((Short) value);
 			break;
 		case INT32:
-			serializer.serializeInt32((Integer) value.get());
+			serializer.serializeInt32((Integer) value);
 			break;
 		case INT64:
-			if(value.isPresent() && value.get() instanceof BigInteger)
+			if(value instanceof BigInteger)
 			{
-				Long longValue = ((BigInteger)value.get()).longValue();
+				Long longValue = ((BigInteger)value).longValue();
 				serializer.serializeInt64((Long) longValue);
 			}
 			else
-			serializer.serializeInt64((Long) value.get());
+			serializer.serializeInt64((Long) value);
 			break;			
 		case FLOAT32:
-			if(value.isPresent() && value.get() instanceof Double)
+			if(value instanceof Double)
 			{
-				Float floatValue = ((Double)value.get()).floatValue();
+				Float floatValue = ((Double)value).floatValue();
 				serializer.serializeFloat32((Float) floatValue);
 			}
 			else
-				serializer.serializeFloat32((Float) value.get());	
+				serializer.serializeFloat32((Float) value);	
 			break;
 		case FLOAT64:
-			if(value.isPresent() && value.get() instanceof BigDecimal)
+			if(value instanceof BigDecimal)
 			{
-				Double doubleValue = ((BigDecimal)value.get()).doubleValue();
+				Double doubleValue = ((BigDecimal)value).doubleValue();
 				serializer.serializeFloat64((Double) doubleValue);
 			} 
-			else if(value.isPresent() && value.get() instanceof Float)
+			else if(value instanceof Float)
 			{
-				Double doubleValue = ((Float)value.get()).doubleValue();
+				Double doubleValue = ((Float)value).doubleValue();
 				serializer.serializeFloat64((Double) doubleValue);
 			}
 			else			
-				serializer.serializeFloat64((Double) value.get());
+				serializer.serializeFloat64((Double) value);
 			break;			
 		case TEXT:
-			serializer.serializeText((String) value.get());
+			serializer.serializeText((String) value);
 			break;	
 		case OPT:
-			serializer.serializeOpt((Optional) value.get(), this.idlType);
+			serializer.serializeOpt((Optional) value, idlType);
 			break;
 		case VEC:
-			if(value.isPresent() && value.get() instanceof byte[])
-				serializer.serializeBinary((byte[])value.get(), this.idlType);	
-			else if(value.isPresent() && value.get() instanceof Byte[])
-				serializer.serializeBinary((Byte[])value.get(), this.idlType);			
+			if(value instanceof byte[])
+				serializer.serializeBinary((byte[])value, idlType);	
+			else if(value instanceof Byte[])
+				serializer.serializeBinary((Byte[])value, idlType);
+			else if(value instanceof long[])
+				serializer.serializeVec((long[])value, idlType);
+			else if(value instanceof int[])
+				serializer.serializeVec((int[])value, idlType);
+			else if(value instanceof short[])
+				serializer.serializeVec((short[])value, idlType);
+			else if(value instanceof double[])
+				serializer.serializeVec((double[])value, idlType);
+			else if(value instanceof float[])
+				serializer.serializeVec((float[])value, idlType);
+			else if(value instanceof boolean[])
+				serializer.serializeVec((boolean[])value, idlType);
 			else
-				serializer.serializeVec((Object[])value.get(), this.idlType);
+				serializer.serializeVec((Object[])value, idlType);
 			break;
 		case RECORD:
-			serializer.serializeRecord(value.get(), this.idlType);
+			serializer.serializeRecord(value, idlType);
 			break;	
 		case VARIANT:
-			serializer.serializeVariant(value.get(), this.idlType);
+			serializer.serializeVariant(value, idlType);
 			break;
 		case PRINCIPAL:
-			serializer.serializePrincipal((Principal) IDLUtils.objectToPrincipal(value.get()));
+			serializer.serializePrincipal((Principal) IDLUtils.objectToPrincipal(value));
 			break;	
 		case FUNC:
-			serializer.serializeFunc((Func) value.get());
+			serializer.serializeFunc((Func) value);
 			break;	
 		case SERVICE:
-			serializer.serializeService((Service) value.get());
+			serializer.serializeService((Service) value);
 			break;			
 		}
 
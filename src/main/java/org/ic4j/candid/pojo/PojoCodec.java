@@ -0,0 +1,53 @@
+/*
+ * Copyright 2021 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+
+package org.ic4j.candid.pojo;
+
+import org.ic4j.candid.types.Label;
+import org.ic4j.candid.types.Mode;
+import org.ic4j.candid.types.Type;
+
+// Fields, construction and field access of a POJO class without reflection, generated by PojoCodecProcessor
+public interface PojoCodec<T> {
+	// appended to the POJO class name, nested class names are joined by _
+	public static final String SUFFIX = "_CandidCodec";
+
+	public Class<T> getPojoClass();
+
+	// fields are indexed in declaration order, names are taken from Name annotations
+	public String[] getFieldNames();
+
+	public Label[] getLabels();
+
+	public Class<?>[] getFieldClasses();
+
+	public java.lang.reflect.Type[] getGenericTypes();
+
+	// IDL types from Field annotations, null if not annotated
+	public Type[] getAnnotatedTypes();
+
+	public Mode[][] getModes();
+
+	// field indexes in label id order
+	public int[] getSortedFields();
+
+	public T newInstance();
+
+	public Object get(T value, int field);
+
+	public void set(T value, int field, Object item);
+}
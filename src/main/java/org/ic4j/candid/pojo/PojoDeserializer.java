@@ -17,9 +17,6 @@
 package org.ic4j.candid.pojo;
 
 import java.lang.reflect.Array;
-import java.lang.reflect.Constructor;
-import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.ParameterizedType;
 import java.math.BigDecimal;
 import java.math.BigInteger;
@@ -32,9 +29,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
-import org.ic4j.candid.annotations.Id;
-import org.ic4j.candid.annotations.Ignore;
-import org.ic4j.candid.annotations.Name;
 import org.ic4j.candid.parser.IDLType;
 import org.ic4j.candid.parser.IDLValue;
 import org.ic4j.candid.types.Label;
@@ -106,6 +100,8 @@ public final class PojoDeserializer implements ObjectDeserializer {
 			// if innerType is primitive
 			if (IDLType.isPrimitiveType(clazz))
 				return idlValue.getValue();
+			else if (clazz.isArray() && clazz.getComponentType().isPrimitive() && idlValue.getValue().getClass().isArray())
+				return (T) toPrimitiveArray(idlValue.getValue(), clazz.getComponentType());
 			else if (idlValue.getValue().getClass().isArray()) {
 				Object[] array = idlValue.getValue();
 
@@ -220,6 +216,8 @@ public final class PojoDeserializer implements ObjectDeserializer {
 		if (Map.class.isAssignableFrom(value.getClass())) {
 			Map<Label, Object> valueMap = (Map<Label, Object>) value;
 			T pojoValue = null;
+			PojoMetadata metadata = PojoMetadata.get(clazz);
+			
 			// if the output is Enum
 			if (Enum.class.isAssignableFrom(clazz)) {
 				// no enum value
@@ -228,116 +226,27 @@ public final class PojoDeserializer implements ObjectDeserializer {
 
 				Label label = valueMap.keySet().iterator().next();
 
-				pojoValue = (T) this.initializeEnum(label, (Class<Enum>) clazz);
+				// cannot find variant
+				pojoValue = (T) metadata.getConstant(label.getIdValue());
 
 				if (pojoValue == null)
 					return null;
 			} else {
-				if (clazz.getConstructors().length == 0)
+				if (!metadata.hasDefaultConstructor())
 					throw CandidError.create(CandidError.CandidErrorCode.CUSTOM,
 							"Cannot instantiate class " + clazz.getCanonicalName() + ". Missing constructor.");
-				try {
-					for (Constructor constructor : clazz.getConstructors()) {
-						if (constructor.getParameterCount() == 0) {
-							constructor.setAccessible(true);
-							pojoValue = (T) constructor.newInstance();
-							continue;
-						}
-					}
-					if (pojoValue == null)
-						throw CandidError.create(CandidError.CandidErrorCode.CUSTOM,
-								"Cannot instantiate class " + clazz.getCanonicalName() + ".");
-
-				} catch (InstantiationException | IllegalAccessException | IllegalArgumentException
-						| InvocationTargetException e) {
-					throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, e, e.getLocalizedMessage());
-				}
-			}
-
-			Field[] fields = clazz.getDeclaredFields();
-
-			for (Field field : fields) {
-				if (field.isAnnotationPresent(Ignore.class))
-					continue;
-
-				if (field.isEnumConstant())
-					continue;
 
-				field.setAccessible(true);
-
-				String name = field.getName();
-				if (name.startsWith("this$"))
-					continue;
-
-				if (name.startsWith("$VALUES"))
-					continue;
-
-				if (name.startsWith("ENUM$VALUES"))
-					continue;
+				pojoValue = (T) metadata.newInstance();
+			}
 
+			for (PojoMetadata.FieldMetadata field : metadata.getFields()) {
 				Class typeClass = field.getType();
 
-				if (field.isAnnotationPresent(Name.class))
-					name = field.getAnnotation(Name.class).value();
-
-				Label label;
-				if (field.isAnnotationPresent(Id.class)) {
-					int id = field.getAnnotation(Id.class).value();
-					label = Label.createIdLabel((long) id);
-				} else
-					label = Label.createNamedLabel(name);
-
-				Object item = valueMap.get(label);
-
-				// handle BigDecimal like Double
-				if (item != null && BigDecimal.class.isAssignableFrom(typeClass))
-					item = BigDecimal.valueOf((double) item);
-
-				if (List.class.isAssignableFrom(typeClass)) {
-					if (item != null && item.getClass().isArray()) {
-						Class nestedClass = (Class) ((ParameterizedType) field.getGenericType())
-								.getActualTypeArguments()[0];
-
-						List arrayValue = new ArrayList();
-						
-						Object[] array = (Object[]) item;
-
-						for (Object arrayItem : array) {
-							arrayValue.add((T) this.getValue(arrayItem, nestedClass));
-						}
-						
-						item = arrayValue;
-					}
-
-				} else if (Optional.class.isAssignableFrom(typeClass)) {
-					Class nestedClass = (Class) ((ParameterizedType) field.getGenericType())
-							.getActualTypeArguments()[0];
-					item = this.getValue(item, nestedClass);
-					
-					//if (!IDLType.isDefaultType(nestedClass))
-					//	item = Optional.ofNullable(item);
-				} else if (!IDLType.isDefaultType(typeClass))
-					item = this.getValue(item, typeClass);
+				Label label = field.getLabel();
 
 				try {
-					// convert to proper type
-					if (item != null) {
-
-						if (item.getClass().isArray()) {
-							item = IDLUtils.toArray(typeClass, (Object[]) item);
-							// handle binary
-							if (typeClass.isAssignableFrom(byte[].class))
-								item = ArrayUtils.toPrimitive((Byte[]) item);
-
-						} else {
-							if (item.getClass().isAssignableFrom(BigInteger.class)
-									&& !typeClass.isAssignableFrom(BigInteger.class))
-								item = IDLUtils.bigIntToObject((BigInteger) item, typeClass);
-							if (item.getClass().isAssignableFrom(Principal.class)
-									&& !typeClass.isAssignableFrom(Principal.class))
-								item = IDLUtils.principalToObject((Principal) item, typeClass);
-						}
-					}
+					Object item = this.getFieldValue(valueMap.get(label), typeClass, field.getGenericType());
+
 					field.set(pojoValue, item);
 				} catch (IllegalArgumentException | IllegalAccessException e) {
 					continue;
@@ -351,27 +260,74 @@ public final class PojoDeserializer implements ObjectDeserializer {
 		throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, "Undefined type " + clazz.getName());
 	}
 
-	Enum initializeEnum(Label label, Class<Enum> clazz) {
-		Enum[] constants = clazz.getEnumConstants();
+	// convert decoded field value to the field type
+	public Object getFieldValue(Object item, Class typeClass, java.lang.reflect.Type genericType) {
+		// handle BigDecimal like Double
+		if (item != null && BigDecimal.class.isAssignableFrom(typeClass))
+			item = BigDecimal.valueOf((double) item);
 
-		for (Enum constant : constants) {
-			String enumName = constant.name();
-			
-			String name = enumName;
-			
-			try {
-				if (clazz.getField(name).isAnnotationPresent(Name.class))
-					name = clazz.getField(name).getAnnotation(Name.class).value();					
-			} catch (NoSuchFieldException | SecurityException e) {
+		if (List.class.isAssignableFrom(typeClass)) {
+			if (item != null && item.getClass().isArray()) {
+				Class nestedClass = (Class) ((ParameterizedType) genericType)
+						.getActualTypeArguments()[0];
+
+				List arrayValue = new ArrayList();
+				
+				Object[] array = (Object[]) item;
+
+				for (Object arrayItem : array) {
+					arrayValue.add(this.getValue(arrayItem, nestedClass));
+				}
+				
+				item = arrayValue;
 			}
 
-			Label namedLabel = Label.createNamedLabel(name);
+		} else if (Optional.class.isAssignableFrom(typeClass)) {
+			Class nestedClass = (Class) ((ParameterizedType) genericType)
+					.getActualTypeArguments()[0];
+			item = this.getValue(item, nestedClass);
+			
+			//if (!IDLType.isDefaultType(nestedClass))
+			//	item = Optional.ofNullable(item);
+		} else if (typeClass.isArray() && typeClass.getComponentType().isPrimitive()) {
+			// primitive arrays, already decoded in bulk or boxed
+			if (item != null && item.getClass().isArray())
+				item = toPrimitiveArray(item, typeClass.getComponentType());
+		} else if (!IDLType.isDefaultType(typeClass))
+			item = this.getValue(item, typeClass);
+
+		// convert to proper type
+		if (item != null) {
+
+			if (item.getClass().isArray() && !item.getClass().getComponentType().isPrimitive()) {
+				item = IDLUtils.toArray(typeClass, (Object[]) item);
+				// handle binary
+				if (typeClass.isAssignableFrom(byte[].class))
+					item = ArrayUtils.toPrimitive((Byte[]) item);
 
-			if (label.equals(namedLabel))
-				return Enum.valueOf(clazz, enumName);
+			} else {
+				if (item.getClass().isAssignableFrom(BigInteger.class)
+						&& !typeClass.isAssignableFrom(BigInteger.class))
+					item = IDLUtils.bigIntToObject((BigInteger) item, typeClass);
+				if (item.getClass().isAssignableFrom(Principal.class)
+						&& !typeClass.isAssignableFrom(Principal.class))
+					item = IDLUtils.principalToObject((Principal) item, typeClass);
+			}
 		}
-		// cannot find variant
-		return null;
+
+		return item;
 	}
 
+	static Object toPrimitiveArray(Object value, Class<?> componentType) {
+		if (value.getClass().getComponentType() == componentType)
+			return value;
+
+		Object[] array = (Object[]) value;
+		Object result = Array.newInstance(componentType, array.length);
+
+		for (int i = 0; i < array.length; i++)
+			Array.set(result, i, array[i]);
+
+		return result;
+	}
 }
@@ -0,0 +1,566 @@
+/*
+ * Copyright 2021 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+
+package org.ic4j.candid.pojo;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.WeakHashMap;
+import java.util.function.Supplier;
+
+import org.ic4j.candid.CandidError;
+import org.ic4j.candid.annotations.Id;
+import org.ic4j.candid.annotations.Ignore;
+import org.ic4j.candid.annotations.Modes;
+import org.ic4j.candid.annotations.Name;
+import org.ic4j.candid.parser.IDLType;
+import org.ic4j.candid.types.Label;
+import org.ic4j.candid.types.Mode;
+import org.ic4j.candid.types.Type;
+
+// Metadata of a POJO class, resolved once per class and shared by all POJO paths. A generated codec
+// supplies the fields and the constructor, other classes are introspected by reflection
+public final class PojoMetadata {
+	static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+	// codecs registered in META-INF/services by PojoCodecProcessor, loaded once per class loader
+	static final Map<ClassLoader, Map<Class<?>, PojoCodec<Object>>> CODECS = Collections
+			.synchronizedMap(new WeakHashMap<ClassLoader, Map<Class<?>, PojoCodec<Object>>>());
+
+	static final ClassValue<PojoMetadata> REGISTRY = new ClassValue<PojoMetadata>() {
+		@Override
+		protected PojoMetadata computeValue(Class<?> clazz) {
+			return new PojoMetadata(clazz);
+		}
+	};
+
+	final Class<?> clazz;
+
+	// generated codec, null if reflection is used
+	final PojoCodec<Object> codec;
+
+	// fields in declaration order
+	final FieldMetadata[] fields;
+
+	// instance fields sorted by label id
+	final FieldMetadata[] sortedFields;
+	final long[] sortedIds;
+
+	// default constructor when reflection is used
+	final Constructor<?> constructor;
+
+	// generated factory of the default constructor, null if reflection is used
+	final Supplier<Object> factory;
+
+	// enum constants and their labels by ordinal
+	final Enum[] constants;
+	final Label[] constantLabels;
+
+	// enum constants sorted by label id
+	final Enum[] sortedConstants;
+	final long[] sortedConstantIds;
+
+	// IDL type introspected by PojoUtils, never handed out, PojoUtils returns copies
+	volatile IDLType idlType;
+
+	PojoMetadata(Class<?> clazz) {
+		this.clazz = clazz;
+		this.codec = findCodec(clazz);
+
+		if (this.codec != null) {
+			String[] names = this.codec.getFieldNames();
+			Label[] labels = this.codec.getLabels();
+			Class<?>[] classes = this.codec.getFieldClasses();
+			java.lang.reflect.Type[] genericTypes = this.codec.getGenericTypes();
+			Type[] annotatedTypes = this.codec.getAnnotatedTypes();
+			Mode[][] modes = this.codec.getModes();
+
+			this.fields = new FieldMetadata[names.length];
+
+			for (int i = 0; i < this.fields.length; i++)
+				this.fields[i] = new FieldMetadata(this.codec, i, names[i], labels[i], classes[i], genericTypes[i],
+						annotatedTypes[i], modes[i]);
+
+			int[] sorted = this.codec.getSortedFields();
+
+			this.sortedFields = new FieldMetadata[sorted.length];
+			this.sortedIds = new long[sorted.length];
+
+			for (int i = 0; i < sorted.length; i++) {
+				this.sortedFields[i] = this.fields[sorted[i]];
+				this.sortedIds[i] = this.sortedFields[i].label.getIdValue();
+			}
+
+			this.constructor = null;
+			this.factory = null;
+			this.constants = null;
+			this.constantLabels = null;
+			this.sortedConstants = null;
+			this.sortedConstantIds = null;
+			return;
+		}
+
+		List<FieldMetadata> fields = new ArrayList<FieldMetadata>();
+
+		for (Field field : clazz.getDeclaredFields()) {
+			if (field.isAnnotationPresent(Ignore.class))
+				continue;
+
+			if (field.isEnumConstant())
+				continue;
+
+			// static fields are not serialized, as in the generated codecs
+			if (Modifier.isStatic(field.getModifiers()))
+				continue;
+
+			String name = field.getName();
+			if (name.startsWith("this$"))
+				continue;
+
+			if (name.startsWith("$VALUES"))
+				continue;
+
+			if (name.startsWith("ENUM$VALUES"))
+				continue;
+
+			fields.add(new FieldMetadata(field));
+		}
+
+		this.fields = fields.toArray(new FieldMetadata[fields.size()]);
+
+		List<FieldMetadata> instanceFields = new ArrayList<FieldMetadata>(fields);
+
+		instanceFields.sort((a, b) -> Long.compare(a.label.getIdValue(), b.label.getIdValue()));
+
+		this.sortedFields = instanceFields.toArray(new FieldMetadata[instanceFields.size()]);
+		this.sortedIds = new long[this.sortedFields.length];
+
+		for (int i = 0; i < this.sortedFields.length; i++)
+			this.sortedIds[i] = this.sortedFields[i].label.getIdValue();
+
+		Constructor<?> defaultConstructor = null;
+
+		for (Constructor<?> constructor : clazz.getConstructors())
+			if (constructor.getParameterCount() == 0)
+				defaultConstructor = constructor;
+
+		this.constructor = defaultConstructor;
+		this.factory = defaultConstructor == null ? null : createFactory(defaultConstructor);
+
+		if (clazz.isEnum()) {
+			this.constants = (Enum[]) clazz.getEnumConstants();
+			this.constantLabels = new Label[this.constants.length];
+
+			for (int i = 0; i < this.constants.length; i++) {
+				String name = this.constants[i].name();
+
+				try {
+					if (clazz.getField(name).isAnnotationPresent(Name.class))
+						name = clazz.getField(name).getAnnotation(Name.class).value();
+				} catch (NoSuchFieldException | SecurityException e) {
+				}
+
+				this.constantLabels[i] = Label.createNamedLabel(name);
+			}
+
+			Integer[] order = new Integer[this.constants.length];
+
+			for (int i = 0; i < order.length; i++)
+				order[i] = i;
+
+			Arrays.sort(order, (a, b) -> Long.compare(this.constantLabels[a].getIdValue(), this.constantLabels[b].getIdValue()));
+
+			this.sortedConstants = new Enum[order.length];
+			this.sortedConstantIds = new long[order.length];
+
+			for (int i = 0; i < order.length; i++) {
+				this.sortedConstants[i] = this.constants[order[i]];
+				this.sortedConstantIds[i] = this.constantLabels[order[i]].getIdValue();
+			}
+		} else {
+			this.constants = null;
+			this.constantLabels = null;
+			this.sortedConstants = null;
+			this.sortedConstantIds = null;
+		}
+	}
+
+	// codec generated by PojoCodecProcessor for the POJO class, null if missing
+	static PojoCodec<Object> findCodec(Class<?> clazz) {
+		if (clazz.isEnum() || clazz.isArray() || clazz.isPrimitive() || clazz.getClassLoader() == null)
+			return null;
+
+		return CODECS.computeIfAbsent(clazz.getClassLoader(), PojoMetadata::loadCodecs).get(clazz);
+	}
+
+	// codecs that fail to load are skipped, their classes keep the reflective path
+	@SuppressWarnings("unchecked")
+	static Map<Class<?>, PojoCodec<Object>> loadCodecs(ClassLoader classLoader) {
+		Map<Class<?>, PojoCodec<Object>> codecs = new HashMap<Class<?>, PojoCodec<Object>>();
+
+		Iterator<PojoCodec> iterator = ServiceLoader.load(PojoCodec.class, classLoader).iterator();
+
+		while (true) {
+			try {
+				if (!iterator.hasNext())
+					break;
+
+				PojoCodec<Object> codec = iterator.next();
+
+				codecs.putIfAbsent(codec.getPojoClass(), codec);
+			} catch (ServiceConfigurationError | LinkageError e) {
+			}
+		}
+
+		return codecs;
+	}
+
+	// Supplier spun by LambdaMetafactory, falls back to a constructor handle and then to reflection
+	@SuppressWarnings("unchecked")
+	static Supplier<Object> createFactory(Constructor<?> constructor) {
+		MethodHandle handle;
+
+		try {
+			handle = LOOKUP.unreflectConstructor(constructor);
+		} catch (IllegalAccessException | RuntimeException e) {
+			return null;
+		}
+
+		// the spun class links against the POJO class by name, it has to be visible from here
+		if (isVisible(constructor.getDeclaringClass())) {
+			try {
+				CallSite site = LambdaMetafactory.metafactory(LOOKUP, "get", MethodType.methodType(Supplier.class),
+						MethodType.methodType(Object.class), handle, MethodType.methodType(constructor.getDeclaringClass()));
+
+				return (Supplier<Object>) site.getTarget().invoke();
+			} catch (Throwable e) {
+			}
+		}
+
+		MethodHandle generic = handle.asType(MethodType.methodType(Object.class));
+
+		return () -> {
+			try {
+				return generic.invokeExact();
+			} catch (RuntimeException | Error e) {
+				throw e;
+			} catch (Throwable e) {
+				throw new UndeclaredCheckedException(e);
+			}
+		};
+	}
+
+	static boolean isVisible(Class<?> clazz) {
+		if (!Modifier.isPublic(clazz.getModifiers()))
+			return false;
+
+		try {
+			return Class.forName(clazz.getName(), false, PojoMetadata.class.getClassLoader()) == clazz;
+		} catch (ClassNotFoundException | LinkageError | RuntimeException e) {
+			return false;
+		}
+	}
+
+	public static PojoMetadata get(Class<?> clazz) {
+		return REGISTRY.get(clazz);
+	}
+
+	public Class<?> getPojoClass() {
+		return this.clazz;
+	}
+
+	public FieldMetadata[] getFields() {
+		return this.fields;
+	}
+
+	public FieldMetadata[] getSortedFields() {
+		return this.sortedFields;
+	}
+
+	public long[] getSortedIds() {
+		return this.sortedIds;
+	}
+
+	// position of the instance field in label id order, negative if missing
+	public int indexOf(long id) {
+		return Arrays.binarySearch(this.sortedIds, id);
+	}
+
+	// codecs are only generated for classes with a public default constructor
+	public boolean hasDefaultConstructor() {
+		return this.codec != null || this.constructor != null;
+	}
+
+	public Object newInstance() {
+		if (this.codec != null) {
+			try {
+				return this.codec.newInstance();
+			} catch (RuntimeException e) {
+				throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, e, e.getLocalizedMessage());
+			}
+		}
+
+		if (this.constructor == null)
+			throw CandidError.create(CandidError.CandidErrorCode.CUSTOM,
+					"Cannot instantiate class " + this.clazz.getCanonicalName() + ". Missing constructor.");
+
+		if (this.factory != null) {
+			try {
+				return this.factory.get();
+			} catch (UndeclaredCheckedException e) {
+				throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, e.getCause(), e.getCause().getLocalizedMessage());
+			} catch (Exception e) {
+				// generated factories rethrow constructor exceptions unwrapped
+				throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, e, e.getLocalizedMessage());
+			}
+		}
+
+		try {
+			return this.constructor.newInstance();
+		} catch (InstantiationException | IllegalAccessException | IllegalArgumentException
+				| InvocationTargetException e) {
+			throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, e, e.getLocalizedMessage());
+		}
+	}
+
+	public Enum[] getConstants() {
+		return this.constants;
+	}
+
+	public Label getConstantLabel(Enum constant) {
+		return this.constantLabels[constant.ordinal()];
+	}
+
+	// enum constant with the label id, null if missing
+	public Enum getConstant(long id) {
+		int idx = Arrays.binarySearch(this.sortedConstantIds, id);
+
+		return idx < 0 ? null : this.sortedConstants[idx];
+	}
+
+	public PojoCodec<Object> getCodec() {
+		return this.codec;
+	}
+
+	public IDLType getIDLType() {
+		return PojoUtils.getIDLType(this.clazz);
+	}
+
+	// Checked exception thrown by a constructor handle
+	static final class UndeclaredCheckedException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		UndeclaredCheckedException(Throwable cause) {
+			super(cause);
+		}
+	}
+
+	// Resolved annotations and accessor of a POJO field
+	public static final class FieldMetadata {
+		// reflected field, null if the generated codec handles the field
+		final Field field;
+		final String name;
+		final Label label;
+		final Class<?> type;
+		final java.lang.reflect.Type genericType;
+		final Type annotatedType;
+		final Mode[] modes;
+
+		// generated accessor and field index, null if reflection is used
+		final PojoCodec<Object> codec;
+		final int codecIndex;
+
+		// handles typed (Object)Object and (Object,Object)void, null if reflection is used
+		final MethodHandle getter;
+		final MethodHandle setter;
+
+		FieldMetadata(PojoCodec<Object> codec, int codecIndex, String name, Label label, Class<?> type,
+				java.lang.reflect.Type genericType, Type annotatedType, Mode[] modes) {
+			this.field = null;
+			this.name = name;
+			this.label = label;
+			this.type = type;
+			this.genericType = genericType;
+			this.annotatedType = annotatedType;
+			this.modes = modes;
+			this.codec = codec;
+			this.codecIndex = codecIndex;
+			this.getter = null;
+			this.setter = null;
+		}
+
+		FieldMetadata(Field field) {
+			// fields of JDK classes may not be accessible, get and set then fail like before
+			try {
+				field.setAccessible(true);
+			} catch (RuntimeException e) {
+			}
+
+			this.field = field;
+
+			String name = field.getName();
+
+			if (field.isAnnotationPresent(Name.class))
+				name = field.getAnnotation(Name.class).value();
+
+			this.name = name;
+			this.type = field.getType();
+			this.genericType = field.getGenericType();
+
+			if (field.isAnnotationPresent(Id.class)) {
+				int id = field.getAnnotation(Id.class).value();
+				this.label = Label.createIdLabel((long) id);
+			} else
+				this.label = Label.createNamedLabel(name);
+
+			if (field.isAnnotationPresent(org.ic4j.candid.annotations.Field.class))
+				this.annotatedType = field.getAnnotation(org.ic4j.candid.annotations.Field.class).value();
+			else
+				this.annotatedType = null;
+
+			if (field.isAnnotationPresent(Modes.class))
+				this.modes = field.getAnnotation(Modes.class).value();
+			else
+				this.modes = new Mode[0];
+
+			this.codec = null;
+			this.codecIndex = -1;
+
+			this.getter = createGetter(field);
+			this.setter = createSetter(field);
+		}
+
+		static MethodHandle createGetter(Field field) {
+			if (Modifier.isStatic(field.getModifiers()))
+				return null;
+
+			try {
+				return LOOKUP.unreflectGetter(field).asType(MethodType.methodType(Object.class, Object.class));
+			} catch (IllegalAccessException | RuntimeException e) {
+				return null;
+			}
+		}
+
+		static MethodHandle createSetter(Field field) {
+			if (Modifier.isStatic(field.getModifiers()))
+				return null;
+
+			try {
+				return LOOKUP.unreflectSetter(field)
+						.asType(MethodType.methodType(void.class, Object.class, Object.class));
+			} catch (IllegalAccessException | RuntimeException e) {
+				return null;
+			}
+		}
+
+		// null if the generated codec handles the field
+		public Field getField() {
+			return this.field;
+		}
+
+		public String getName() {
+			return this.name;
+		}
+
+		public Label getLabel() {
+			return this.label;
+		}
+
+		public Class<?> getType() {
+			return this.type;
+		}
+
+		public java.lang.reflect.Type getGenericType() {
+			return this.genericType;
+		}
+
+		// IDL type from Field annotation, null if not annotated
+		public Type getAnnotatedType() {
+			return this.annotatedType;
+		}
+
+		public Mode[] getModes() {
+			return this.modes;
+		}
+
+		public Object get(Object value) throws IllegalAccessException {
+			if (this.codec != null) {
+				try {
+					return this.codec.get(value, this.codecIndex);
+				} catch (ClassCastException e) {
+					throw new IllegalArgumentException(e.getLocalizedMessage(), e);
+				}
+			}
+
+			if (this.getter == null || value == null)
+				return this.field.get(value);
+
+			try {
+				return (Object) this.getter.invokeExact(value);
+			} catch (ClassCastException e) {
+				throw new IllegalArgumentException(e.getLocalizedMessage(), e);
+			} catch (RuntimeException | Error e) {
+				throw e;
+			} catch (Throwable e) {
+				throw new IllegalArgumentException(e.getLocalizedMessage(), e);
+			}
+		}
+
+		// incompatible values throw IllegalArgumentException, same as Field.set
+		public void set(Object value, Object item) throws IllegalAccessException {
+			if (this.codec != null) {
+				try {
+					this.codec.set(value, this.codecIndex, item);
+					return;
+				} catch (ClassCastException | NullPointerException e) {
+					throw new IllegalArgumentException(e.getLocalizedMessage(), e);
+				}
+			}
+
+			if (this.setter == null || value == null) {
+				this.field.set(value, item);
+				return;
+			}
+
+			try {
+				this.setter.invokeExact(value, item);
+			} catch (ClassCastException | NullPointerException e) {
+				throw new IllegalArgumentException(e.getLocalizedMessage(), e);
+			} catch (RuntimeException | Error e) {
+				throw e;
+			} catch (Throwable e) {
+				throw new IllegalArgumentException(e.getLocalizedMessage(), e);
+			}
+		}
+	}
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2021 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+
+package org.ic4j.candid.pojo;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.Objects;
+
+// Parameterized field type written out by generated codecs, equal to the one reflection returns
+public final class PojoParameterizedType implements ParameterizedType {
+	final Class<?> rawType;
+	final Type[] actualTypeArguments;
+
+	PojoParameterizedType(Class<?> rawType, Type[] actualTypeArguments) {
+		this.rawType = rawType;
+		this.actualTypeArguments = actualTypeArguments;
+	}
+
+	public static ParameterizedType create(Class<?> rawType, Type... actualTypeArguments) {
+		return new PojoParameterizedType(rawType, actualTypeArguments.clone());
+	}
+
+	@Override
+	public Type[] getActualTypeArguments() {
+		return this.actualTypeArguments.clone();
+	}
+
+	@Override
+	public Type getRawType() {
+		return this.rawType;
+	}
+
+	@Override
+	public Type getOwnerType() {
+		return this.rawType.getDeclaringClass();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+
+		if (!(obj instanceof ParameterizedType))
+			return false;
+
+		ParameterizedType other = (ParameterizedType) obj;
+
+		return this.rawType.equals(other.getRawType()) && Objects.equals(this.getOwnerType(), other.getOwnerType())
+				&& Arrays.equals(this.actualTypeArguments, other.getActualTypeArguments());
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(this.actualTypeArguments) ^ Objects.hashCode(this.getOwnerType()) ^ this.rawType.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder(this.rawType.getName());
+
+		if (this.actualTypeArguments.length > 0) {
+			builder.append('<');
+
+			for (int i = 0; i < this.actualTypeArguments.length; i++)
+				builder.append(i == 0 ? "" : ", ").append(this.actualTypeArguments[i].getTypeName());
+
+			builder.append('>');
+		}
+
+		return builder.toString();
+	}
+}
@@ -16,7 +16,6 @@
 
 package org.ic4j.candid.pojo;
 
-import java.lang.reflect.Field;
 import java.lang.reflect.ParameterizedType;
 import java.math.BigDecimal;
 import java.time.Duration;
@@ -28,10 +27,6 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.TreeMap;
 
-import org.ic4j.candid.annotations.Id;
-import org.ic4j.candid.annotations.Ignore;
-import org.ic4j.candid.annotations.Modes;
-import org.ic4j.candid.annotations.Name;
 import org.ic4j.candid.parser.IDLType;
 import org.ic4j.candid.parser.IDLValue;
 import org.ic4j.candid.types.Label;
@@ -108,7 +103,17 @@ public final class PojoSerializer implements ObjectSerializer {
 			else if (value instanceof byte[])
 			{
 				idlType = IDLType.createType(Type.VEC, Type.NAT8);
-				idlValue = IDLValue.create(ArrayUtils.toObject((byte[])value), idlType);				
+				idlValue = IDLValue.create(value, idlType);				
+			}
+			else if (value.getClass().getComponentType().isPrimitive())
+			{
+				// primitive arrays are serialized in bulk
+				if(this.idlType.isPresent() && this.idlType.get().getType() == Type.VEC)
+					idlType = this.idlType.get();
+				else
+					idlType = IDLType.createType(value.getClass());
+				
+				idlValue = IDLValue.create(value, idlType);
 			}
 			else
 			{
@@ -229,28 +234,10 @@ public final class PojoSerializer implements ObjectSerializer {
 		Map<Label, Object> valueMap =  new TreeMap<Label, Object>();
 		Map<Label,IDLType> typeMap = new TreeMap<Label,IDLType>();
 		
-		Field[] fields = valueClass.getDeclaredFields();
+		PojoMetadata metadata = PojoMetadata.get(valueClass);
 		
-		for(Field field : fields)
+		for(PojoMetadata.FieldMetadata field : metadata.getFields())
 		{			
-			if(field.isAnnotationPresent(Ignore.class))
-				continue;
-			
-			if(field.isEnumConstant())
-				continue;
-			
-			field.setAccessible(true);
-			
-			String name = field.getName();
-			if(name.startsWith("this$"))
-				continue;
-			
-			if(name.startsWith("$VALUES"))
-				continue;			
-			
-			if(name.startsWith("ENUM$VALUES"))
-				continue;			
-			
 			Class typeClass = field.getType();
 			
 			Object item = null;
@@ -276,17 +263,7 @@ public final class PojoSerializer implements ObjectSerializer {
 			
 			IDLType fieldType;
 			
-			if(field.isAnnotationPresent(Name.class))
-				name = field.getAnnotation(Name.class).value();
-			
-			Label label;
-			if (field.isAnnotationPresent(Id.class))
-			{
-				int id = field.getAnnotation(Id.class).value();
-				label = Label.createIdLabel((long) id);
-			}
-			else
-				label = Label.createNamedLabel((String)name);
+			Label label = field.getLabel();
 			
 			if(item == null)
 			{
@@ -322,8 +299,21 @@ public final class PojoSerializer implements ObjectSerializer {
 				isOptional = true;
 			}
 			
-			if(field.isAnnotationPresent(org.ic4j.candid.annotations.Field.class))
-				fieldType = IDLType.createType(field.getAnnotation(org.ic4j.candid.annotations.Field.class).value());
+			// handle primitive arrays, serialized in bulk
+			if(isArray && typeClass.isArray() && typeClass.getComponentType().isPrimitive() && field.getAnnotatedType() == null)
+			{
+				if(idlType != null && (idlType.getType() == Type.RECORD || idlType.getType() == Type.VARIANT) && idlType.getTypeMap().containsKey(label))
+					fieldType = idlType.getTypeMap().get(label);
+				else
+					fieldType = IDLType.createType(typeClass);
+				
+				typeMap.put(label, fieldType);	
+				valueMap.put(label, item);
+				continue;
+			}
+			
+			if(field.getAnnotatedType() != null)
+				fieldType = IDLType.createType(field.getAnnotatedType());
 			else if(IDLType.isDefaultType(typeClass) || Func.class.isAssignableFrom(typeClass) || Service.class.isAssignableFrom(typeClass))
 			{
 				// if type is defined in IDLType
@@ -336,14 +326,11 @@ public final class PojoSerializer implements ObjectSerializer {
 				// handle Func type
 				if(fieldType.getType() == Type.FUNC)
 				{
-					if (field.isAnnotationPresent(Modes.class))
+					Mode[] modes = field.getModes();
+					
+					if(modes.length > 0)
 					{
-						Mode[] modes = field.getAnnotation(Modes.class).value();
-						
-						if(modes.length > 0)
-						{
-							fieldType.modes.add(modes[0]);
-						}
+						fieldType.modes.add(modes[0]);
 					}
 				}
 				typeMap.put(label, fieldType);	
@@ -356,14 +343,11 @@ public final class PojoSerializer implements ObjectSerializer {
 			// handle Func type
 			if(fieldType.getType() == Type.FUNC)
 			{
-				if (field.isAnnotationPresent(Modes.class))
+				Mode[] modes = field.getModes();
+				
+				if(modes.length > 0)
 				{
-					Mode[] modes = field.getAnnotation(Modes.class).value();
-					
-					if(modes.length > 0)
-					{
-						fieldType.modes.add(modes[0]);
-					}
+					fieldType.modes.add(modes[0]);
 				}
 			}	
 			
@@ -475,17 +459,7 @@ public final class PojoSerializer implements ObjectSerializer {
 		if(valueClass.isEnum())
 		{
 			parentType = Type.VARIANT;
-			Enum enumValue = (Enum)value;
-			
-			String name = enumValue.name();
-			
-			try {
-				if (valueClass.getField(name).isAnnotationPresent(Name.class))
-					name = valueClass.getField(name).getAnnotation(Name.class).value();					
-			} catch (NoSuchFieldException | SecurityException e) {
-			}
-			
-			Label enumLabel = Label.createNamedLabel(name);
+			Label enumLabel = metadata.getConstantLabel((Enum)value);
 			// if there is no Enum value, set it to null
 			if(!valueMap.containsKey(enumLabel))
 			{
@@ -16,7 +16,6 @@
 
 package org.ic4j.candid.pojo;
 
-import java.lang.reflect.Field;
 import java.lang.reflect.ParameterizedType;
 import java.time.Duration;
 import java.util.Date;
@@ -27,10 +26,6 @@ import java.util.Optional;
 import java.util.TreeMap;
 
 import org.apache.commons.lang3.ClassUtils;
-import org.ic4j.candid.annotations.Id;
-import org.ic4j.candid.annotations.Ignore;
-import org.ic4j.candid.annotations.Modes;
-import org.ic4j.candid.annotations.Name;
 import org.ic4j.candid.parser.IDLType;
 import org.ic4j.candid.types.Label;
 import org.ic4j.candid.types.Mode;
@@ -71,28 +66,16 @@ public class PojoUtils {
 		if(Duration.class.isAssignableFrom(valueClass))			
 			return org.ic4j.types.Duration.getIDLType();	
 
+		// introspected types are resolved once per class, callers get their own copy
+		PojoMetadata metadata = PojoMetadata.get(valueClass);
+		
+		if(metadata.idlType != null)
+			return metadata.idlType.copy();
+		
 		Map<Label,IDLType> typeMap = new TreeMap<Label,IDLType>();
-
-		Field[] fields = valueClass.getDeclaredFields();		
 		
-		for(Field field : fields)
+		for(PojoMetadata.FieldMetadata field : metadata.getFields())
 		{
-			if(field.isAnnotationPresent(Ignore.class))
-				continue;
-			
-			if(field.isEnumConstant())
-				continue;			
-			
-			String name = field.getName();
-			if(name.startsWith("this$"))
-				continue;
-			
-			if(name.startsWith("$VALUES"))
-				continue;			
-			
-			if(name.startsWith("ENUM$VALUES"))
-				continue;			
-			
 			Class fieldClass = field.getType();	
 			
 			if(fieldClass.isPrimitive())
@@ -100,17 +83,15 @@ public class PojoUtils {
 			
 			IDLType fieldType = getIDLType(fieldClass);
 			
-			if(field.isAnnotationPresent(Name.class))
-				name = field.getAnnotation(Name.class).value();
+			Label label = field.getLabel();
 			
-			Label label;
-			if (field.isAnnotationPresent(Id.class))
+			// handle primitive arrays, element type is defined by the component class
+			if(fieldClass.isArray() && fieldClass.getComponentType().isPrimitive() && field.getAnnotatedType() == null)
 			{
-				int id = field.getAnnotation(Id.class).value();
-				label = Label.createIdLabel((long) id);
+				typeMap.put(label, IDLType.createType(fieldClass));
+				
+				continue;
 			}
-			else
-				label = Label.createNamedLabel((String)name);			
 						
 			boolean isArray = false;
 			
@@ -129,8 +110,8 @@ public class PojoUtils {
 				isOptional = true;
 			}
 			
-			if(field.isAnnotationPresent(org.ic4j.candid.annotations.Field.class))
-				fieldType = IDLType.createType(field.getAnnotation(org.ic4j.candid.annotations.Field.class).value());
+			if(field.getAnnotatedType() != null)
+				fieldType = IDLType.createType(field.getAnnotatedType());
 			else if(IDLType.isDefaultType(fieldClass) || GregorianCalendar.class.isAssignableFrom(fieldClass) || Date.class.isAssignableFrom(fieldClass)
 					|| Func.class.isAssignableFrom(fieldClass) || Service.class.isAssignableFrom(fieldClass))
 			{
@@ -139,14 +120,11 @@ public class PojoUtils {
 				// handle Func type
 				if(fieldType.getType() == Type.FUNC)
 				{
-					if (field.isAnnotationPresent(Modes.class))
+					Mode[] modes = field.getModes();
+					
+					if(modes.length > 0)
 					{
-						Mode[] modes = field.getAnnotation(Modes.class).value();
-						
-						if(modes.length > 0)
-						{
-							fieldType.modes.add(modes[0]);
-						}
+						fieldType.modes.add(modes[0]);
 					}
 				}
 				
@@ -188,14 +166,11 @@ public class PojoUtils {
 			// handle Func type
 			if(fieldType.getType() == Type.FUNC)
 			{
-				if (field.isAnnotationPresent(Modes.class))
+				Mode[] modes = field.getModes();
+				
+				if(modes.length > 0)
 				{
-					Mode[] modes = field.getAnnotation(Modes.class).value();
-					
-					if(modes.length > 0)
-					{
-						fieldType.modes.add(modes[0]);
-					}
+					fieldType.modes.add(modes[0]);
 				}
 			}
 			
@@ -209,21 +184,7 @@ public class PojoUtils {
 		
 		if(valueClass.isEnum()) 
 		{
-			Class<Enum> enumClass = (Class<Enum>)valueClass;
-			Enum[] constants = enumClass.getEnumConstants();
-			
-			for (Enum constant : constants) {
-				String name = constant.name();
-				
-				try {
-					if (enumClass.getField(name).isAnnotationPresent(Name.class))
-						name = enumClass.getField(name).getAnnotation(Name.class).value();					
-				} catch (NoSuchFieldException | SecurityException e) {
-					continue;
-				}
-				
-				Label namedLabel = Label.createNamedLabel(name);
-
+			for (Label namedLabel : metadata.constantLabels) {
 				if (!typeMap.containsKey(namedLabel))
 					typeMap.put(namedLabel, null);
 			}			
@@ -237,6 +198,8 @@ public class PojoUtils {
 		
 		idlType.setJavaType(valueClass);
 		
-		return idlType;		
+		metadata.idlType = idlType;
+		
+		return idlType.copy();		
 	}
 }
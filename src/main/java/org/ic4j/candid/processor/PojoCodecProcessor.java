@@ -0,0 +1,414 @@
+/*
+ * Copyright 2021 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+
+package org.ic4j.candid.processor;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+
+import org.ic4j.candid.annotations.Id;
+import org.ic4j.candid.annotations.Ignore;
+import org.ic4j.candid.annotations.Modes;
+import org.ic4j.candid.annotations.Name;
+import org.ic4j.candid.pojo.PojoCodec;
+import org.ic4j.candid.pojo.PojoParameterizedType;
+import org.ic4j.candid.types.Label;
+import org.ic4j.candid.types.Mode;
+import org.ic4j.candid.types.Type;
+
+// Generates a PojoCodec for every class with Candid annotated fields, enable with -processor. The codecs
+// are registered in META-INF/services and loaded by PojoMetadata with ServiceLoader
+@SupportedAnnotationTypes({ "org.ic4j.candid.annotations.Name", "org.ic4j.candid.annotations.Id",
+		"org.ic4j.candid.annotations.Field", "org.ic4j.candid.annotations.Modes",
+		"org.ic4j.candid.annotations.Ignore" })
+public final class PojoCodecProcessor extends AbstractProcessor {
+	static final String SERVICE_FILE = "META-INF/services/" + PojoCodec.class.getName();
+
+	// qualified codec names, written to the service file in the last round
+	final Set<String> generated = new LinkedHashSet<String>();
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		if (roundEnv.processingOver()) {
+			if (!this.generated.isEmpty())
+				this.writeServiceFile();
+
+			return false;
+		}
+
+		Set<TypeElement> classes = new LinkedHashSet<TypeElement>();
+
+		for (TypeElement annotation : annotations)
+			for (Element element : roundEnv.getElementsAnnotatedWith(annotation))
+				if (element.getKind() == ElementKind.FIELD)
+					classes.add((TypeElement) element.getEnclosingElement());
+
+		for (TypeElement type : classes) {
+			if (!isSupported(type))
+				continue;
+
+			// the codec has to cover the whole class, otherwise the class keeps the reflective path
+			String unsupported = this.getUnsupportedReason(type);
+
+			if (unsupported != null) {
+				this.processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+						"Candid codec not generated, " + unsupported, type);
+				continue;
+			}
+
+			String packageName = this.processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+			String codecClass = packageName.isEmpty() ? getCodecName(type) : packageName + "." + getCodecName(type);
+
+			if (!this.generated.add(codecClass))
+				continue;
+
+			try {
+				this.generate(type);
+			} catch (IOException e) {
+				this.generated.remove(codecClass);
+				this.processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+						"Cannot generate Candid codec: " + e.getLocalizedMessage(), type);
+			}
+		}
+
+		// annotations are left to other processors
+		return false;
+	}
+
+	void writeServiceFile() {
+		try {
+			FileObject file = this.processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", SERVICE_FILE);
+
+			try (PrintWriter out = new PrintWriter(file.openWriter())) {
+				for (String codecName : this.generated)
+					out.println(codecName);
+			}
+		} catch (IOException e) {
+			this.processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+					"Cannot write " + SERVICE_FILE + ": " + e.getLocalizedMessage());
+		}
+	}
+
+	// concrete classes reachable from their package, enums keep the reflective path
+	static boolean isSupported(TypeElement type) {
+		if (type.getKind() != ElementKind.CLASS)
+			return false;
+
+		if (type.getModifiers().contains(Modifier.ABSTRACT))
+			return false;
+
+		for (Element element = type; element instanceof TypeElement; element = element.getEnclosingElement()) {
+			TypeElement enclosing = (TypeElement) element;
+
+			if (enclosing.getModifiers().contains(Modifier.PRIVATE))
+				return false;
+
+			if (enclosing.getNestingKind() == NestingKind.LOCAL || enclosing.getNestingKind() == NestingKind.ANONYMOUS)
+				return false;
+
+			if (enclosing.getNestingKind() == NestingKind.MEMBER && !enclosing.getModifiers().contains(Modifier.STATIC))
+				return false;
+		}
+
+		return true;
+	}
+
+	// null if the generated code can construct the class and read and write all its fields
+	String getUnsupportedReason(TypeElement type) {
+		if (!hasDefaultConstructor(type))
+			return "missing public default constructor";
+
+		for (VariableElement field : getFields(type)) {
+			if (field.getModifiers().contains(Modifier.PRIVATE) || field.getModifiers().contains(Modifier.FINAL))
+				return "field " + field.getSimpleName() + " is private or final";
+
+			if (this.getTypeLiteral(field.asType()) == null)
+				return "field " + field.getSimpleName() + " has a type variable or wildcard type";
+		}
+
+		return null;
+	}
+
+	// serialized fields in declaration order, static fields are not serialized
+	static List<VariableElement> getFields(TypeElement type) {
+		List<VariableElement> fields = new ArrayList<VariableElement>();
+
+		for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements()))
+			if (field.getAnnotation(Ignore.class) == null && !field.getModifiers().contains(Modifier.STATIC))
+				fields.add(field);
+
+		return fields;
+	}
+
+	// same constructor PojoMetadata looks up by reflection
+	static boolean hasDefaultConstructor(TypeElement type) {
+		for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements()))
+			if (constructor.getParameters().isEmpty() && constructor.getModifiers().contains(Modifier.PUBLIC))
+				return true;
+
+		return false;
+	}
+
+	static Label getLabel(VariableElement field) {
+		if (field.getAnnotation(Id.class) != null)
+			return Label.createIdLabel((long) field.getAnnotation(Id.class).value());
+
+		return Label.createNamedLabel(getName(field));
+	}
+
+	static String getName(VariableElement field) {
+		if (field.getAnnotation(Name.class) != null)
+			return field.getAnnotation(Name.class).value();
+
+		return field.getSimpleName().toString();
+	}
+
+	// Outer_Inner for nested classes, matches the lookup in PojoMetadata
+	static String getCodecName(TypeElement type) {
+		String name = type.getSimpleName().toString();
+
+		for (Element element = type.getEnclosingElement(); element instanceof TypeElement; element = element
+				.getEnclosingElement())
+			name = element.getSimpleName() + "_" + name;
+
+		return name + PojoCodec.SUFFIX;
+	}
+
+	// expression of the java.lang.reflect.Type reflection returns, null for type variables and wildcards
+	String getTypeLiteral(TypeMirror type) {
+		switch (type.getKind()) {
+		case BOOLEAN:
+		case BYTE:
+		case SHORT:
+		case INT:
+		case LONG:
+		case CHAR:
+		case FLOAT:
+		case DOUBLE:
+			return type + ".class";
+		case ARRAY:
+			// generic array types are not written out
+			TypeMirror component = ((ArrayType) type).getComponentType();
+
+			while (component.getKind() == TypeKind.ARRAY)
+				component = ((ArrayType) component).getComponentType();
+
+			if (component.getKind() == TypeKind.DECLARED && !((DeclaredType) component).getTypeArguments().isEmpty())
+				return null;
+
+			if (component.getKind() != TypeKind.DECLARED && !component.getKind().isPrimitive())
+				return null;
+
+			return this.processingEnv.getTypeUtils().erasure(type) + ".class";
+		case DECLARED:
+			List<? extends TypeMirror> arguments = ((DeclaredType) type).getTypeArguments();
+			String raw = this.processingEnv.getTypeUtils().erasure(type) + ".class";
+
+			if (arguments.isEmpty())
+				return raw;
+
+			StringBuilder builder = new StringBuilder(PojoParameterizedType.class.getName() + ".create(" + raw);
+
+			for (TypeMirror argument : arguments) {
+				String literal = this.getTypeLiteral(argument);
+
+				if (literal == null)
+					return null;
+
+				builder.append(", ").append(literal);
+			}
+
+			return builder.append(")").toString();
+		default:
+			return null;
+		}
+	}
+
+	String getCastType(TypeMirror type) {
+		if (type.getKind().isPrimitive())
+			return this.processingEnv.getTypeUtils().boxedClass((PrimitiveType) type).getQualifiedName().toString();
+
+		return this.processingEnv.getTypeUtils().erasure(type).toString();
+	}
+
+	// arrays are copied, the nested mode arrays are shared
+	void printGetter(PrintWriter out, String type, String method, String constant) {
+		out.println("\tpublic " + type + " " + method + "() {");
+		out.println("\t\treturn " + constant + ".clone();");
+		out.println("\t}");
+		out.println();
+	}
+
+	static String escape(String value) {
+		return value.replace("\\", "\\\\").replace("\"", "\\\"");
+	}
+
+	void generate(TypeElement type) throws IOException {
+		String packageName = this.processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+		String codecName = getCodecName(type);
+		String pojoName = this.processingEnv.getTypeUtils().erasure(type.asType()).toString();
+
+		List<VariableElement> fields = getFields(type);
+
+		List<Integer> sorted = new ArrayList<Integer>();
+
+		for (int i = 0; i < fields.size(); i++)
+			sorted.add(i);
+
+		sorted.sort((a, b) -> Long.compare(getLabel(fields.get(a)).getIdValue(), getLabel(fields.get(b)).getIdValue()));
+
+		JavaFileObject file = this.processingEnv.getFiler()
+				.createSourceFile(packageName.isEmpty() ? codecName : packageName + "." + codecName, type);
+
+		try (PrintWriter out = new PrintWriter(file.openWriter())) {
+			if (!packageName.isEmpty()) {
+				out.println("package " + packageName + ";");
+				out.println();
+			}
+
+			out.println("// Generated by " + PojoCodecProcessor.class.getName() + ", do not edit");
+			out.println("@SuppressWarnings({ \"unchecked\", \"rawtypes\" })");
+			out.println("public final class " + codecName + " implements " + PojoCodec.class.getName() + "<"
+					+ pojoName + "> {");
+
+			out.print("\tstatic final String[] FIELD_NAMES = {");
+			for (int i = 0; i < fields.size(); i++)
+				out.print((i == 0 ? " " : ", ") + "\"" + escape(getName(fields.get(i))) + "\"");
+			out.println(" };");
+
+			out.print("\tstatic final " + Label.class.getName() + "[] LABELS = {");
+			for (int i = 0; i < fields.size(); i++) {
+				VariableElement field = fields.get(i);
+
+				if (field.getAnnotation(Id.class) != null)
+					out.print((i == 0 ? " " : ", ") + Label.class.getName() + ".createIdLabel("
+							+ field.getAnnotation(Id.class).value() + "L)");
+				else
+					out.print((i == 0 ? " " : ", ") + Label.class.getName() + ".createNamedLabel(\""
+							+ escape(getName(field)) + "\")");
+			}
+			out.println(" };");
+
+			out.print("\tstatic final Class<?>[] FIELD_CLASSES = {");
+			for (int i = 0; i < fields.size(); i++)
+				out.print((i == 0 ? " " : ", ") + this.processingEnv.getTypeUtils().erasure(fields.get(i).asType())
+						+ ".class");
+			out.println(" };");
+
+			out.print("\tstatic final java.lang.reflect.Type[] GENERIC_TYPES = {");
+			for (int i = 0; i < fields.size(); i++)
+				out.print((i == 0 ? " " : ", ") + this.getTypeLiteral(fields.get(i).asType()));
+			out.println(" };");
+
+			out.print("\tstatic final " + Type.class.getName() + "[] ANNOTATED_TYPES = {");
+			for (int i = 0; i < fields.size(); i++) {
+				org.ic4j.candid.annotations.Field annotation = fields.get(i)
+						.getAnnotation(org.ic4j.candid.annotations.Field.class);
+
+				out.print((i == 0 ? " " : ", ")
+						+ (annotation == null ? "null" : Type.class.getName() + "." + annotation.value().name()));
+			}
+			out.println(" };");
+
+			out.print("\tstatic final " + Mode.class.getName() + "[][] MODES = {");
+			for (int i = 0; i < fields.size(); i++) {
+				Modes annotation = fields.get(i).getAnnotation(Modes.class);
+
+				out.print((i == 0 ? " " : ", ") + "{");
+				if (annotation != null)
+					for (int j = 0; j < annotation.value().length; j++)
+						out.print((j == 0 ? " " : ", ") + Mode.class.getName() + "." + annotation.value()[j].name());
+				out.print(" }");
+			}
+			out.println(" };");
+
+			out.print("\tstatic final int[] SORTED_FIELDS = {");
+			for (int i = 0; i < sorted.size(); i++)
+				out.print((i == 0 ? " " : ", ") + sorted.get(i));
+			out.println(" };");
+			out.println();
+
+			out.println("\tpublic Class<" + pojoName + "> getPojoClass() {");
+			out.println("\t\treturn " + pojoName + ".class;");
+			out.println("\t}");
+			out.println();
+
+			this.printGetter(out, "String[]", "getFieldNames", "FIELD_NAMES");
+			this.printGetter(out, Label.class.getName() + "[]", "getLabels", "LABELS");
+			this.printGetter(out, "Class<?>[]", "getFieldClasses", "FIELD_CLASSES");
+			this.printGetter(out, "java.lang.reflect.Type[]", "getGenericTypes", "GENERIC_TYPES");
+			this.printGetter(out, Type.class.getName() + "[]", "getAnnotatedTypes", "ANNOTATED_TYPES");
+			this.printGetter(out, Mode.class.getName() + "[][]", "getModes", "MODES");
+			this.printGetter(out, "int[]", "getSortedFields", "SORTED_FIELDS");
+
+			out.println("\tpublic " + pojoName + " newInstance() {");
+			out.println("\t\treturn new " + pojoName + "();");
+			out.println("\t}");
+			out.println();
+
+			out.println("\tpublic Object get(" + pojoName + " value, int field) {");
+			out.println("\t\tswitch (field) {");
+			for (int i = 0; i < fields.size(); i++)
+				out.println("\t\tcase " + i + ": return value." + fields.get(i).getSimpleName() + ";");
+			out.println("\t\tdefault: throw new IndexOutOfBoundsException(\"Field \" + field);");
+			out.println("\t\t}");
+			out.println("\t}");
+			out.println();
+
+			out.println("\tpublic void set(" + pojoName + " value, int field, Object item) {");
+			out.println("\t\tswitch (field) {");
+			for (int i = 0; i < fields.size(); i++)
+				out.println("\t\tcase " + i + ": value." + fields.get(i).getSimpleName() + " = ("
+						+ this.getCastType(fields.get(i).asType()) + ") item; break;");
+			out.println("\t\tdefault: throw new IndexOutOfBoundsException(\"Field \" + field);");
+			out.println("\t\t}");
+			out.println("\t}");
+			out.println("}");
+		}
+	}
+}
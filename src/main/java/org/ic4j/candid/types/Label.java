@@ -1,24 +1,56 @@
 package org.ic4j.candid.types;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import org.ic4j.candid.CandidError;
 import org.ic4j.candid.IDLUtils;
 
 public class Label implements Comparable<Label> {
+	// interned named labels, field names are usually a small fixed set
+	static final int MAX_NAMED_LABELS = 8192;
+	static final Map<String, Label> NAMED_LABELS = new ConcurrentHashMap<String, Label>();
+
 	Object value;
 	LabelType type;
+	// id is computed once, NAMED labels hash the name
+	long id;
 
 	public static Label createIdLabel(Long id) {
 		Label label = new Label();
 		label.type = LabelType.ID;
 		label.value = id;
+		label.id = id;
 
 		return label;
 	}
 
 	public static Label createNamedLabel(String id) {
+		if (id == null)
+			return newNamedLabel(id);
+
+		Label label = NAMED_LABELS.get(id);
+
+		if (label != null)
+			return label;
+
+		label = newNamedLabel(id);
+
+		if (NAMED_LABELS.size() < MAX_NAMED_LABELS) {
+			Label previous = NAMED_LABELS.putIfAbsent(id, label);
+
+			if (previous != null)
+				return previous;
+		}
+
+		return label;
+	}
+
+	static Label newNamedLabel(String id) {
 		Label label = new Label();
 		label.type = LabelType.NAMED;
 		label.value = id;
+		label.id = IDLUtils.idlHash(id);
 
 		return label;
 	}
@@ -27,6 +59,7 @@ public class Label implements Comparable<Label> {
 		Label label = new Label();
 		label.type = LabelType.UNNAMED;
 		label.value = id;
+		label.id = id;
 
 		return label;
 	}
@@ -47,13 +80,17 @@ public class Label implements Comparable<Label> {
 		case UNNAMED:
 			return (Long) this.value;
 		case NAMED:
-			return IDLUtils.idlHash((String) this.value);
+			return this.id;
 		default:
 			throw CandidError.create(CandidError.CandidErrorCode.CUSTOM, "Unrecognized Label Type");
 		}
 
 	}
 	
+	public long getIdValue() {
+		return this.id;
+	}
+	
 	public enum LabelType {
 		ID, NAMED, UNNAMED;
 	}	
@@ -64,24 +101,24 @@ public class Label implements Comparable<Label> {
 			return false;
 
 		if (other instanceof Label)			
-			return (this.getId().equals(((Label) other).getId()));
+			return this.id == ((Label) other).id;
 		else if (other instanceof Integer)
 			return (this.getId().equals(other) );
 		else if (other instanceof String)
-			return (this.getId().equals(IDLUtils.idlHash((String) other)));
+			return this.id == IDLUtils.idlHash((String) other);
 		else
 			return false;
 	}
 
 	@Override
 	public int hashCode() {
-		return (int)this.getId().longValue();
+		return (int) this.id;
 	}
 
 
 	@Override
 	public int compareTo(Label other) {
-		return Long.compare(this.getId(), other.getId());
+		return Long.compare(this.id, other.id);
 	}
 
 	@Override
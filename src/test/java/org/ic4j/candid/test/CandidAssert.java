@@ -178,6 +178,11 @@ abstract class CandidAssert {
 			LOG.info(input + ":" + "null");
 
 		Assertions.assertEquals(value, outArgs.getArgs().get(0).getValue());
+		
+		// compiled decoder plan gives the same value
+		outArgs = IDLArgs.fromBytesCompiled(bytes, null);
+		
+		Assertions.assertEquals(value, outArgs.getArgs().get(0).getValue());
 
 	}
 
@@ -237,5 +242,21 @@ abstract class CandidAssert {
 			LOG.info(message);
 			Assertions.assertTrue(t.getClass() == exClass);
 		}
+		
+		// compiled decoder plan fails the same way
+		try {
+			byte[] bytes = getBytes(input);
+			IDLArgs outArgs = IDLArgs.fromBytesCompiled(bytes, null);
+			Assertions.fail(message);
+		} catch (DecoderException e) {
+			LOG.error(e.getLocalizedMessage(), e);
+			Assertions.fail(e.getMessage());
+		} catch (AssertionFailedError e) {
+			throw e;
+		} catch (Throwable t) {
+			LOG.info(t.getLocalizedMessage());
+			LOG.info(message);
+			Assertions.assertTrue(t.getClass() == exClass);
+		}
 	}
 }
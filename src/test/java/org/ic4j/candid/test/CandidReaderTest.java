@@ -0,0 +1,112 @@
+package org.ic4j.candid.test;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+import org.ic4j.candid.CandidReader;
+import org.ic4j.candid.CandidReader.Event;
+import org.ic4j.candid.IDLUtils;
+import org.ic4j.candid.parser.IDLArgs;
+import org.ic4j.candid.parser.IDLValue;
+import org.ic4j.candid.types.Label;
+import org.ic4j.types.Principal;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class CandidReaderTest {
+	static final Logger LOG = LoggerFactory.getLogger(CandidReaderTest.class);
+
+	@Test
+	public void test() {
+		Long[] series = new Long[1000];
+
+		for (int i = 0; i < series.length; i++)
+			series[i] = Long.valueOf(i);
+
+		Map<Label, Object> record = new TreeMap<Label, Object>();
+
+		record.put(Label.createNamedLabel("id"), Long.valueOf(42));
+		record.put(Label.createNamedLabel("name"), "candid");
+		record.put(Label.createNamedLabel("series"), series);
+		record.put(Label.createNamedLabel("owner"), Principal.fromString("w7x7r-cok77-xa"));
+		record.put(Label.createNamedLabel("amount"), Optional.of(BigInteger.valueOf(1000000)));
+
+		List<IDLValue> args = new ArrayList<IDLValue>();
+
+		args.add(IDLValue.create(record));
+		args.add(IDLValue.create(Boolean.TRUE));
+
+		byte[] buf = IDLArgs.create(args).toBytes();
+
+		// extract two fields, skip everything else
+		CandidReader reader = CandidReader.create(buf);
+
+		Assertions.assertEquals(Event.START_RECORD, reader.next());
+		Assertions.assertEquals(5, reader.getLength());
+
+		String name = null;
+		Principal owner = null;
+
+		while (reader.next() == Event.FIELD) {
+			long id = reader.getFieldId();
+
+			if (id == IDLUtils.idlHash("name")) {
+				Assertions.assertEquals(Event.TEXT, reader.next());
+				name = reader.getText();
+			} else if (id == IDLUtils.idlHash("owner")) {
+				Assertions.assertEquals(Event.PRINCIPAL, reader.next());
+				owner = reader.getPrincipal();
+			} else
+				reader.skipValue();
+		}
+
+		Assertions.assertEquals(Event.END_RECORD, reader.getEvent());
+		Assertions.assertEquals("candid", name);
+		Assertions.assertEquals(Principal.fromString("w7x7r-cok77-xa"), owner);
+
+		Assertions.assertEquals(Event.BOOL, reader.next());
+		Assertions.assertTrue(reader.getBoolean());
+		Assertions.assertEquals(Event.END_MESSAGE, reader.next());
+		Assertions.assertFalse(reader.hasNext());
+
+		// walk every event from a stream
+		reader = CandidReader.create(new ByteArrayInputStream(buf));
+
+		int count = 0;
+		long sum = 0;
+
+		while (reader.hasNext()) {
+			Event event = reader.next();
+
+			if (event == Event.INT64) {
+				sum += reader.getLong();
+				count++;
+			}
+
+			if (event == Event.NAT || event == Event.INT)
+				Assertions.assertEquals(BigInteger.valueOf(1000000), reader.getBigInteger());
+		}
+
+		// id and series elements
+		Assertions.assertEquals(series.length + 1, count);
+		Assertions.assertEquals(42 + (series.length - 1) * series.length / 2, sum);
+
+		// skip the whole record subtree
+		reader = CandidReader.create(buf);
+
+		Assertions.assertEquals(Event.START_RECORD, reader.next());
+		reader.skipChildren();
+		Assertions.assertEquals(Event.END_RECORD, reader.getEvent());
+		Assertions.assertEquals(Event.BOOL, reader.next());
+		Assertions.assertEquals(Event.END_MESSAGE, reader.next());
+
+		LOG.info("Candid reader events verified");
+	}
+}
@@ -1,8 +1,13 @@
 package org.ic4j.candid.test;
 
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.math.BigInteger;
+import java.nio.channels.Channels;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -12,6 +17,11 @@ import java.util.TreeMap;
 import org.apache.commons.codec.DecoderException;
 import org.apache.commons.lang3.ArrayUtils;
 import org.ic4j.candid.CandidError;
+import org.ic4j.candid.IDLBuilder;
+import org.ic4j.candid.IDLDeserialize;
+import org.ic4j.candid.IDLUtils;
+import org.ic4j.candid.TypeSignature;
+import org.ic4j.candid.TypeTableCache;
 import org.ic4j.candid.parser.IDLArgs;
 import org.ic4j.candid.parser.IDLType;
 import org.ic4j.candid.parser.IDLValue;
@@ -252,6 +262,14 @@ public final class CandidTest extends CandidAssert{
 		assertValue("DIDL\\00\\01\\71\\00", new String(""));
 		assertValue("DIDL\\00\\01\\71\\06", "Motoko", new String("Motoko"));
 		assertValue("DIDL\\00\\01\\71\\03\\e2\\98\\83", new String("☃"));
+		
+		// field name hash over UTF-8 bytes
+		Assertions.assertEquals(5097222l, IDLUtils.idlHash("foo"));
+		// hash of the UTF-8 bytes, sum of byte * 223^(k-i) mod 2^32 as in the Candid spec
+		Assertions.assertEquals(11272781l, IDLUtils.idlHash("☃"));
+		Assertions.assertEquals(11272781l, IDLUtils.idlHash(new byte[] {(byte) 0xe2, (byte) 0x98, (byte) 0x83}, 0, 3));
+		Assertions.assertEquals(2669437015l, IDLUtils.idlHash("😀"));
+		Assertions.assertEquals(2669437015l, IDLUtils.idlHash(new StringBuilder("😀")));
 
 		// Principal
 		assertValue("DIDL\\00\\01\\68\\01\\00", Principal.fromString("aaaaa-aa"));
@@ -637,6 +655,360 @@ public final class CandidTest extends CandidAssert{
 			LOG.debug(ex.getLocalizedMessage(), ex);
 			Assertions.fail(ex.getLocalizedMessage());
 		}
+
+		// test large VEC argument, encoded by growable buffer
+		Long[] longArray = new Long[100000];
+		
+		for(int i = 0; i < longArray.length; i++)
+			longArray[i] = Long.valueOf(i) * 1000;
+		
+		args = new ArrayList<IDLValue>();
+
+		args.add(IDLValue.create(longArray));
+
+		idlArgs = IDLArgs.create(args);
+
+		buf = idlArgs.toBytes();
+		
+		Assertions.assertEquals(4 + 4 + 1 + longArray.length * Long.BYTES + 3, buf.length);
+		
+		outArgs = IDLArgs.fromBytes(buf);
+		
+		Assertions.assertArrayEquals(longArray, (Long[]) outArgs.getArgs().get(0).getValue());
+		
+		Assertions.assertArrayEquals(longArray, (Long[]) IDLArgs.fromBytesCompiled(buf, null).getArgs().get(0).getValue());
+		
+		// decode VEC directly into primitive array
+		IDLType longArrayType = IDLType.createType(Type.VEC, IDLType.createType(Type.INT64));
+		longArrayType.setJavaType(long[].class);
+		
+		IDLType[] longArrayTypes = {longArrayType};
+		
+		outArgs = IDLArgs.fromBytes(buf, longArrayTypes);
+		
+		Assertions.assertArrayEquals(ArrayUtils.toPrimitive(longArray), (long[]) outArgs.getArgs().get(0).getValue());
+		
+		// structurally equal types share one type table entry
+		args = new ArrayList<IDLValue>();
+		
+		for(int i = 0; i < 3; i++)
+		{
+			Map<Label, Object> recordValue = new TreeMap<Label, Object>();
+			
+			recordValue.put(Label.createNamedLabel("id"), Long.valueOf(i));
+			recordValue.put(Label.createNamedLabel("name"), "record" + i);
+			
+			args.add(IDLValue.create(recordValue));
+		}
+		
+		Assertions.assertEquals(args.get(0).getIDLType(), args.get(1).getIDLType());
+		Assertions.assertEquals(args.get(0).getIDLType().hashCode(), args.get(1).getIDLType().hashCode());
+		
+		byte[] recordBuf = IDLArgs.create(args).toBytes();
+		
+		// DIDL, one type table entry, three arguments of type 0
+		Assertions.assertEquals(1, recordBuf[4]);
+		Assertions.assertEquals(3, IDLArgs.fromBytes(recordBuf).getArgs().size());
+		
+		// deeply nested types are hashed over their whole structure
+		IDLType deepType = null;
+		IDLType otherDeepType = null;
+		Map<Label, Object> deepValue = null;
+		
+		for(int level = 200; level > 0; level--)
+		{
+			Map<Label, IDLType> deepTypeMap = new TreeMap<Label, IDLType>();
+			Map<Label, IDLType> otherDeepTypeMap = new TreeMap<Label, IDLType>();
+			Map<Label, Object> deepValueMap = new TreeMap<Label, Object>();
+			
+			deepTypeMap.put(Label.createNamedLabel("id"), IDLType.createType(Type.NAT64));
+			otherDeepTypeMap.put(Label.createNamedLabel("id"), IDLType.createType(level == 200 ? Type.NAT32 : Type.NAT64));
+			deepValueMap.put(Label.createNamedLabel("id"), Long.valueOf(level));
+			
+			if(deepType != null)
+			{
+				deepTypeMap.put(Label.createNamedLabel("child"), IDLType.createType(Type.OPT, deepType));
+				otherDeepTypeMap.put(Label.createNamedLabel("child"), IDLType.createType(Type.OPT, otherDeepType));
+				deepValueMap.put(Label.createNamedLabel("child"), Optional.of(deepValue));
+			}
+			
+			deepType = IDLType.createType(Type.RECORD, deepTypeMap);
+			otherDeepType = IDLType.createType(Type.RECORD, otherDeepTypeMap);
+			deepValue = deepValueMap;
+		}
+		
+		Assertions.assertNotEquals(deepType, otherDeepType);
+		Assertions.assertNotEquals(deepType.hashCode(), otherDeepType.hashCode());
+		
+		List<IDLValue> deepArgs = new ArrayList<IDLValue>();
+		deepArgs.add(IDLValue.create(deepValue, deepType));
+		
+		Assertions.assertEquals(deepValue, IDLArgs.fromBytes(IDLArgs.create(deepArgs).toBytes(), new IDLType[] {deepType})
+				.getArgs().get(0).getValue());
+		
+		// recursive types are equal to their unrolling and hash the same
+		Map<Label, IDLType> listTypeMap = new TreeMap<Label, IDLType>();
+		IDLType listType = IDLType.createType(Type.RECORD, listTypeMap);
+		listTypeMap.put(Label.createNamedLabel("head"), IDLType.createType(Type.NAT));
+		listTypeMap.put(Label.createNamedLabel("tail"), IDLType.createType(Type.OPT, listType));
+		
+		Map<Label, IDLType> unrolledTypeMap = new TreeMap<Label, IDLType>();
+		unrolledTypeMap.put(Label.createNamedLabel("head"), IDLType.createType(Type.NAT));
+		unrolledTypeMap.put(Label.createNamedLabel("tail"), IDLType.createType(Type.OPT, listType));
+		IDLType unrolledType = IDLType.createType(Type.RECORD, unrolledTypeMap);
+		
+		Assertions.assertEquals(listType, unrolledType);
+		Assertions.assertEquals(listType.hashCode(), unrolledType.hashCode());
+		
+		// encode with precompiled, cached type table
+		List<IDLType> recordTypes = new ArrayList<IDLType>();
+		
+		for(IDLValue arg : args)
+			recordTypes.add(arg.getIDLType());
+		
+		TypeSignature signature = TypeSignature.get(recordTypes);
+		
+		Assertions.assertSame(signature, TypeSignature.get(recordTypes));
+		Assertions.assertArrayEquals(recordBuf, IDLArgs.create(args).toBytes(signature));
+		
+		// values are encoded with the signature argument types, mismatches fail
+		List<IDLValue> longArgs = Collections.singletonList(IDLValue.create(5L));
+		
+		Assertions.assertArrayEquals(IDLArgs.create(Collections.singletonList(IDLValue.create(5L, IDLType.createType(Type.NAT64)))).toBytes(), 
+				IDLArgs.create(longArgs).toBytes(TypeSignature.get(IDLType.createType(Type.NAT64))));
+		
+		TypeSignature natSignature = TypeSignature.get(IDLType.createType(Type.NAT));
+		
+		Assertions.assertThrows(CandidError.class, () -> IDLArgs.create(longArgs).toBytes(natSignature));
+		Assertions.assertThrows(CandidError.class, () -> IDLArgs.create(Collections.singletonList(IDLValue.create(new Long[] {1l, 2l})))
+				.toBytes(TypeSignature.get(IDLType.createType(Type.VEC, IDLType.createType(Type.TEXT)))));
+		
+		// signatures are shared only by types with the same java types
+		IDLType pojoType = IDLType.createType(Type.RECORD, Collections.singletonMap(Label.createNamedLabel("bar"), IDLType.createType(Type.BOOL)));
+		IDLType mapType = pojoType.copy();
+		
+		pojoType.setJavaType(Pojo.class);
+		mapType.setJavaType(Map.class);
+		
+		Assertions.assertEquals(pojoType, mapType);
+		Assertions.assertSame(Pojo.class, TypeSignature.get(pojoType).getTypes().get(0).getJavaType());
+		Assertions.assertSame(Map.class, TypeSignature.get(mapType).getTypes().get(0).getJavaType());
+		
+		// decode with cached type table
+		TypeTableCache cache = TypeTableCache.create(8);
+		
+		for(int i = 0; i < 3; i++)
+		{
+			outArgs = IDLArgs.fromBytes(recordBuf, cache);
+			
+			Assertions.assertEquals((Object) args.get(2).getValue(), outArgs.getArgs().get(2).getValue());
+		}
+		
+		Assertions.assertEquals(1, cache.getMisses());
+		Assertions.assertEquals(2, cache.getHits());
+		Assertions.assertEquals(1, cache.size());
+		
+		// decode with compiled plan of the cached type table
+		outArgs = IDLArgs.fromBytesCompiled(recordBuf, cache);
+		
+		Assertions.assertEquals(3, outArgs.getArgs().size());
+		Assertions.assertEquals((Object) args.get(2).getValue(), outArgs.getArgs().get(2).getValue());
+		Assertions.assertEquals(args.get(2).getIDLType(), outArgs.getArgs().get(2).getIDLType());
+		Assertions.assertEquals(3, cache.getHits());
+		
+		// skip fields missing from expected type and reserved values
+		Map<Label, Object> wideRecord = new TreeMap<Label, Object>();
+		wideRecord.put(Label.createNamedLabel("id"), BigInteger.valueOf(7));
+		wideRecord.put(Label.createNamedLabel("blob"), new Long[] {1l, 2l, 3l});
+		wideRecord.put(Label.createNamedLabel("nested"), Optional.of("skipped"));
+		
+		args = new ArrayList<IDLValue>();
+
+		args.add(IDLValue.create(wideRecord));
+		args.add(IDLValue.create("reserved"));
+		
+		Map<Label, IDLType> narrowTypeMap = new TreeMap<Label, IDLType>();
+		narrowTypeMap.put(Label.createNamedLabel("id"), IDLType.createType(Type.NAT));
+		
+		IDLType[] expectedTypes = {IDLType.createType(Type.RECORD, narrowTypeMap), IDLType.createType(Type.RESERVED)};
+		
+		outArgs = IDLArgs.fromBytes(IDLArgs.create(args).toBytes(), expectedTypes);
+		
+		Map<Label, Object> narrowRecord = (Map<Label, Object>) outArgs.getArgs().get(0).getValue();
+		
+		Assertions.assertEquals(1, narrowRecord.size());
+		Assertions.assertEquals(BigInteger.valueOf(7), narrowRecord.get(Label.createNamedLabel("id")));
+		Assertions.assertEquals(Type.RESERVED, outArgs.getArgs().get(1).getType());
+		
+		// variant arms missing from expected type are rejected, except inside an opt
+		Map<Label, Object> unmappedVariant = new TreeMap<Label, Object>();
+		unmappedVariant.put(Label.createNamedLabel("other"), "unmapped");
+		
+		Map<Label, IDLType> wireVariantTypeMap = new TreeMap<Label, IDLType>();
+		wireVariantTypeMap.put(Label.createNamedLabel("other"), IDLType.createType(Type.TEXT));
+		
+		IDLType wireVariantType = IDLType.createType(Type.VARIANT, wireVariantTypeMap);
+		
+		Map<Label, IDLType> variantTypeMap = new TreeMap<Label, IDLType>();
+		variantTypeMap.put(Label.createNamedLabel("mapped"), IDLType.createType(Type.TEXT));
+		
+		IDLType expectedVariantType = IDLType.createType(Type.VARIANT, variantTypeMap);
+		
+		byte[] variantBuf = IDLArgs.create(Arrays.asList(IDLValue.create(unmappedVariant, wireVariantType))).toBytes();
+		
+		Assertions.assertThrows(CandidError.class, () -> IDLArgs.fromBytes(variantBuf, new IDLType[] {expectedVariantType}));
+		
+		byte[] optVariantBuf = IDLArgs.create(Arrays.asList(IDLValue.create(Optional.of(unmappedVariant), 
+				IDLType.createType(Type.OPT, wireVariantType)))).toBytes();
+		
+		outArgs = IDLArgs.fromBytes(optVariantBuf, new IDLType[] {IDLType.createType(Type.OPT, expectedVariantType)});
+		
+		Map<Label, Object> skippedVariant = ((Optional<Map<Label, Object>>) outArgs.getArgs().get(0).getValue()).get();
+		
+		Assertions.assertEquals(1, skippedVariant.size());
+		Assertions.assertNull(skippedVariant.get(Label.createNamedLabel("other")));
+		
+		// an expected record without fields keeps all wire fields
+		outArgs = IDLArgs.fromBytes(IDLArgs.create(args.subList(0, 1)).toBytes(), new IDLType[] {IDLType.createType(Type.RECORD)});
+		
+		Map<Label, Object> anyRecord = (Map<Label, Object>) outArgs.getArgs().get(0).getValue();
+		
+		Assertions.assertEquals(3, anyRecord.size());
+		Assertions.assertEquals(BigInteger.valueOf(7), anyRecord.get(Label.createNamedLabel("id")));
+		Assertions.assertEquals(Optional.of("skipped"), anyRecord.get(Label.createNamedLabel("nested")));
+		
+		// variant arm index follows the arms of the variant type
+		Map<Label, IDLType> statusTypeMap = new TreeMap<Label, IDLType>();
+		statusTypeMap.put(Label.createNamedLabel("ok"), IDLType.createType(Type.NAT));
+		statusTypeMap.put(Label.createNamedLabel("err"), IDLType.createType(Type.TEXT));
+		
+		IDLType statusType = IDLType.createType(Type.VARIANT, statusTypeMap);
+		
+		for(Label statusLabel : statusTypeMap.keySet())
+		{
+			Map<Label, Object> statusValue = new TreeMap<Label, Object>();
+			statusValue.put(statusLabel, statusLabel.equals(Label.createNamedLabel("ok")) ? (Object) BigInteger.TEN : "failed");
+			
+			args = new ArrayList<IDLValue>();
+			
+			args.add(IDLValue.create(statusValue, statusType));
+			
+			outArgs = IDLArgs.fromBytes(IDLArgs.create(args).toBytes(), new IDLType[] {statusType});
+			
+			Assertions.assertEquals(statusValue, outArgs.getArgs().get(0).getValue());
+		}
+		
+		// encode primitive arrays, same wire format as boxed arrays
+		long[] primitiveLongArray = ArrayUtils.toPrimitive(longArray);
+		
+		args = new ArrayList<IDLValue>();
+
+		args.add(IDLValue.create(primitiveLongArray));
+		
+		Assertions.assertArrayEquals(buf, IDLArgs.create(args).toBytes());
+		
+		double[] doubleArray = {0.0, -1.5, Double.MAX_VALUE, Double.MIN_VALUE};
+		int[] intArray = {0, 1, Integer.MAX_VALUE};
+		
+		args = new ArrayList<IDLValue>();
+
+		args.add(IDLValue.create(doubleArray));
+		args.add(IDLValue.create(intArray, IDLType.createType(Type.VEC, IDLType.createType(Type.NAT32))));
+		args.add(IDLValue.create(new short[] {-1, 2}, IDLType.createType(Type.VEC, IDLType.createType(Type.INT))));
+		
+		outArgs = IDLArgs.fromBytes(IDLArgs.create(args).toBytes());
+		
+		Assertions.assertArrayEquals(ArrayUtils.toObject(doubleArray), (Double[]) outArgs.getArgs().get(0).getValue());
+		Assertions.assertArrayEquals(ArrayUtils.toObject(intArray), (Integer[]) outArgs.getArgs().get(1).getValue());
+		Assertions.assertArrayEquals(new BigInteger[] {BigInteger.valueOf(-1), BigInteger.valueOf(2)}, (BigInteger[]) outArgs.getArgs().get(2).getValue());
+		
+		// decode straight into primitive arrays
+		IDLBuilder primitiveBuilder = new IDLBuilder();
+		primitiveBuilder.arg(doubleArray);
+		
+		Assertions.assertArrayEquals(doubleArray, IDLDeserialize.create(primitiveBuilder.serializeToVec()).getObject(double[].class));
+		
+		args = new ArrayList<IDLValue>();
+		args.add(IDLValue.create(intArray, IDLType.createType(Type.VEC, IDLType.createType(Type.NAT32))));
+		
+		Assertions.assertArrayEquals(intArray, IDLDeserialize.create(IDLArgs.create(args).toBytes()).getObject(int[].class));
+		
+		Assertions.assertArrayEquals(primitiveLongArray, IDLDeserialize.create(buf).getObject(long[].class));
+		
+		// element width has to match the wire type
+		byte[] longBuf = buf;
+		
+		Assertions.assertThrows(CandidError.class, () -> IDLDeserialize.create(longBuf).getObject(int[].class));
+		Assertions.assertThrows(CandidError.class, () -> IDLArgs.fromBytes(longBuf, new IDLType[] {IDLType.createType(int[].class)}));
+		
+		// the expected primitive array decides the result type, empty vecs included
+		byte[] emptyBuf = IDLArgs.create(Collections.singletonList(IDLValue.create(new long[0]))).toBytes();
+		
+		Assertions.assertArrayEquals(new long[0],
+				(long[]) IDLArgs.fromBytes(emptyBuf, new IDLType[] {IDLType.createType(long[].class)}).getArgs().get(0).getValue());
+		Assertions.assertArrayEquals(primitiveLongArray,
+				(long[]) IDLArgs.fromBytes(longBuf, new IDLType[] {IDLType.createType(long[].class)}).getArgs().get(0).getValue());
+		
+		args = new ArrayList<IDLValue>();
+		args.add(IDLValue.create(new short[] {-1, 2}, IDLType.createType(Type.VEC, IDLType.createType(Type.INT16))));
+		
+		Assertions.assertArrayEquals(new short[] {-1, 2}, IDLDeserialize.create(IDLArgs.create(args).toBytes()).getObject(short[].class));
+		
+		try {
+			IDLBuilder idlBuilder = new IDLBuilder();
+			
+			idlBuilder.valueArg(IDLValue.create(primitiveLongArray));
+			
+			ByteArrayOutputStream os = new ByteArrayOutputStream();
+			
+			idlBuilder.serialize(os);
+			
+			Assertions.assertArrayEquals(buf, os.toByteArray());
+		} catch (Throwable ex) {
+			LOG.debug(ex.getLocalizedMessage(), ex);
+			Assertions.fail(ex.getLocalizedMessage());
+		}
+		
+		// test streaming serialization to OutputStream and WritableByteChannel
+		try {
+			byte[] binaryValue = getBinary(BINARY_IMAGE_FILE, "png");
+			
+			IDLBuilder idlBuilder = new IDLBuilder();
+			
+			idlBuilder.valueArg(IDLValue.create(binaryValue, IDLType.createType(org.ic4j.candid.types.Type.VEC, IDLType.createType(org.ic4j.candid.types.Type.NAT8))));
+			idlBuilder.arg("streaming");
+			idlBuilder.valueArg(IDLValue.create(longArray));
+			
+			buf = idlBuilder.serializeToVec();
+			
+			ByteArrayOutputStream os = new ByteArrayOutputStream();
+			
+			idlBuilder.serialize(os);
+			
+			Assertions.assertArrayEquals(buf, os.toByteArray());
+			
+			os = new ByteArrayOutputStream();
+			
+			idlBuilder.serialize(Channels.newChannel(os));
+			
+			Assertions.assertArrayEquals(buf, os.toByteArray());
+			
+			outArgs = IDLArgs.fromBytes(os.toByteArray());
+			
+			Assertions.assertArrayEquals(ArrayUtils.toObject(binaryValue), (Byte[]) outArgs.getArgs().get(0).getValue());
+			Assertions.assertEquals("streaming", outArgs.getArgs().get(1).getValue());
+			Assertions.assertArrayEquals(longArray, (Long[]) outArgs.getArgs().get(2).getValue());
+			
+			// test streaming deserialization from InputStream
+			outArgs = IDLArgs.fromStream(new ByteArrayInputStream(buf));
+			
+			Assertions.assertArrayEquals(ArrayUtils.toObject(binaryValue), (Byte[]) outArgs.getArgs().get(0).getValue());
+			Assertions.assertEquals("streaming", outArgs.getArgs().get(1).getValue());
+			Assertions.assertArrayEquals(longArray, (Long[]) outArgs.getArgs().get(2).getValue());
+		} catch (Throwable ex) {
+			LOG.debug(ex.getLocalizedMessage(), ex);
+			Assertions.fail(ex.getLocalizedMessage());
+		}
 		
 	}
 	
@@ -8,8 +8,11 @@ import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.TreeMap;
 
+import org.ic4j.candid.gson.CandidTypeAdapter;
+import org.ic4j.candid.gson.CandidTypeAdapterFactory;
 import org.ic4j.candid.gson.GsonDeserializer;
 import org.ic4j.candid.gson.GsonSerializer;
 import org.ic4j.candid.parser.IDLArgs;
@@ -25,7 +28,9 @@ import org.skyscreamer.jsonassert.JSONCompareMode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.gson.FieldNamingPolicy;
 import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
 import com.google.gson.JsonElement;
 
 public final class GsonTest {
@@ -36,6 +41,8 @@ public final class GsonTest {
 	static final String TRADE_ARRAY_NODE_FILE = "TradeArrayNode.json";
 
 	Gson gson = new Gson();
+	
+	Gson candidGson = new GsonBuilder().registerTypeAdapterFactory(CandidTypeAdapterFactory.create()).create();
 
 	static {
 		LOG = LoggerFactory.getLogger(GsonTest.class);
@@ -96,6 +103,47 @@ public final class GsonTest {
 
 		Assertions.assertEquals(pojo, pojoResult);
 		
+		// Candid type adapter, bound once per class
+		CandidTypeAdapter<GsonPojo> adapter = CandidTypeAdapterFactory.getAdapter(candidGson, GsonPojo.class);
+		
+		Assertions.assertSame(adapter, CandidTypeAdapterFactory.getAdapter(candidGson, GsonPojo.class));
+		
+		try {
+			Assertions.assertArrayEquals(buf, adapter.toCandid(pojo));
+			Assertions.assertEquals(pojo, adapter.fromCandid(buf));
+			
+			// vec int8 keeps the sign, vec nat8 is unsigned
+			JsonElement bytesValue = gson.fromJson("[-1,5,-128]", JsonElement.class);
+			
+			CandidTypeAdapter<JsonElement> int8Adapter = CandidTypeAdapterFactory.getAdapter(candidGson, JsonElement.class)
+					.withIDLType(IDLType.createType(Type.VEC, IDLType.createType(Type.INT8)));
+			
+			Assertions.assertEquals(bytesValue, int8Adapter.fromCandid(int8Adapter.toCandid(bytesValue)));
+			
+			JsonElement natBytesValue = gson.fromJson("[255,5,128]", JsonElement.class);
+			
+			CandidTypeAdapter<JsonElement> nat8Adapter = CandidTypeAdapterFactory.getAdapter(candidGson, JsonElement.class)
+					.withIDLType(IDLType.createType(Type.VEC, IDLType.createType(Type.NAT8)));
+			
+			Assertions.assertEquals(natBytesValue, nat8Adapter.fromCandid(nat8Adapter.toCandid(natBytesValue)));
+			
+			// labels follow the field naming policy of the Gson instance
+			Gson upperGson = new GsonBuilder().setFieldNamingPolicy(FieldNamingPolicy.UPPER_CAMEL_CASE)
+					.registerTypeAdapterFactory(CandidTypeAdapterFactory.create()).create();
+			
+			CandidTypeAdapter<NamedGsonPojo> upperAdapter = CandidTypeAdapterFactory.getAdapter(upperGson, NamedGsonPojo.class);
+			
+			NamedGsonPojo namedPojo = new NamedGsonPojo();
+			namedPojo.itemCount = BigInteger.TEN;
+			namedPojo.someFlag = true;
+			
+			Assertions.assertTrue(upperAdapter.getIDLType().getTypeMap().containsKey(Label.createNamedLabel("ItemCount")));
+			Assertions.assertEquals(namedPojo, upperAdapter.fromCandid(upperAdapter.toCandid(namedPojo)));
+		} catch (IOException e) {
+			LOG.error(e.getLocalizedMessage(), e);
+			Assertions.fail(e.getMessage());
+		}
+		
 	}
 
 	void testJson(String fileName, IDLType idlType) {
@@ -120,6 +168,14 @@ public final class GsonTest {
 					.getValue(GsonDeserializer.create(idlValue.getIDLType()), JsonElement.class);
 
 			JSONAssert.assertEquals(jsonValue.toString(), jsonResult.toString(), JSONCompareMode.LENIENT);
+			
+			// stream through the Candid type adapter, without IDLValue trees
+			CandidTypeAdapter<JsonElement> adapter = CandidTypeAdapterFactory.getAdapter(candidGson, JsonElement.class)
+					.withIDLType(idlValue.getIDLType());
+			
+			Assertions.assertArrayEquals(buf, adapter.toCandid(jsonValue));
+			
+			JSONAssert.assertEquals(jsonValue.toString(), adapter.fromCandid(buf).toString(), JSONCompareMode.LENIENT);
 
 		} catch (IOException e) {
 			LOG.error(e.getLocalizedMessage(), e);
@@ -136,4 +192,22 @@ public final class GsonTest {
 		JsonElement rootNode = gson.fromJson(reader, JsonElement.class);
 		return rootNode;
 	}
+
+	static class NamedGsonPojo {
+		Boolean someFlag;
+		BigInteger itemCount;
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof NamedGsonPojo))
+				return false;
+			NamedGsonPojo other = (NamedGsonPojo) obj;
+			return Objects.equals(someFlag, other.someFlag) && Objects.equals(itemCount, other.itemCount);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(someFlag, itemCount);
+		}
+	}
 }
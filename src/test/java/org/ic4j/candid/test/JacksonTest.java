@@ -5,12 +5,20 @@ import java.math.BigInteger;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.TreeMap;
 
+import org.ic4j.candid.CandidError;
+import org.ic4j.candid.jackson.CandidFactory;
+import org.ic4j.candid.jackson.CandidSchema;
 import org.ic4j.candid.jackson.JacksonDeserializer;
 import org.ic4j.candid.jackson.JacksonSerializer;
+import org.ic4j.candid.jackson.JacksonStreamDeserializer;
+import org.ic4j.candid.jackson.JacksonStreamSerializer;
 import org.ic4j.candid.parser.IDLArgs;
 import org.ic4j.candid.parser.IDLType;
 import org.ic4j.candid.parser.IDLValue;
@@ -23,9 +31,11 @@ import org.skyscreamer.jsonassert.JSONAssert;
 import org.skyscreamer.jsonassert.JSONCompareMode;
 import org.slf4j.LoggerFactory;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
 
 public final class JacksonTest extends CandidAssert {
 	static final String SIMPLE_NODE_FILE = "SimpleNode.json";
@@ -92,6 +102,101 @@ public final class JacksonTest extends CandidAssert {
 				.getValue(JacksonDeserializer.create(), JacksonPojo.class);
 
 		Assertions.assertEquals(pojo, pojoResult);
+
+		// injected mapper, its mixin renames foo to baz in both directions
+		ObjectMapper customMapper = new ObjectMapper().addMixIn(JacksonPojo.class, RenamedJacksonPojo.class);
+
+		IDLValue customValue = IDLValue.create(pojo, JacksonSerializer.create(customMapper));
+
+		Assertions.assertTrue(customValue.getIDLType().getTypeMap().containsKey(Label.createNamedLabel("baz")));
+		Assertions.assertFalse(customValue.getIDLType().getTypeMap().containsKey(Label.createNamedLabel("foo")));
+
+		byte[] customBuf = IDLArgs.create(Collections.singletonList(customValue)).toBytes();
+
+		IDLValue customResult = IDLArgs.fromBytes(customBuf).getArgs().get(0);
+
+		Assertions.assertEquals(pojo, customResult.getValue(JacksonDeserializer.create(customValue.getIDLType(), customMapper), JacksonPojo.class));
+		
+		// without expected type, the class type is derived by the injected mapper
+		Assertions.assertEquals(pojo, customResult.getValue(JacksonDeserializer.create(customMapper), JacksonPojo.class));
+		Assertions.assertTrue(JacksonSerializer.getIDLType(customMapper, JacksonPojo.class).getTypeMap().containsKey(Label.createNamedLabel("baz")));
+		Assertions.assertSame(JacksonSerializer.getIDLType(customMapper, JacksonPojo.class), JacksonSerializer.getIDLType(customMapper, JacksonPojo.class));
+
+		// the default mapper does not know baz
+		Assertions.assertThrows(CandidError.class,
+				() -> customResult.getValue(JacksonDeserializer.create(customValue.getIDLType()), JacksonPojo.class));
+
+		// class types are computed once
+		Assertions.assertSame(JacksonSerializer.getIDLType(JacksonPojo.class), JacksonSerializer.getIDLType(JacksonPojo.class));
+
+		// Candid data format, bean serializers write and read the wire directly
+		try {
+			ObjectMapper candidMapper = new ObjectMapper(new CandidFactory());
+			CandidSchema schema = CandidSchema.create(JacksonPojo.class);
+
+			byte[] candidBuf = candidMapper.writer(schema).writeValueAsBytes(pojo);
+
+			Assertions.assertEquals(pojo, candidMapper.readerFor(JacksonPojo.class).with(schema).readValue(candidBuf));
+			Assertions.assertEquals(pojo, IDLArgs.fromBytes(candidBuf).getArgs().get(0)
+					.getValue(JacksonDeserializer.create(), JacksonPojo.class));
+			Assertions.assertEquals(pojo, candidMapper.readerFor(JacksonPojo.class).with(schema).readValue(buf));
+
+			JsonNode treeResult = candidMapper.readerFor(JsonNode.class).with(schema).readValue(candidBuf);
+
+			Assertions.assertEquals(pojo.foo, treeResult.get("foo").bigIntegerValue());
+			
+			// variant arm names as strings, only for arms without value
+			Map<Label, IDLType> statusTypeMap = new TreeMap<Label, IDLType>();
+			statusTypeMap.put(Label.createNamedLabel("ok"), IDLType.createType(Type.NAT));
+			statusTypeMap.put(Label.createNamedLabel("err"), IDLType.createType(Type.TEXT));
+			statusTypeMap.put(Label.createNamedLabel("pending"), IDLType.createType(Type.NULL));
+			statusTypeMap.put(Label.createNamedLabel("retry"), IDLType.createType(Type.OPT, IDLType.createType(Type.NAT)));
+			
+			IDLType statusType = IDLType.createType(Type.VARIANT, statusTypeMap);
+			JacksonStreamSerializer statusSerializer = JacksonStreamSerializer.create(statusType);
+			
+			Map<Label, Object> statusValue = new TreeMap<Label, Object>();
+			statusValue.put(Label.createNamedLabel("pending"), null);
+			
+			Assertions.assertEquals(statusValue, IDLArgs.fromBytes(statusSerializer.serialize(mapper.getFactory().createParser("\"pending\"")),
+					new IDLType[] {statusType}).getArgs().get(0).getValue());
+			
+			statusValue = new TreeMap<Label, Object>();
+			statusValue.put(Label.createNamedLabel("retry"), Optional.empty());
+			
+			Assertions.assertEquals(statusValue, IDLArgs.fromBytes(statusSerializer.serialize(mapper.getFactory().createParser("\"retry\"")),
+					new IDLType[] {statusType}).getArgs().get(0).getValue());
+			
+			Assertions.assertThrows(CandidError.class, () -> statusSerializer.serialize(mapper.getFactory().createParser("\"ok\"")));
+			
+			// enum fields round trip as variant arms without value
+			StatusJacksonPojo statusPojo = new StatusJacksonPojo();
+			statusPojo.itemCount = BigInteger.TEN;
+			statusPojo.itemStatus = JacksonStatus.PENDING;
+			
+			CandidSchema statusSchema = CandidSchema.create(StatusJacksonPojo.class);
+			
+			Assertions.assertEquals(statusPojo, candidMapper.readerFor(StatusJacksonPojo.class).with(statusSchema)
+					.readValue(candidMapper.writer(statusSchema).writeValueAsBytes(statusPojo)));
+			
+			// labels follow the naming strategy and mixins of the mapper
+			ObjectMapper upperMapper = new ObjectMapper(new CandidFactory()).setPropertyNamingStrategy(PropertyNamingStrategies.UPPER_CAMEL_CASE);
+			CandidSchema upperSchema = CandidSchema.create(upperMapper, StatusJacksonPojo.class);
+			
+			Assertions.assertTrue(upperSchema.getIDLType().getTypeMap().containsKey(Label.createNamedLabel("ItemCount")));
+			Assertions.assertEquals(statusPojo, upperMapper.readerFor(StatusJacksonPojo.class).with(upperSchema)
+					.readValue(upperMapper.writer(upperSchema).writeValueAsBytes(statusPojo)));
+			
+			ObjectMapper mixinMapper = new ObjectMapper(new CandidFactory()).addMixIn(JacksonPojo.class, RenamedJacksonPojo.class);
+			CandidSchema mixinSchema = CandidSchema.create(mixinMapper, JacksonPojo.class);
+			
+			Assertions.assertTrue(mixinSchema.getIDLType().getTypeMap().containsKey(Label.createNamedLabel("baz")));
+			Assertions.assertEquals(pojo, mixinMapper.readerFor(JacksonPojo.class).with(mixinSchema)
+					.readValue(mixinMapper.writer(mixinSchema).writeValueAsBytes(pojo)));
+		} catch (IOException e) {
+			LOG.error(e.getLocalizedMessage(), e);
+			Assertions.fail(e.getMessage());
+		}
 	}
 
 	void testJson(String fileName, IDLType idlType) {
@@ -117,6 +222,23 @@ public final class JacksonTest extends CandidAssert {
 
 			JSONAssert.assertEquals(jsonValue.asText(), jsonResult.asText(), JSONCompareMode.LENIENT);
 
+			if (idlType != null) {
+				byte[] input = Files.readAllBytes(Paths.get(getClass().getClassLoader().getResource(fileName).getPath()));
+
+				byte[] streamBuf = JacksonStreamSerializer.create(idlType).serialize(mapper.getFactory().createParser(input));
+
+				Assertions.assertArrayEquals(buf, streamBuf);
+
+				JsonNode streamResult = mapper.readTree(JacksonStreamDeserializer.create(idlType).deserialize(buf));
+
+				JSONAssert.assertEquals(jsonResult.toString(), streamResult.toString(), JSONCompareMode.STRICT);
+
+				JsonNode parserResult = new ObjectMapper(new CandidFactory()).readerFor(JsonNode.class)
+						.with(CandidSchema.create(idlType)).readValue(buf);
+
+				JSONAssert.assertEquals(jsonResult.toString(), parserResult.toString(), JSONCompareMode.STRICT);
+			}
+
 		} catch (IOException e) {
 			LOG.error(e.getLocalizedMessage(), e);
 			Assertions.fail(e.getMessage());
@@ -133,4 +255,32 @@ public final class JacksonTest extends CandidAssert {
 
 		return rootNode;
 	}
+
+	// renames foo for the injected mapper
+	abstract static class RenamedJacksonPojo {
+		@JsonProperty("baz")
+		public BigInteger foo;
+	}
+
+	public enum JacksonStatus {
+		ACTIVE, PENDING
+	}
+
+	public static class StatusJacksonPojo {
+		public BigInteger itemCount;
+		public JacksonStatus itemStatus;
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof StatusJacksonPojo))
+				return false;
+			StatusJacksonPojo other = (StatusJacksonPojo) obj;
+			return Objects.equals(itemCount, other.itemCount) && itemStatus == other.itemStatus;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(itemCount, itemStatus);
+		}
+	}
 }
@@ -2,6 +2,7 @@ package org.ic4j.candid.test;
 
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -11,6 +12,10 @@ import javax.xml.transform.TransformerException;
 
 import org.apache.commons.lang3.ArrayUtils;
 import org.ic4j.candid.ByteUtils;
+import org.ic4j.candid.CandidError;
+import org.ic4j.candid.IDLBuilder;
+import org.ic4j.candid.IDLDeserialize;
+import org.ic4j.candid.annotations.Name;
 import org.ic4j.candid.dom.DOMDeserializer;
 import org.ic4j.candid.dom.DOMSerializer;
 import org.ic4j.candid.dom.DOMUtils;
@@ -20,7 +25,10 @@ import org.ic4j.candid.parser.IDLArgs;
 import org.ic4j.candid.parser.IDLType;
 import org.ic4j.candid.parser.IDLValue;
 import org.ic4j.candid.pojo.PojoDeserializer;
+import org.ic4j.candid.pojo.PojoMetadata;
 import org.ic4j.candid.pojo.PojoSerializer;
+import org.ic4j.candid.pojo.PojoUtils;
+import org.ic4j.candid.types.Label;
 import org.ic4j.candid.types.Mode;
 import org.ic4j.candid.types.Type;
 import org.ic4j.types.Func;
@@ -73,6 +81,15 @@ public final class PojoTest extends CandidAssert {
 		
 		Assertions.assertEquals(refPojo, refPojoResult);
 		
+		// decode straight from the wire
+		Assertions.assertEquals(refPojo, IDLDeserialize.create(buf).getObject(RefPojo.class));
+		
+		// encode straight to the wire
+		IDLBuilder idlBuilder = new IDLBuilder();
+		idlBuilder.arg(refPojo);
+		
+		Assertions.assertEquals(refPojo, IDLDeserialize.create(idlBuilder.serializeToVec()).getObject(RefPojo.class));
+		
 		// Loan Offer Request		
 		
 		LoanOfferRequest loanRequest = new LoanOfferRequest();
@@ -101,6 +118,7 @@ public final class PojoTest extends CandidAssert {
 		LoanOfferRequest[] loanRequestArrayResult = IDLArgs.fromBytes(buf).getArgs().get(0).getValue(new PojoDeserializer(), LoanOfferRequest[].class);
 		
 		Assertions.assertArrayEquals(loanRequestArray, loanRequestArrayResult);
+		Assertions.assertArrayEquals(loanRequestArray, IDLDeserialize.create(buf).getObject(LoanOfferRequest[].class));
 		
 		// Loan Offer Request		
 		
@@ -128,6 +146,12 @@ public final class PojoTest extends CandidAssert {
 		LoanOffer[] loanArrayResult = IDLArgs.fromBytes(buf).getArgs().get(0).getValue(new PojoDeserializer(), LoanOffer[].class);
 		
 		Assertions.assertArrayEquals(loanArray, loanArrayResult);	
+		Assertions.assertArrayEquals(loanArray, IDLDeserialize.create(buf).getObject(LoanOffer[].class));
+		
+		idlBuilder = new IDLBuilder();
+		idlBuilder.arg(loanArray);
+		
+		Assertions.assertArrayEquals(loanArray, IDLDeserialize.create(idlBuilder.serializeToVec()).getObject(LoanOffer[].class));
 		
 		// Loan Applications	
 		
@@ -155,6 +179,7 @@ public final class PojoTest extends CandidAssert {
 		LoanApplication[] loanApplicationArrayResult = IDLArgs.fromBytes(buf).getArgs().get(0).getValue(new PojoDeserializer(), LoanApplication[].class);
 		
 		Assertions.assertArrayEquals(loanApplicationArray, loanApplicationArrayResult);		
+		Assertions.assertArrayEquals(loanApplicationArray, IDLDeserialize.create(buf).getObject(LoanApplication[].class));
 		
 		// Record POJO
 
@@ -173,12 +198,51 @@ public final class PojoTest extends CandidAssert {
 		buf = idlArgs.toBytes();
 
 		assertBytes("DIDL\\01\\6c\\02\\d3\\e3\\aa\\02\\7e\\86\\8e\\b7\\02\\7c\\01\\00\\01\\2a", buf);
+		
+		// same wire format when encoded straight from the POJO fields
+		idlBuilder = new IDLBuilder();
+		idlBuilder.arg(pojoValue);
+		
+		Assertions.assertArrayEquals(buf, idlBuilder.serializeToVec());
+		
+		// class metadata is resolved once, ignored fields are skipped
+		PojoMetadata pojoMetadata = PojoMetadata.get(Pojo.class);
+		
+		Assertions.assertSame(pojoMetadata, PojoMetadata.get(Pojo.class));
+		Assertions.assertEquals(2, pojoMetadata.getFields().length);
+		Assertions.assertEquals(Label.createNamedLabel("bar"), pojoMetadata.getSortedFields()[0].getLabel());
+		Assertions.assertEquals(PojoUtils.getIDLType(Pojo.class), pojoMetadata.getIDLType());
+		
+		// every caller gets its own copy of the resolved type
+		IDLType mutatedType = PojoUtils.getIDLType(Pojo.class);
+		
+		mutatedType.setName("Mutated");
+		mutatedType.getTypeMap().put(Label.createNamedLabel("evil"), IDLType.createType(Type.TEXT));
+		
+		Assertions.assertEquals("Pojo", PojoUtils.getIDLType(Pojo.class).getName());
+		Assertions.assertFalse(pojoMetadata.getIDLType().getTypeMap().containsKey(Label.createNamedLabel("evil")));
+		
+		// codec generated by PojoCodecProcessor replaces reflective access
+		Assertions.assertNotNull(pojoMetadata.getCodec());
+		
+		// generated accessors copy the same field values
+		Pojo pojoCopy = (Pojo) pojoMetadata.newInstance();
+		
+		try {
+			for (PojoMetadata.FieldMetadata field : pojoMetadata.getFields())
+				field.set(pojoCopy, field.get(pojoValue));
+		} catch (IllegalAccessException e) {
+			Assertions.fail(e.getLocalizedMessage());
+		}
+		
+		Assertions.assertEquals(pojoValue, pojoCopy);
 
 		IDLArgs outArgs = IDLArgs.fromBytes(buf);
 
 		Pojo pojoResult = IDLArgs.fromBytes(buf).getArgs().get(0).getValue(new PojoDeserializer(), Pojo.class);
 
 		Assertions.assertEquals(pojoValue, pojoResult);
+		Assertions.assertEquals(pojoValue, IDLDeserialize.create(buf).getObject(Pojo.class));
 		// Pojo OPT
 		Optional<Pojo> optionalPojoValue = Optional.of(pojoValue);
 		idlValue = IDLValue.create(optionalPojoValue, new PojoSerializer());
@@ -193,6 +257,7 @@ public final class PojoTest extends CandidAssert {
 		Pojo optionalPojoResult = IDLArgs.fromBytes(buf).getArgs().get(0).getValue(new PojoDeserializer(), Pojo.class);
 
 		Assertions.assertEquals(pojoValue, optionalPojoResult);
+		Assertions.assertEquals(pojoValue, IDLDeserialize.create(buf).getObject(Pojo.class));
 
 		// Pojo Array VEC
 
@@ -215,6 +280,7 @@ public final class PojoTest extends CandidAssert {
 		Pojo[] pojoArrayResult = IDLArgs.fromBytes(buf).getArgs().get(0).getValue(new PojoDeserializer(), Pojo[].class);
 
 		Assertions.assertArrayEquals(pojoArray, pojoArrayResult);
+		Assertions.assertArrayEquals(pojoArray, IDLDeserialize.create(buf).getObject(Pojo[].class));
 
 		ArrayNode arrayNode = IDLArgs.fromBytes(buf).getArgs().get(0)
 				.getValue(JacksonDeserializer.create(idlValue.getIDLType()), ArrayNode.class);
@@ -324,6 +390,7 @@ public final class PojoTest extends CandidAssert {
 				.getValue(new PojoDeserializer(), ComplexArrayPojo.class);
 
 		Assertions.assertEquals(complexArrayPojoValue, complexPojoArrayResult);
+		Assertions.assertEquals(complexArrayPojoValue, IDLDeserialize.create(buf).getObject(ComplexArrayPojo.class));
 		
 		ComplexPojo complexPojoValue2 = new ComplexPojo();
 		complexPojoValue2.bar = new Boolean(true);
@@ -350,6 +417,7 @@ public final class PojoTest extends CandidAssert {
 				.getValue(new PojoDeserializer(), ComplexPojo[].class);
 		
 		Assertions.assertArrayEquals(complexPojoArrayValue, complexPojoArrayValueResult);
+		Assertions.assertArrayEquals(complexPojoArrayValue, IDLDeserialize.create(buf).getObject(ComplexPojo[].class));
 		
 		ComplexOptionalPojo complexOptionalPojoValue = new ComplexOptionalPojo();
 		complexOptionalPojoValue.bar = Optional.ofNullable(new Boolean(true));
@@ -372,6 +440,45 @@ public final class PojoTest extends CandidAssert {
 				.getValue(new PojoDeserializer(), ComplexOptionalPojo.class);
 		
 		Assertions.assertEquals(complexOptionalPojoValue, complexOptionalPojoValueResult);		
+		Assertions.assertEquals(complexOptionalPojoValue, IDLDeserialize.create(buf).getObject(ComplexOptionalPojo.class));
+		
+		// generated codec carries the field types, fields are not reflected
+		PojoMetadata.FieldMetadata optionalField = PojoMetadata.get(ComplexOptionalPojo.class).getFields()[0];
+		
+		Assertions.assertNull(optionalField.getField());
+		Assertions.assertEquals(Label.createNamedLabel("bar"), optionalField.getLabel());
+		Assertions.assertEquals(Type.BOOL, optionalField.getAnnotatedType());
+		Assertions.assertEquals(
+				Assertions.assertDoesNotThrow(() -> ComplexOptionalPojo.class.getField("bar")).getGenericType(),
+				optionalField.getGenericType());
+		
+		// classes without a public default constructor get no codec and keep the reflective path
+		Assertions.assertThrows(ClassNotFoundException.class,
+				() -> Class.forName(ConstructorPojo.class.getPackage().getName() + ".PojoTest_ConstructorPojo_CandidCodec"));
+		Assertions.assertNull(PojoMetadata.get(ConstructorPojo.class).getCodec());
+		Assertions.assertNotNull(PojoMetadata.get(ConstructorPojo.class).getFields()[0].getField());
+		
+		// static fields are not serialized, the class still gets a codec
+		PojoMetadata staticMetadata = PojoMetadata.get(StaticFieldPojo.class);
+		
+		Assertions.assertNotNull(staticMetadata.getCodec());
+		Assertions.assertEquals(1, staticMetadata.getFields().length);
+		Assertions.assertEquals(1, PojoUtils.getIDLType(StaticFieldPojo.class).getTypeMap().size());
+		
+		idlValue = IDLValue.create(new ConstructorPojo(Boolean.TRUE), new PojoSerializer());
+		
+		Assertions.assertEquals(Boolean.TRUE, ((Map<Label, Object>) idlValue.getValue()).get(Label.createNamedLabel("bar")));
+		
+		idlBuilder = new IDLBuilder();
+		idlBuilder.arg(complexOptionalPojoValue);
+		idlBuilder.arg(complexPojoArrayValue);
+		
+		IDLDeserialize idlDeserialize = IDLDeserialize.create(idlBuilder.serializeToVec());
+		
+		Assertions.assertEquals(complexOptionalPojoValue, idlDeserialize.getObject(ComplexOptionalPojo.class));
+		Assertions.assertArrayEquals(complexPojoArrayValue, idlDeserialize.getObject(ComplexPojo[].class));
+		
+		idlDeserialize.done();
 		
 		ComplexPojo[] emptyComplexPojoArrayValue = {};
 		
@@ -392,6 +499,7 @@ public final class PojoTest extends CandidAssert {
 				.getValue(new PojoDeserializer(), ComplexPojo[].class);
 		
 		Assertions.assertArrayEquals(emptyComplexPojoArrayValue, complexPojoArrayValueResult);	
+		Assertions.assertArrayEquals(emptyComplexPojoArrayValue, IDLDeserialize.create(buf).getObject(ComplexPojo[].class));
 		
 		Func func = new Func(Principal.fromString("w7x7r-cok77-xa"),"a");
 		
@@ -616,11 +724,52 @@ public final class PojoTest extends CandidAssert {
 					.getValue(new PojoDeserializer(), BinaryPojo.class);
 			
 			Assertions.assertEquals(binaryValue, binaryResult);
+			Assertions.assertEquals(binaryValue, IDLDeserialize.create(buf).getObject(BinaryPojo.class));
 			
 		}catch(Exception e)
 		{
 			LOG.debug(e.getLocalizedMessage(), e);
 			Assertions.fail(e.getLocalizedMessage());			
 		}
+		
+		// enum arms missing from the Java type are rejected
+		Map<Label, IDLType> colorTypeMap = new TreeMap<Label, IDLType>();
+		colorTypeMap.put(Label.createNamedLabel("RED"), IDLType.createType(Type.NULL));
+		colorTypeMap.put(Label.createNamedLabel("BLUE"), IDLType.createType(Type.NULL));
+		
+		Map<Label, Object> colorValue = new TreeMap<Label, Object>();
+		colorValue.put(Label.createNamedLabel("RED"), null);
+		
+		buf = IDLArgs.create(Arrays.asList(IDLValue.create(colorValue, IDLType.createType(Type.VARIANT, colorTypeMap)))).toBytes();
+		
+		Assertions.assertEquals(Color.RED, IDLDeserialize.create(buf).getObject(Color.class));
+		
+		colorValue = new TreeMap<Label, Object>();
+		colorValue.put(Label.createNamedLabel("BLUE"), null);
+		
+		byte[] blueBuf = IDLArgs.create(Arrays.asList(IDLValue.create(colorValue, IDLType.createType(Type.VARIANT, colorTypeMap)))).toBytes();
+		
+		Assertions.assertThrows(CandidError.class, () -> IDLDeserialize.create(blueBuf).getObject(Color.class));
+	}
+
+	public enum Color {
+		RED, GREEN
+	}
+
+	public static class StaticFieldPojo {
+		static final long serialVersionUID = 1L;
+		static final org.slf4j.Logger LOG = LoggerFactory.getLogger(StaticFieldPojo.class);
+
+		@Name("bar")
+		public Boolean bar;
+	}
+
+	public static class ConstructorPojo {
+		@Name("bar")
+		public Boolean bar;
+
+		public ConstructorPojo(Boolean bar) {
+			this.bar = bar;
+		}
 	}
 }
@@ -8,6 +8,7 @@ import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.transform.TransformerException;
 
 import org.ic4j.candid.ByteUtils;
+import org.ic4j.candid.IDLDeserialize;
 import org.ic4j.candid.dom.DOMDeserializer;
 import org.ic4j.candid.dom.DOMUtils;
 import org.ic4j.candid.parser.IDLArgs;
@@ -69,6 +70,7 @@ public final class TradingTest extends CandidAssert {
 		TradingListing[] listingsResult = IDLArgs.fromBytes(buf).getArgs().get(0).getValue(new PojoDeserializer(), TradingListing[].class);
 		
 		Assertions.assertArrayEquals(listings, listingsResult);
+		Assertions.assertArrayEquals(listings, IDLDeserialize.create(buf).getObject(TradingListing[].class));
 		
 		DOMDeserializer domDeserializer = DOMDeserializer.create(idlValue.getIDLType())
 				.rootElement("http://ic4j.org/candid/test", "data");